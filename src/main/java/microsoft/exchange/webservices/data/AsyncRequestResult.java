@@ -16,14 +16,14 @@ public class AsyncRequestResult implements IAsyncResult {
     AsyncCallback wasasyncCallback;
     IAsyncResult webAsyncResult;
     Object asyncState;
-    Future task;
+    Future<?> task;
 
-    AsyncRequestResult(Future task) {
+    AsyncRequestResult(Future<?> task) {
         this.task = task;
     }
 
 
-    public AsyncRequestResult(ServiceRequestBase serviceRequest, HttpWebRequest webRequest, Future task,
+    public AsyncRequestResult(ServiceRequestBase serviceRequest, HttpWebRequest webRequest, Future<?> task,
                               Object asyncState) throws Exception {
         EwsUtilities.validateParam(serviceRequest, "serviceRequest");
         EwsUtilities.validateParam(webRequest, "webRequest");
@@ -35,6 +35,22 @@ public AsyncRequestResult(ServiceRequestBase serviceRequest, HttpWebRequest webR
 
     }
 
+    /**
+     * Initializes a new instance for a request that runs on the async executor of its service.
+     *
+     * @param serviceRequest The service request.
+     * @param task           The future completing with the response.
+     * @param asyncState     An object that contains state information for this request.
+     * @throws Exception
+     */
+    AsyncRequestResult(ServiceRequestBase serviceRequest, Future<?> task, Object asyncState) throws Exception {
+        EwsUtilities.validateParam(serviceRequest, "serviceRequest");
+        EwsUtilities.validateParam(task, "task");
+        this.serviceRequest = serviceRequest;
+        this.asyncState = asyncState;
+        this.task = task;
+    }
+
     public void setServiceRequestBase(ServiceRequestBase serviceRequest) {
         this.serviceRequest = serviceRequest;
     }
@@ -51,12 +67,33 @@ public HttpWebRequest getHttpWebRequest() {
         return this.webRequest;
     }
 
+    /**
+     * Gets the task of the request.
+     *
+     * @return The task, completing when the request completes.
+     * @deprecated Requests no longer run as a FutureTask, so the task returned only reflects the future of the
+     * request, and running it does nothing. Use {@link #getFuture()} instead.
+     */
+    @Deprecated
+    @SuppressWarnings("rawtypes")
     public FutureTask getTask() {
-        return (FutureTask) this.task;
+        if (this.task instanceof FutureTask) {
+            return (FutureTask) this.task;
+        }
+        return new FutureView(this.task);
+    }
+
+    /**
+     * Gets the future of the request.
+     *
+     * @return The future, completing when the request completes.
+     */
+    public Future<?> getFuture() {
+        return this.task;
     }
 
     public static <T extends SimpleServiceRequestBase> T extractServiceRequest(ExchangeService exchangeService,
-                                                                               Future asyncResult) throws Exception {
+                                                                               Future<?> asyncResult) throws Exception {
         EwsUtilities.validateParam(asyncResult, "asyncResult");
         AsyncRequestResult asyncRequestResult = (AsyncRequestResult) asyncResult;
         if (asyncRequestResult == null) {
@@ -86,37 +123,32 @@ public static <T extends SimpleServiceRequestBase> T extractServiceRequest(Excha
 
 
     @Override
-    public boolean cancel(boolean arg0) {
-        // TODO Auto-generated method stub
-        return false;
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return this.task.cancel(mayInterruptIfRunning);
     }
 
 
     @Override
     public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        // TODO Auto-generated method stub
-        return null;
+        return this.task.get(timeout, unit);
     }
 
 
     @Override
     public boolean isCancelled() {
-        // TODO Auto-generated method stub
-        return false;
+        return this.task.isCancelled();
     }
 
 
     @Override
     public boolean isDone() {
-        // TODO Auto-generated method stub
-        return false;
+        return this.task.isDone();
     }
 
 
     @Override
     public Object getAsyncState() {
-        // TODO Auto-generated method stub
-        return null;
+        return this.asyncState;
     }
 
 
@@ -129,23 +161,67 @@ public WaitHandle getAsyncWaitHanle() {
 
     @Override
     public boolean getCompleteSynchronously() {
-        // TODO Auto-generated method stub
         return false;
     }
 
 
     @Override
     public boolean getIsCompleted() {
-        // TODO Auto-generated method stub
-        return false;
+        return this.task.isDone();
     }
 
 
     @Override
     public Object get() throws InterruptedException, ExecutionException {
-        // TODO Auto-generated method stub
         return this.task.get();
     }
 
 
+
+    /**
+     * A FutureTask that reflects a future it does not run, returned by the deprecated {@link #getTask()}.
+     */
+    private static final class FutureView extends FutureTask<Object> {
+
+        private final Future<?> future;
+
+        FutureView(Future<?> future) {
+            super(new Callable<Object>() {
+                public Object call() throws Exception {
+                    throw new IllegalStateException();
+                }
+            });
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return this.future.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.future.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return this.future.isDone();
+        }
+
+        @Override
+        public Object get() throws InterruptedException, ExecutionException {
+            return this.future.get();
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+                TimeoutException {
+            return this.future.get(timeout, unit);
+        }
+    }
 }
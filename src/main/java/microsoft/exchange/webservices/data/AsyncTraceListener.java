@@ -0,0 +1,496 @@
+/**************************************************************************
+ * copyright file="AsyncTraceListener.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the AsyncTraceListener.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A trace listener that passes trace entries to another listener on a background thread, so tracing doesn't add to
+ * the latency of requests.
+ * <p/>
+ * Entries are queued in a bounded buffer and dropped when it is full. Entries of each kind can be sampled, and
+ * entries longer than the maximum payload size are cut short before they are queued, so the payload size bounds the
+ * memory the buffer holds. When it is the trace listener of a service, the entries of the service are formatted on
+ * the background thread too:
+ * <pre>
+ *     AsyncTraceListener listener = new AsyncTraceListener(new MyTraceListener(), 4096);
+ *     listener.setSamplingRate(TraceFlags.EwsRequest, 0.01);
+ *     listener.setSamplingRate(TraceFlags.EwsResponse, 0.01);
+ *     listener.setMaxPayloadSize(64 * 1024);
+ *     service.setTraceListener(listener);
+ * </pre>
+ */
+public final class AsyncTraceListener implements ITraceListener, AutoCloseable {
+
+    /**
+     * The trace flags by name.
+     */
+    private static final Map<String, TraceFlags> traceFlagsByName = new HashMap<String, TraceFlags>();
+
+    static {
+        for (TraceFlags traceFlags : TraceFlags.values()) {
+            traceFlagsByName.put(traceFlags.toString(), traceFlags);
+        }
+    }
+
+    /**
+     * The time the writer waits for entries before checking again, in nanoseconds.
+     */
+    private static final long WriterParkNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * The listener the entries are passed to.
+     */
+    private final ITraceListener listener;
+
+    /**
+     * The queued entries. The buffer is a ring whose slots carry a sequence number: a slot can be filled when its
+     * sequence equals the position of the producer, and read when it is one past the position of the writer.
+     */
+    private final AtomicReferenceArray<Entry> entries;
+
+    /**
+     * The sequence of each slot.
+     */
+    private final AtomicLongArray sequences;
+
+    /**
+     * The mask giving the slot of a position.
+     */
+    private final int mask;
+
+    /**
+     * The position of the next entry queued.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The position of the next entry written, only used by the writer.
+     */
+    private long head;
+
+    /**
+     * The number of entries dropped because the buffer was full.
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * The number of entries left out by sampling.
+     */
+    private final AtomicLong sampledOutCount = new AtomicLong();
+
+    /**
+     * The sampling rate of each kind of entry, by ordinal of the trace flag.
+     */
+    private volatile double[] samplingRates;
+
+    /**
+     * The maximum number of characters of an entry, 0 for no limit.
+     */
+    private volatile int maxPayloadSize;
+
+    /**
+     * The writer thread.
+     */
+    private final Thread writer;
+
+    /**
+     * Whether the writer is waiting for entries.
+     */
+    private volatile boolean writerWaiting;
+
+    /**
+     * Whether the listener has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * The number of threads queuing an entry. The writer only stops once none is, so an entry queued while the
+     * listener is closed is either written or counted as dropped.
+     */
+    private final AtomicInteger activeProducers = new AtomicInteger();
+
+    /**
+     * Initializes a new instance of the AsyncTraceListener class and starts its writer thread.
+     *
+     * @param listener The listener the entries are passed to.
+     * @param capacity The number of entries queued before entries are dropped, rounded up to a power of 2.
+     */
+    public AsyncTraceListener(ITraceListener listener, int capacity) {
+        EwsUtilities.EwsAssert(listener != null, "AsyncTraceListener.ctor", "listener is null");
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity");
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.listener = listener;
+        this.entries = new AtomicReferenceArray<Entry>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+        this.mask = size - 1;
+
+        double[] rates = new double[TraceFlags.values().length];
+        Arrays.fill(rates, 1);
+        this.samplingRates = rates;
+
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeEntries();
+            }
+        }, "ews-trace-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Gets the fraction of the entries of a kind that are traced.
+     *
+     * @param traceFlag The kind of entry.
+     * @return The sampling rate, between 0 and 1.
+     */
+    public double getSamplingRate(TraceFlags traceFlag) {
+        return this.samplingRates[traceFlag.ordinal()];
+    }
+
+    /**
+     * Sets the fraction of the entries of a kind that are traced. Defaults to 1, all entries are traced.
+     *
+     * @param traceFlag The kind of entry.
+     * @param rate      The sampling rate, between 0 and 1.
+     */
+    public synchronized void setSamplingRate(TraceFlags traceFlag, double rate) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException("rate");
+        }
+        double[] rates = this.samplingRates.clone();
+        rates[traceFlag.ordinal()] = rate;
+        this.samplingRates = rates;
+    }
+
+    /**
+     * Gets the maximum number of characters of an entry. Defaults to 0, no limit.
+     *
+     * @return The maximum payload size, 0 for no limit.
+     */
+    public int getMaxPayloadSize() {
+        return this.maxPayloadSize;
+    }
+
+    /**
+     * Sets the maximum number of characters of an entry. Longer entries are cut short when they are queued, with a
+     * note giving the number of characters left out. A response body is cut to the same number of bytes before its
+     * text is redacted.
+     *
+     * @param maxPayloadSize The maximum payload size, 0 for no limit.
+     */
+    public void setMaxPayloadSize(int maxPayloadSize) {
+        if (maxPayloadSize < 0) {
+            throw new IllegalArgumentException("maxPayloadSize");
+        }
+        this.maxPayloadSize = maxPayloadSize;
+    }
+
+    /**
+     * Gets the number of entries dropped because the buffer was full.
+     *
+     * @return The dropped entry count.
+     */
+    public long getDroppedCount() {
+        return this.droppedCount.get();
+    }
+
+    /**
+     * Gets the number of entries left out by sampling.
+     *
+     * @return The sampled out entry count.
+     */
+    public long getSampledOutCount() {
+        return this.sampledOutCount.get();
+    }
+
+    /**
+     * Queues a formatted trace message.
+     *
+     * @param traceType    Type of trace message.
+     * @param traceMessage The trace message.
+     */
+    @Override
+    public void trace(String traceType, String traceMessage) {
+        TraceFlags traceFlag = traceFlagsByName.get(traceType);
+        if (traceFlag == null || this.isSampled(traceFlag)) {
+            this.offer(new Entry(traceType, this.truncate(traceMessage), null, null, false));
+        }
+    }
+
+    /**
+     * Queues a trace entry to be formatted on the writer thread.
+     *
+     * @param traceFlag The kind of entry.
+     * @param logEntry  The entry.
+     */
+    void traceEntry(TraceFlags traceFlag, String logEntry) {
+        if (this.isSampled(traceFlag)) {
+            this.offer(new Entry(traceFlag.toString(), this.truncate(logEntry), null, null, true));
+        }
+    }
+
+    /**
+     * Queues a response body to be redacted and formatted on the writer thread.
+     *
+     * @param traceFlag        The kind of entry.
+     * @param stream           The stream the response body was read through.
+     * @param redactedElements The local names of the elements whose text is not traced.
+     */
+    void traceResponseBody(TraceFlags traceFlag, ResponseTraceStream stream, Set<String> redactedElements) {
+        if (this.isSampled(traceFlag)) {
+            int maxPayloadSize = this.maxPayloadSize;
+            if (maxPayloadSize > 0) {
+                stream.truncate(maxPayloadSize);
+            }
+            this.offer(new Entry(traceFlag.toString(), null, stream, redactedElements, true));
+        }
+    }
+
+    /**
+     * Cuts a message short to the maximum payload size.
+     *
+     * @param message The message.
+     * @return The message, with a note giving the number of characters left out if it was cut short.
+     */
+    private String truncate(String message) {
+        int maxPayloadSize = this.maxPayloadSize;
+        if (maxPayloadSize > 0 && message != null && message.length() > maxPayloadSize) {
+            return String.format("%s%n[%d more characters not traced]", message.substring(0, maxPayloadSize),
+                    message.length() - maxPayloadSize);
+        }
+        return message;
+    }
+
+    /**
+     * Determines whether an entry of a kind is traced, counting the entries left out.
+     *
+     * @param traceFlag The kind of entry.
+     * @return true if the entry is traced
+     */
+    private boolean isSampled(TraceFlags traceFlag) {
+        double rate = this.samplingRates[traceFlag.ordinal()];
+        if (rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate)) {
+            return true;
+        }
+        this.sampledOutCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Queues an entry, or drops it if the buffer is full.
+     *
+     * @param entry The entry.
+     */
+    private void offer(Entry entry) {
+        this.activeProducers.incrementAndGet();
+        try {
+            if (this.closed) {
+                this.droppedCount.incrementAndGet();
+                return;
+            }
+
+            while (true) {
+                long position = this.tail.get();
+                int slot = (int) position & this.mask;
+                long sequence = this.sequences.get(slot);
+                if (sequence == position) {
+                    if (this.tail.compareAndSet(position, position + 1)) {
+                        this.entries.lazySet(slot, entry);
+                        this.sequences.set(slot, position + 1);
+                        break;
+                    }
+                }
+                else if (sequence < position) {
+                    this.droppedCount.incrementAndGet();
+                    return;
+                }
+            }
+        }
+        finally {
+            this.activeProducers.decrementAndGet();
+        }
+
+        if (this.writerWaiting) {
+            LockSupport.unpark(this.writer);
+        }
+    }
+
+    /**
+     * Takes the next queued entry.
+     *
+     * @return The entry, or null if there is none.
+     */
+    private Entry poll() {
+        int slot = (int) this.head & this.mask;
+        if (this.sequences.get(slot) != this.head + 1) {
+            return null;
+        }
+        Entry entry = this.entries.get(slot);
+        this.entries.lazySet(slot, null);
+        this.sequences.set(slot, this.head + this.mask + 1);
+        this.head++;
+        return entry;
+    }
+
+    /**
+     * Passes the queued entries to the listener until the listener is closed.
+     */
+    private void writeEntries() {
+        while (true) {
+            Entry entry = this.poll();
+            if (entry == null && this.closed) {
+                // An entry may still be being queued by a thread that saw the listener open.
+                if (this.activeProducers.get() > 0) {
+                    Thread.yield();
+                    continue;
+                }
+                entry = this.poll();
+                if (entry == null) {
+                    return;
+                }
+            }
+            if (entry == null) {
+                this.writerWaiting = true;
+                entry = this.poll();
+                if (entry == null) {
+                    LockSupport.parkNanos(this, WriterParkNanos);
+                    this.writerWaiting = false;
+                    continue;
+                }
+                this.writerWaiting = false;
+            }
+
+            try {
+                this.listener.trace(entry.traceType, this.format(entry));
+            }
+            catch (RuntimeException e) {
+                // Keep writing the entries that follow.
+            }
+        }
+    }
+
+    /**
+     * Formats an entry for the listener.
+     *
+     * @param entry The entry.
+     * @return The trace message.
+     */
+    private String format(Entry entry) {
+        String message = entry.body != null ? entry.body.toTraceString(entry.redactedElements) : entry.message;
+        if (entry.format) {
+            try {
+                message = EwsUtilities.formatLogMessage(entry.traceType, message, entry.threadId,
+                        new Date(entry.time));
+            }
+            catch (Exception e) {
+                // Trace the entry as it is.
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Stops the writer thread once the entries queued have been passed to the listener. Entries traced afterwards are
+     * dropped.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        LockSupport.unpark(this.writer);
+        if (Thread.currentThread() != this.writer) {
+            try {
+                this.writer.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A queued trace entry.
+     */
+    private static final class Entry {
+
+        /**
+         * The kind of entry.
+         */
+        private final String traceType;
+
+        /**
+         * The message, when the entry is not a response body.
+         */
+        private final String message;
+
+        /**
+         * The stream the response body was read through, when the entry is a response body.
+         */
+        private final ResponseTraceStream body;
+
+        /**
+         * The local names of the elements whose text is not traced.
+         */
+        private final Set<String> redactedElements;
+
+        /**
+         * Whether the message still has to be formatted.
+         */
+        private final boolean format;
+
+        /**
+         * The id of the thread that traced the entry.
+         */
+        private final long threadId;
+
+        /**
+         * The time the entry was traced.
+         */
+        private final long time;
+
+        /**
+         * Initializes a new instance of the Entry class.
+         *
+         * @param traceType        The kind of entry.
+         * @param message          The message.
+         * @param body             The stream the response body was read through.
+         * @param redactedElements The local names of the elements whose text is not traced.
+         * @param format           Whether the message still has to be formatted.
+         */
+        private Entry(String traceType, String message, ResponseTraceStream body, Set<String> redactedElements,
+                boolean format) {
+            this.traceType = traceType;
+            this.message = message;
+            this.body = body;
+            this.redactedElements = redactedElements;
+            this.format = format;
+            this.threadId = Thread.currentThread().getId();
+            this.time = System.currentTimeMillis();
+        }
+    }
+}
@@ -54,11 +54,9 @@ protected void loadFreeBusyViewFromXml(EwsServiceXmlReader reader, FreeBusyViewT
 
         String viewTypeString = reader.readElementValue(XmlNamespace.Types, XmlElementNames.FreeBusyViewType);
 
-        for (Object o : FreeBusyViewType.class.getEnumConstants()) {
-            if (o.toString().equals(viewTypeString)) {
-                this.viewType = (FreeBusyViewType) o;
-                break;
-            }
+        FreeBusyViewType parsedViewType = EwsUtilities.parse(FreeBusyViewType.class, viewTypeString);
+        if (parsedViewType != null) {
+            this.viewType = parsedViewType;
         }
         do {
             reader.read();
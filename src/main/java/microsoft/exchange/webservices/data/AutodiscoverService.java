@@ -307,7 +307,7 @@ private URI getRedirectUrl(String domainName) throws EWSHttpException, XMLStream
         HttpWebRequest request = null;
 
         try {
-            request = new HttpClientWebRequest(this.getHttpConnectionManager());
+            request = this.getHttpWebRequestFactory().createHttpWebRequest();
             try {
                 request.setUrl(URI.create(url).toURL());
             } catch (MalformedURLException e) {
@@ -1292,7 +1292,7 @@ private boolean tryGetEnabledEndpointsForHost(String host,
 
             HttpWebRequest request = null;
             try {
-                request = new HttpClientWebRequest(this.getHttpConnectionManager());
+                request = this.getHttpWebRequestFactory().createHttpWebRequest();
                 try {
                     request.setUrl(autoDiscoverUrl.toURL());
                 } catch (MalformedURLException e) {
@@ -105,6 +105,42 @@ public static String encode(byte[] byteArry, int startIndex, int length) {
         return new String(resArry);
     }
 
+    /**
+     * Encodes part of a byte array into a char array, without line breaks. Consecutive parts whose lengths are
+     * multiples of 3 encode to consecutive parts of the same base64 text.
+     *
+     * @param byteArry   The byte array to encode
+     * @param startIndex The starting index of array
+     * @param length     Length of byte array
+     * @param charArry   The char array to write to, with room for (length + 2) / 3 * 4 chars
+     * @param charIndex  The starting index of the char array
+     * @return The number of chars written
+     */
+    static int encode(byte[] byteArry, int startIndex, int length, char[] charArry, int charIndex) {
+        int resIndex = charIndex;
+        int max = startIndex + length;
+        int i = startIndex;
+        for (; i + 2 < max; i += 3) {
+            int x = ((byteArry[i] & 0xff) << 16) | ((byteArry[i + 1] & 0xff) << 8) | (byteArry[i + 2] & 0xff);
+            charArry[resIndex++] = strSet.charAt(x >> 18);
+            charArry[resIndex++] = strSet.charAt((x >> 12) & 0x3f);
+            charArry[resIndex++] = strSet.charAt((x >> 6) & 0x3f);
+            charArry[resIndex++] = strSet.charAt(x & 0x3f);
+        }
+
+        if (i < max) {
+            int x = (byteArry[i] & 0xff) << 16;
+            if (i + 1 < max) {
+                x |= (byteArry[i + 1] & 0xff) << 8;
+            }
+            charArry[resIndex++] = strSet.charAt(x >> 18);
+            charArry[resIndex++] = strSet.charAt((x >> 12) & 0x3f);
+            charArry[resIndex++] = i + 1 < max ? strSet.charAt((x >> 6) & 0x3f) : '=';
+            charArry[resIndex++] = '=';
+        }
+        return resIndex - charIndex;
+    }
+
     /**
      * Decodes String value.
      *
@@ -0,0 +1,181 @@
+/**************************************************************************
+ * copyright file="Base64Decoder.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the Base64Decoder.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Decodes base64 text incrementally, as it arrives in chunks, and writes the decoded bytes to a stream.
+ * <p/>
+ * Characters outside the base64 alphabet, such as line breaks, are skipped. Padding ends a group early, after which
+ * decoding continues with the next group. Only a small buffer is held, whatever the size of the content.
+ */
+final class Base64Decoder {
+
+    /**
+     * The size of the buffer of decoded bytes.
+     */
+    private static final int BufferSize = 3 * 1024;
+
+    /**
+     * The value of each ASCII character in the base64 alphabet, -1 for characters outside it.
+     */
+    private static final byte[] values = new byte[128];
+
+    static {
+        Arrays.fill(values, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            values[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    /**
+     * The stream the decoded bytes are written to.
+     */
+    private final OutputStream outputStream;
+
+    /**
+     * The decoded bytes not written yet.
+     */
+    private final byte[] buffer = new byte[BufferSize];
+
+    /**
+     * The number of bytes in the buffer.
+     */
+    private int position;
+
+    /**
+     * The bits of the group being decoded.
+     */
+    private int bits;
+
+    /**
+     * The number of characters of the group being decoded.
+     */
+    private int groupLength;
+
+    /**
+     * Initializes a new instance of the Base64Decoder class.
+     *
+     * @param outputStream The stream to write the decoded bytes to.
+     */
+    Base64Decoder(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    /**
+     * Decodes a base64 string.
+     *
+     * @param value The base64 string.
+     * @return The decoded bytes.
+     */
+    static byte[] decode(String value) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(value.length() / 4 * 3);
+        Base64Decoder decoder = new Base64Decoder(stream);
+        try {
+            for (int i = 0; i < value.length(); i++) {
+                decoder.decode(value.charAt(i));
+            }
+            decoder.finish();
+        }
+        catch (IOException e) {
+            // A ByteArrayOutputStream does not throw.
+            throw new IllegalStateException(e);
+        }
+        return stream.toByteArray();
+    }
+
+    /**
+     * Decodes a chunk of base64 text.
+     *
+     * @param chars  The characters.
+     * @param offset The offset of the chunk.
+     * @param length The length of the chunk.
+     * @throws IOException if the decoded bytes cannot be written
+     */
+    void decode(char[] chars, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            this.decode(chars[i]);
+        }
+    }
+
+    /**
+     * Decodes a character of base64 text.
+     *
+     * @param c The character.
+     * @throws IOException if the decoded bytes cannot be written
+     */
+    private void decode(char c) throws IOException {
+        if (c == '=') {
+            this.endGroup();
+            return;
+        }
+
+        int value = c < 128 ? values[c] : -1;
+        if (value < 0) {
+            return;
+        }
+
+        this.bits = (this.bits << 6) | value;
+        if (++this.groupLength == 4) {
+            if (this.position > BufferSize - 3) {
+                this.flush();
+            }
+            this.buffer[this.position++] = (byte) (this.bits >> 16);
+            this.buffer[this.position++] = (byte) (this.bits >> 8);
+            this.buffer[this.position++] = (byte) this.bits;
+            this.bits = 0;
+            this.groupLength = 0;
+        }
+    }
+
+    /**
+     * Writes the bytes of a group that ended before its fourth character.
+     *
+     * @throws IOException if the decoded bytes cannot be written
+     */
+    private void endGroup() throws IOException {
+        if (this.groupLength >= 2) {
+            if (this.position > BufferSize - 2) {
+                this.flush();
+            }
+            int groupBits = this.bits << (6 * (4 - this.groupLength));
+            this.buffer[this.position++] = (byte) (groupBits >> 16);
+            if (this.groupLength == 3) {
+                this.buffer[this.position++] = (byte) (groupBits >> 8);
+            }
+        }
+        this.bits = 0;
+        this.groupLength = 0;
+    }
+
+    /**
+     * Writes the remaining decoded bytes. The stream itself is not flushed.
+     *
+     * @throws IOException if the decoded bytes cannot be written
+     */
+    void finish() throws IOException {
+        this.endGroup();
+        this.flush();
+    }
+
+    /**
+     * Writes the buffered bytes.
+     *
+     * @throws IOException if the decoded bytes cannot be written
+     */
+    private void flush() throws IOException {
+        if (this.position > 0) {
+            this.outputStream.write(this.buffer, 0, this.position);
+            this.position = 0;
+        }
+    }
+}
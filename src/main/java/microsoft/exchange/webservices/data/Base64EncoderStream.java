@@ -6,8 +6,6 @@
  **************************************************************************/
 package microsoft.exchange.webservices.data;
 
-import java.util.Vector;
-
 /**
  * The Class Base64EncoderStream.
  */
@@ -38,64 +36,6 @@ private static char encode(byte uc) {
 
     ;
 
-    /**
-     * Checks if is base64.
-     *
-     * @param c the c
-     * @return true, if is base64
-     */
-    private static boolean isBase64(char c) {
-        if (c >= 'A' && c <= 'Z') {
-            return true;
-        }
-        if (c >= 'a' && c <= 'z') {
-            return true;
-        }
-        if (c >= '0' && c <= '9') {
-            return true;
-        }
-        if (c == '+') {
-            return true;
-        }
-        ;
-        if (c == '/') {
-            return true;
-        }
-        ;
-        if (c == '=') {
-            return true;
-        }
-        ;
-        return false;
-    }
-
-    ;
-
-    /**
-     * Decode.
-     *
-     * @param c the c
-     * @return the byte
-     */
-    private static byte decode(char c) {
-        if (c >= 'A' && c <= 'Z') {
-            return (byte) (c - 'A');
-        }
-        if (c >= 'a' && c <= 'z') {
-            return (byte) (c - 'a' + 26);
-        }
-        if (c >= '0' && c <= '9') {
-            return (byte) (c - '0' + 52);
-        }
-        if (c == '+') {
-            return 62;
-        }
-        ;
-        return 63;
-    }
-
-    ;
-
     /**
      * Encode.
      *
@@ -165,51 +105,7 @@ public static String encode(byte[] vby) {
      * @return size
      */
     public static byte[] decode(String dstr) {
-        StringBuffer str = new StringBuffer();
-        for (int j = 0; j < dstr.length(); j++) {
-            if (isBase64(dstr.charAt(j))) {
-                str.append(dstr.charAt(j));
-            }
-        }
-        Vector<Byte> retval = new Vector();
-        if (str.length() == 0) {
-            return new byte[retval.size()];
-        }
-        for (int i = 0; i < str.length(); i += 4) {
-            char c1 = 'A', c2 = 'A', c3 = 'A', c4 = 'A';
-            c1 = str.charAt(i);
-            if (i + 1 < str.length()) {
-                c2 = str.charAt(i + 1);
-            }
-            ;
-            if (i + 2 < str.length()) {
-                c3 = str.charAt(i + 2);
-            }
-            ;
-            if (i + 3 < str.length()) {
-                c4 = str.charAt(i + 3);
-            }
-            ;
-            byte by1 = 0, by2 = 0, by3 = 0, by4 = 0;
-            by1 = decode(c1);
-            by2 = decode(c2);
-            by3 = decode(c3);
-            by4 = decode(c4);
-            retval.add(Byte.valueOf((byte) ((byte) (by1 << 2) | (byte) (by2 >> 4))));
-            if (c3 != '=') {
-                retval.add(Byte.valueOf((byte) (((by2 & 0xf) << 4) | (by3 >> 2))));
-            }
-            if (c4 != '=') {
-                retval.add(Byte.valueOf((byte) (((by3 & 0x3) << 6) | by4)));
-            }
-            ;
-        }
-        ;
-        byte[] byteArry = new byte[retval.size()];
-        for (int i = 0; i < retval.size(); i++) {
-            byteArry[i] = retval.get(i);
-        }
-        return byteArry;
+        return Base64Decoder.decode(dstr);
     }
 
     ;
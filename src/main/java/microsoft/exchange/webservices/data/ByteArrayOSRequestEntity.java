@@ -17,6 +17,11 @@ class ByteArrayOSRequestEntity implements RequestEntity {
 
     private ByteArrayOutputStream os = null;
 
+    /**
+     * The request sending the body, null if it is not recorded.
+     */
+    private HttpWebRequest request = null;
+
     /**
      * Constructor for ByteArrayOSRequestEntity.
      */
@@ -25,6 +30,17 @@ class ByteArrayOSRequestEntity implements RequestEntity {
         this.os = (ByteArrayOutputStream) os;
     }
 
+    /**
+     * Constructor for ByteArrayOSRequestEntity that records when the request sends the body.
+     *
+     * @param os      the body
+     * @param request the request sending the body
+     */
+    ByteArrayOSRequestEntity(OutputStream os, HttpWebRequest request) {
+        this(os);
+        this.request = request;
+    }
+
     @Override
     public long getContentLength() {
         return os.size();
@@ -42,7 +58,13 @@ public boolean isRepeatable() {
 
     @Override
     public void writeRequest(OutputStream out) throws IOException {
+        if (request != null) {
+            request.onRequestBodyStarted();
+        }
         os.writeTo(out);
+        if (request != null) {
+            request.onRequestBodySent(os.size());
+        }
     }
 
 }
@@ -3,6 +3,13 @@
 import java.io.IOException;
 import java.util.concurrent.Callable;
 
+/**
+ * Executes a web request as a callable.
+ *
+ * @deprecated Asynchronous requests run on the async executor of their service and no longer use this class. It
+ * will be removed in a future release.
+ */
+@Deprecated
 @SuppressWarnings("ALL")
 public class CallableMethod implements Callable {
     HttpWebRequest request;
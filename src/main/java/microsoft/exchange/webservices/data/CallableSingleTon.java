@@ -9,6 +9,13 @@
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+/**
+ * Creates the executor of web requests run as a callable.
+ *
+ * @deprecated Asynchronous requests run on the async executor of their service and no longer use this class. It
+ * will be removed in a future release.
+ */
+@Deprecated
 @SuppressWarnings("ALL")
 public class CallableSingleTon {
     static ExecutorService es;
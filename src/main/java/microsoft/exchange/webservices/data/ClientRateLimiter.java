@@ -0,0 +1,359 @@
+/**************************************************************************
+ * copyright file="ClientRateLimiter.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the ClientRateLimiter.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Represents a client side limit on the requests sent on behalf of a key, such as a mailbox or an account.
+ * <p/>
+ * Each key gets its own token bucket, which refills at a steady rate up to a burst size, and its own cap on the
+ * number of requests in progress at the same time. Requests for one key therefore never use up the budget of
+ * another. Keys that have been idle long enough for their bucket to refill are dropped about once a second, so the
+ * limiter can be used for a large number of mailboxes.
+ */
+public class ClientRateLimiter {
+
+    /**
+     * The number of tracked keys above which idle keys are dropped.
+     */
+    private static final int SweepThreshold = 1024;
+
+    /**
+     * The time between two sweeps of the idle keys, in nanoseconds.
+     */
+    private static final long SweepIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The number of requests per second allowed per key, 0 for no limit.
+     */
+    private final double requestsPerSecond;
+
+    /**
+     * The number of requests that may be sent at once per key after it has been idle.
+     */
+    private final int burstSize;
+
+    /**
+     * The number of requests per key in progress at the same time, 0 for no limit.
+     */
+    private final int maxConcurrentRequests;
+
+    /**
+     * The buckets, per key.
+     */
+    private final ConcurrentMap<Object, Bucket> buckets = new ConcurrentHashMap<Object, Bucket>();
+
+    /**
+     * The number of requests that had to wait.
+     */
+    private final AtomicLong delayedCount = new AtomicLong();
+
+    /**
+     * The total time requests waited, in nanoseconds.
+     */
+    private final AtomicLong delayNanos = new AtomicLong();
+
+    /**
+     * The time from which the next sweep may run, in System.nanoTime() terms.
+     */
+    private final AtomicLong nextSweepNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * Initializes a new instance of the ClientRateLimiter class.
+     *
+     * @param requestsPerSecond     The number of requests per second allowed per key, 0 for no limit.
+     * @param burstSize             The number of requests that may be sent at once per key after it has been idle.
+     * @param maxConcurrentRequests The number of requests per key in progress at the same time, 0 for no limit.
+     */
+    public ClientRateLimiter(double requestsPerSecond, int burstSize, int maxConcurrentRequests) {
+        if (requestsPerSecond < 0) {
+            throw new IllegalArgumentException("requestsPerSecond");
+        }
+        if (burstSize < 1) {
+            throw new IllegalArgumentException("burstSize");
+        }
+        if (maxConcurrentRequests < 0) {
+            throw new IllegalArgumentException("maxConcurrentRequests");
+        }
+        this.requestsPerSecond = requestsPerSecond;
+        this.burstSize = burstSize;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Waits until a request may be sent for the given key. The returned permit must be released once the request
+     * has completed.
+     *
+     * @param key The key, compared with equals.
+     * @return The permit.
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public Permit acquire(Object key) throws InterruptedException {
+        EwsUtilities.EwsAssert(key != null, "ClientRateLimiter.acquire", "key is null");
+
+        if (this.buckets.size() > SweepThreshold) {
+            long now = System.nanoTime();
+            long nextSweep = this.nextSweepNanos.get();
+            if (now - nextSweep >= 0 && this.nextSweepNanos.compareAndSet(nextSweep, now + SweepIntervalNanos)) {
+                this.sweep();
+            }
+        }
+
+        Bucket bucket;
+        while (true) {
+            bucket = this.buckets.get(key);
+            if (bucket == null) {
+                Bucket newBucket = new Bucket();
+                bucket = this.buckets.putIfAbsent(key, newBucket);
+                if (bucket == null) {
+                    bucket = newBucket;
+                }
+            }
+            if (bucket.retain()) {
+                break;
+            }
+        }
+
+        long start = System.nanoTime();
+        boolean delayed = false;
+        long waitNanos = bucket.reserve();
+        try {
+            if (waitNanos > 0) {
+                delayed = true;
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            if (bucket.concurrency != null && !bucket.concurrency.tryAcquire()) {
+                delayed = true;
+                bucket.concurrency.acquire();
+            }
+        }
+        catch (InterruptedException e) {
+            // The request is not sent, so its token goes back to the requests waiting after it.
+            bucket.refund();
+            bucket.release();
+            throw e;
+        }
+
+        if (delayed) {
+            this.delayedCount.incrementAndGet();
+            this.delayNanos.addAndGet(System.nanoTime() - start);
+        }
+        return new Permit(bucket);
+    }
+
+    /**
+     * Drops the buckets of keys that have no requests in progress and a full bucket. A sweep runs at most once per
+     * SweepIntervalNanos, on the thread of the first request after the interval, so keys that stay in use do not
+     * make every request scan the map.
+     */
+    private void sweep() {
+        Iterator<Map.Entry<Object, Bucket>> entries = this.buckets.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Object, Bucket> entry = entries.next();
+            if (entry.getValue().retire()) {
+                this.buckets.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Gets the number of requests per second allowed per key.
+     *
+     * @return The rate, 0 for no limit.
+     */
+    public double getRequestsPerSecond() {
+        return this.requestsPerSecond;
+    }
+
+    /**
+     * Gets the number of requests that may be sent at once per key after it has been idle.
+     *
+     * @return The burst size.
+     */
+    public int getBurstSize() {
+        return this.burstSize;
+    }
+
+    /**
+     * Gets the number of requests per key in progress at the same time.
+     *
+     * @return The concurrency cap, 0 for no limit.
+     */
+    public int getMaxConcurrentRequests() {
+        return this.maxConcurrentRequests;
+    }
+
+    /**
+     * Gets the number of requests that had to wait for the limiter.
+     *
+     * @return The delayed count.
+     */
+    public long getDelayedCount() {
+        return this.delayedCount.get();
+    }
+
+    /**
+     * Gets the total time requests waited for the limiter, in milliseconds.
+     *
+     * @return The total delay.
+     */
+    public long getTotalDelayMilliseconds() {
+        return TimeUnit.NANOSECONDS.toMillis(this.delayNanos.get());
+    }
+
+    /**
+     * Gets the number of keys currently tracked.
+     *
+     * @return The key count.
+     */
+    public int getKeyCount() {
+        return this.buckets.size();
+    }
+
+    /**
+     * The token bucket and concurrency cap of a single key.
+     */
+    private final class Bucket {
+
+        /**
+         * The cap on requests in progress, null when there is no cap.
+         */
+        final Semaphore concurrency =
+                maxConcurrentRequests > 0 ? new Semaphore(maxConcurrentRequests, true) : null;
+
+        /**
+         * The tokens available. A negative value counts the requests that are waiting for a token.
+         */
+        private double tokens = burstSize;
+
+        /**
+         * The time the tokens were last refilled.
+         */
+        private long refilledNanos = System.nanoTime();
+
+        /**
+         * The number of requests holding or waiting for this bucket.
+         */
+        private int users;
+
+        /**
+         * Whether this bucket has been dropped from the map.
+         */
+        private boolean retired;
+
+        /**
+         * Registers a request with this bucket.
+         *
+         * @return false if the bucket has been dropped and a new one must be looked up
+         */
+        synchronized boolean retain() {
+            if (this.retired) {
+                return false;
+            }
+            this.users++;
+            return true;
+        }
+
+        /**
+         * Takes a token, reserving the next one if none is available.
+         *
+         * @return The time to wait for the token, in nanoseconds.
+         */
+        synchronized long reserve() {
+            if (requestsPerSecond <= 0) {
+                return 0;
+            }
+            this.refill();
+            this.tokens -= 1;
+            return this.tokens >= 0 ? 0 : (long) (-this.tokens / requestsPerSecond * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        /**
+         * Gives back a token taken by reserve() for a request that is not sent.
+         */
+        synchronized void refund() {
+            if (requestsPerSecond <= 0) {
+                return;
+            }
+            this.refill();
+            this.tokens = Math.min(burstSize, this.tokens + 1);
+        }
+
+        /**
+         * Unregisters a request from this bucket.
+         */
+        synchronized void release() {
+            this.users--;
+        }
+
+        /**
+         * Marks this bucket as dropped if it is idle.
+         *
+         * @return true if the bucket can be dropped
+         */
+        synchronized boolean retire() {
+            if (this.users == 0) {
+                this.refill();
+                this.retired = requestsPerSecond <= 0 || this.tokens >= burstSize;
+            }
+            return this.retired;
+        }
+
+        /**
+         * Adds the tokens that have accrued since the last refill.
+         */
+        private void refill() {
+            if (requestsPerSecond <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            this.tokens = Math.min(burstSize,
+                    this.tokens + (now - this.refilledNanos) * requestsPerSecond / TimeUnit.SECONDS.toNanos(1));
+            this.refilledNanos = now;
+        }
+    }
+
+    /**
+     * Represents the right to send a request, which must be released once the request has completed.
+     */
+    public static final class Permit {
+
+        /**
+         * The bucket the permit was taken from, null once released.
+         */
+        private Bucket bucket;
+
+        /**
+         * Initializes a new instance of the Permit class.
+         *
+         * @param bucket The bucket.
+         */
+        private Permit(Bucket bucket) {
+            this.bucket = bucket;
+        }
+
+        /**
+         * Releases the permit. Releasing it again has no effect.
+         */
+        public synchronized void release() {
+            if (this.bucket != null) {
+                if (this.bucket.concurrency != null) {
+                    this.bucket.concurrency.release();
+                }
+                this.bucket.release();
+                this.bucket = null;
+            }
+        }
+    }
+}
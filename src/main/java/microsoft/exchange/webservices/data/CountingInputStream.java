@@ -0,0 +1,81 @@
+/**************************************************************************
+ * copyright file="CountingInputStream.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the CountingInputStream.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A stream that counts the bytes read through it.
+ */
+final class CountingInputStream extends FilterInputStream {
+
+    /**
+     * The number of bytes read.
+     */
+    private long count;
+
+    /**
+     * Initializes a new instance of the CountingInputStream class.
+     *
+     * @param stream The stream.
+     */
+    CountingInputStream(InputStream stream) {
+        super(stream);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int data = this.in.read();
+        if (data != -1) {
+            this.count++;
+        }
+        return data;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int bytesRead = this.in.read(buffer, offset, length);
+        if (bytesRead > 0) {
+            this.count += bytesRead;
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = this.in.skip(n);
+        if (skipped > 0) {
+            this.count += skipped;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Gets the number of bytes read.
+     *
+     * @return The count.
+     */
+    long getCount() {
+        return this.count;
+    }
+}
@@ -0,0 +1,382 @@
+/**************************************************************************
+ * copyright file="EwsDateTimeCodec.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the EwsDateTimeCodec.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Parses and formats the xs:dateTime and xs:date values used by EWS.
+ * <p/>
+ * Values are read field by field, so parsing allocates nothing but the result and does not go through exceptions
+ * to try one pattern after another. Fractional seconds of any length are accepted and kept to the millisecond. The
+ * time zone may be "Z", an offset such as "-08:00", or missing, in which case a default time zone applies. The
+ * methods are static and thread safe.
+ */
+public final class EwsDateTimeCodec {
+
+    /**
+     * Marks a value that has no time zone.
+     */
+    private static final int NoOffset = Integer.MIN_VALUE;
+
+    /**
+     * The number of milliseconds in a day.
+     */
+    private static final long MillisPerDay = 24L * 60 * 60 * 1000;
+
+    /**
+     * The UTC time zone.
+     */
+    private static final TimeZone utc = TimeZone.getTimeZone("UTC");
+
+    /**
+     * Prevents a default instance of the EwsDateTimeCodec class from being created.
+     */
+    private EwsDateTimeCodec() {
+    }
+
+    /**
+     * Parses an xs:dateTime or xs:date value. A value without a time zone is taken to be in UTC.
+     *
+     * @param value The value.
+     * @return The date.
+     * @throws IllegalArgumentException if the value is not a valid date
+     */
+    public static Date parseDateTime(String value) {
+        return parseDateTime(value, utc);
+    }
+
+    /**
+     * Parses an xs:dateTime or xs:date value.
+     *
+     * @param value           The value.
+     * @param defaultTimeZone The time zone of a value without a time zone.
+     * @return The date.
+     * @throws IllegalArgumentException if the value is not a valid date
+     */
+    public static Date parseDateTime(String value, TimeZone defaultTimeZone) {
+        int zoneStart = getZoneStart(value);
+        long localMillis = parseLocalMillis(value, zoneStart);
+        int offset = parseOffset(value, zoneStart);
+        return new Date(localMillis - (offset != NoOffset ? offset : getOffset(defaultTimeZone, localMillis)));
+    }
+
+    /**
+     * Parses an xs:dateTime or xs:date value, ignoring its time zone, as a time in the given time zone.
+     *
+     * @param value    The value.
+     * @param timeZone The time zone.
+     * @return The date.
+     * @throws IllegalArgumentException if the value is not a valid date
+     */
+    public static Date parseUnbiasedDateTime(String value, TimeZone timeZone) {
+        long localMillis = parseLocalMillis(value, getZoneStart(value));
+        return new Date(localMillis - getOffset(timeZone, localMillis));
+    }
+
+    /**
+     * Parses an xs:dateTime or xs:date value. A value without a time zone is taken to be in UTC.
+     *
+     * @param value The value.
+     * @return The instant.
+     * @throws IllegalArgumentException if the value is not a valid date
+     */
+    public static Instant parseInstant(String value) {
+        return parseOffsetDateTime(value).toInstant();
+    }
+
+    /**
+     * Parses an xs:dateTime or xs:date value, keeping its offset. A value without a time zone is taken to be in UTC.
+     *
+     * @param value The value.
+     * @return The date and time with its offset.
+     * @throws IllegalArgumentException if the value is not a valid date
+     */
+    public static OffsetDateTime parseOffsetDateTime(String value) {
+        int zoneStart = getZoneStart(value);
+        long localMillis = parseLocalMillis(value, zoneStart);
+        int offset = parseOffset(value, zoneStart);
+        ZoneOffset zoneOffset = offset != NoOffset ? ZoneOffset.ofTotalSeconds(offset / 1000) : ZoneOffset.UTC;
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(localMillis), ZoneOffset.UTC)
+                .withOffsetSameLocal(zoneOffset);
+    }
+
+    /**
+     * Parses an xs:dateTime or xs:date value, ignoring its time zone.
+     *
+     * @param value The value.
+     * @return The date and time.
+     * @throws IllegalArgumentException if the value is not a valid date
+     */
+    public static LocalDateTime parseLocalDateTime(String value) {
+        long localMillis = parseLocalMillis(value, getZoneStart(value));
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(localMillis), ZoneOffset.UTC);
+    }
+
+    /**
+     * Formats a date as an xs:dateTime value in UTC, in the form yyyy-MM-ddTHH:mm:ssZ.
+     *
+     * @param date The date.
+     * @return The value.
+     */
+    public static String formatDateTime(Date date) {
+        return format(date.getTime(), true);
+    }
+
+    /**
+     * Formats an instant as an xs:dateTime value in UTC, in the form yyyy-MM-ddTHH:mm:ssZ.
+     *
+     * @param instant The instant.
+     * @return The value.
+     */
+    public static String formatDateTime(Instant instant) {
+        return format(instant.toEpochMilli(), true);
+    }
+
+    /**
+     * Formats a date as an xs:date value in UTC, in the form yyyy-MM-ddZ.
+     *
+     * @param date The date.
+     * @return The value.
+     */
+    public static String formatDate(Date date) {
+        return format(date.getTime(), false);
+    }
+
+    /**
+     * Gets the index of the time zone of a value: a trailing "Z", or an offset of the form +HH:mm or -HH:mm.
+     *
+     * @param value The value.
+     * @return The index of the time zone, or the length of the value if it has none.
+     */
+    private static int getZoneStart(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value");
+        }
+
+        int length = value.length();
+        if (length > 0 && (value.charAt(length - 1) == 'Z' || value.charAt(length - 1) == 'z')) {
+            return length - 1;
+        }
+        if (length >= 6 && value.charAt(length - 3) == ':') {
+            char sign = value.charAt(length - 6);
+            if (sign == '+' || sign == '-') {
+                return length - 6;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Parses the date and time of a value as if it were in UTC.
+     *
+     * @param value The value.
+     * @param end   The index of the time zone of the value.
+     * @return The milliseconds since the epoch.
+     */
+    private static long parseLocalMillis(String value, int end) {
+        int yearEnd = value.indexOf('-', 1);
+        if (yearEnd < 4 || yearEnd > end || yearEnd > 9) {
+            throw invalidValue(value);
+        }
+        int year = parseDigits(value, 0, yearEnd);
+        int month = parseDigits(value, yearEnd + 1, yearEnd + 3);
+        int day = parseDigits(value, yearEnd + 4, yearEnd + 6);
+        if (value.charAt(yearEnd + 3) != '-' || month < 1 || month > 12 || day < 1 || day > 31) {
+            throw invalidValue(value);
+        }
+
+        long millis = daysFromCivil(year, month, day) * MillisPerDay;
+        int index = yearEnd + 6;
+        if (index == end) {
+            return millis;
+        }
+
+        if (end - index < 9 || value.charAt(index) != 'T' || value.charAt(index + 3) != ':' ||
+                value.charAt(index + 6) != ':') {
+            throw invalidValue(value);
+        }
+        int hour = parseDigits(value, index + 1, index + 3);
+        int minute = parseDigits(value, index + 4, index + 6);
+        int second = parseDigits(value, index + 7, index + 9);
+        if (hour > 24 || minute > 59 || second > 60) {
+            throw invalidValue(value);
+        }
+        millis += ((hour * 60L + minute) * 60 + second) * 1000;
+
+        index += 9;
+        if (index < end) {
+            // Fractional seconds, kept to the millisecond.
+            if (value.charAt(index) != '.' || index + 1 == end) {
+                throw invalidValue(value);
+            }
+            int fraction = 0;
+            for (int i = index + 1; i < end; i++) {
+                int digit = value.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw invalidValue(value);
+                }
+                if (i <= index + 3) {
+                    fraction = fraction * 10 + digit;
+                }
+            }
+            for (int i = end; i <= index + 3; i++) {
+                fraction *= 10;
+            }
+            millis += fraction;
+        }
+        return millis;
+    }
+
+    /**
+     * Parses the time zone of a value.
+     *
+     * @param value     The value.
+     * @param zoneStart The index of the time zone.
+     * @return The offset from UTC in milliseconds, or NoOffset if the value has no time zone.
+     */
+    private static int parseOffset(String value, int zoneStart) {
+        if (zoneStart == value.length()) {
+            return NoOffset;
+        }
+        if (zoneStart == value.length() - 1) {
+            return 0;
+        }
+
+        int hours = parseDigits(value, zoneStart + 1, zoneStart + 3);
+        int minutes = parseDigits(value, zoneStart + 4, zoneStart + 6);
+        if (hours > 14 || minutes > 59) {
+            throw invalidValue(value);
+        }
+        int offset = (hours * 60 + minutes) * 60 * 1000;
+        return value.charAt(zoneStart) == '-' ? -offset : offset;
+    }
+
+    /**
+     * Gets the offset from UTC of a time zone at a given local time.
+     *
+     * @param timeZone    The time zone.
+     * @param localMillis The local time, in milliseconds since the epoch as if it were in UTC.
+     * @return The offset in milliseconds.
+     */
+    private static int getOffset(TimeZone timeZone, long localMillis) {
+        // A local time skipped by a transition to daylight saving time is taken to be in standard time, and a local
+        // time repeated by the transition back is taken to be the later one, as Calendar does.
+        int offset = timeZone.getOffset(localMillis - timeZone.getRawOffset());
+        return timeZone.getOffset(localMillis - offset);
+    }
+
+    /**
+     * Parses a range of decimal digits.
+     *
+     * @param value The value.
+     * @param start The index of the first digit.
+     * @param end   The index after the last digit.
+     * @return The number.
+     */
+    private static int parseDigits(String value, int start, int end) {
+        if (end > value.length()) {
+            throw invalidValue(value);
+        }
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalidValue(value);
+            }
+            number = number * 10 + digit;
+        }
+        return number;
+    }
+
+    /**
+     * Creates the exception thrown for a value that is not a valid date.
+     *
+     * @param value The value.
+     * @return The exception.
+     */
+    private static IllegalArgumentException invalidValue(String value) {
+        return new IllegalArgumentException(String.format("Date String %s not in valid UTC/local format", value));
+    }
+
+    /**
+     * Formats a time in UTC.
+     *
+     * @param millis      The milliseconds since the epoch.
+     * @param includeTime Whether to include the time of day.
+     * @return The value.
+     */
+    private static String format(long millis, boolean includeTime) {
+        long days = Math.floorDiv(millis, MillisPerDay);
+        int millisOfDay = (int) Math.floorMod(millis, MillisPerDay);
+
+        // Converts the days since the epoch to a civil date.
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+
+        StringBuilder builder = new StringBuilder(20);
+        appendDigits(builder, year, 4).append('-');
+        appendDigits(builder, month, 2).append('-');
+        appendDigits(builder, day, 2);
+        if (includeTime) {
+            int seconds = millisOfDay / 1000;
+            builder.append('T');
+            appendDigits(builder, seconds / 3600, 2).append(':');
+            appendDigits(builder, seconds / 60 % 60, 2).append(':');
+            appendDigits(builder, seconds % 60, 2);
+        }
+        return builder.append('Z').toString();
+    }
+
+    /**
+     * Appends a number padded with zeros.
+     *
+     * @param builder The builder.
+     * @param number  The number.
+     * @param width   The minimum number of digits.
+     * @return The builder.
+     */
+    private static StringBuilder appendDigits(StringBuilder builder, long number, int width) {
+        if (number < 0) {
+            builder.append('-');
+            number = -number;
+        }
+        for (long limit = 10; width > 1 && number < limit; limit *= 10, width--) {
+            builder.append('0');
+        }
+        return builder.append(number);
+    }
+
+    /**
+     * Gets the number of days from the epoch to a civil date.
+     *
+     * @param year  The year.
+     * @param month The month, from 1.
+     * @param day   The day of the month, from 1.
+     * @return The number of days since 1970-01-01.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
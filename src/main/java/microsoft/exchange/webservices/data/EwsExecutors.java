@@ -0,0 +1,52 @@
+/**************************************************************************
+ * copyright file="EwsExecutors.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the EwsExecutors.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates executors for the asynchronous requests and the streaming subscription connections of a service.
+ * <p/>
+ * On Java 21 and later, the multi-release jar replaces this class with one that runs each task on its own virtual
+ * thread. A blocking call then parks its virtual thread instead of holding a platform thread, so a service can have
+ * many thousands of calls and streaming connections in progress on a few carrier threads:
+ * <pre>
+ *     if (EwsExecutors.isVirtualThreadSupported()) {
+ *         ExecutorService executor = EwsExecutors.newVirtualThreadExecutor();
+ *         service.setAsyncExecutor(executor);
+ *         service.setStreamingExecutor(executor);
+ *     }
+ * </pre>
+ */
+public final class EwsExecutors {
+
+    /**
+     * Prevents a default instance of the EwsExecutors class from being created.
+     */
+    private EwsExecutors() {
+    }
+
+    /**
+     * Gets a value indicating whether virtual threads are supported by the running Java version.
+     *
+     * @return true on Java 21 and later
+     */
+    public static boolean isVirtualThreadSupported() {
+        return false;
+    }
+
+    /**
+     * Creates an executor that runs each task on a new virtual thread. The executor is not bounded, use the rate
+     * limiters of the service to limit the number of requests in progress.
+     *
+     * @return The executor.
+     * @throws UnsupportedOperationException if the running Java version does not support virtual threads
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        throw new UnsupportedOperationException(Strings.VirtualThreadsNotSupported);
+    }
+}
@@ -0,0 +1,142 @@
+/**************************************************************************
+ * copyright file="EwsFlightRecorder.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the EwsFlightRecorder.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * Emits the Java Flight Recorder events of the service requests, the HTTP transport, the streaming subscription
+ * connections and the XML parsing, so a recording can tie GC pressure and thread stalls to EWS operations and
+ * mailboxes.
+ * <p/>
+ * This class does nothing: on Java 11 and later, the multi-release jar replaces it with one that emits the events in
+ * the "EWS" category. A begin method returns null when its event is not recorded, and the matching end method ignores
+ * a null event, so callers only gather the fields of an event when it is recorded.
+ */
+final class EwsFlightRecorder {
+
+    /**
+     * Prevents a default instance of the EwsFlightRecorder class from being created.
+     */
+    private EwsFlightRecorder() {
+    }
+
+    /**
+     * Begins the event of an attempt of a service request.
+     *
+     * @return The event, null if it is not recorded.
+     */
+    static Object beginRequest() {
+        return null;
+    }
+
+    /**
+     * Ends and commits the event of an attempt of a service request.
+     *
+     * @param event   The event, can be null.
+     * @param metrics The metrics of the attempt.
+     */
+    static void endRequest(Object event, RequestMetrics metrics) {
+    }
+
+    /**
+     * Begins the event of the parsing of a response.
+     *
+     * @return The event, null if it is not recorded.
+     */
+    static Object beginParse() {
+        return null;
+    }
+
+    /**
+     * Ends and commits the event of the parsing of a response.
+     *
+     * @param event     The event, can be null.
+     * @param operation The name of the operation.
+     */
+    static void endParse(Object event, String operation) {
+    }
+
+    /**
+     * Begins the event of the acquisition of a connection from a connection pool.
+     *
+     * @return The event, null if it is not recorded.
+     */
+    static Object beginConnectionAcquire() {
+        return null;
+    }
+
+    /**
+     * Ends and commits the event of the acquisition of a connection from a connection pool.
+     *
+     * @param event  The event, can be null.
+     * @param host   The host of the connection.
+     * @param reused Whether the connection was already open.
+     */
+    static void endConnectionAcquire(Object event, String host, boolean reused) {
+    }
+
+    /**
+     * Begins the event of an NTLM handshake, when the first NTLM message is sent.
+     *
+     * @return The event, null if it is not recorded.
+     */
+    static Object beginNtlmHandshake() {
+        return null;
+    }
+
+    /**
+     * Ends and commits the event of an NTLM handshake, when the challenge of the server is answered.
+     *
+     * @param event    The event, can be null.
+     * @param domain   The domain of the credentials.
+     * @param userName The user name of the credentials.
+     */
+    static void endNtlmHandshake(Object event, String domain, String userName) {
+    }
+
+    /**
+     * Begins the event of a TLS handshake.
+     *
+     * @return The event, null if it is not recorded.
+     */
+    static Object beginTlsHandshake() {
+        return null;
+    }
+
+    /**
+     * Ends and commits the event of a TLS handshake.
+     *
+     * @param event   The event, can be null.
+     * @param session The session negotiated.
+     * @param resumed Whether a cached session was resumed.
+     */
+    static void endTlsHandshake(Object event, SSLSession session, boolean resumed) {
+    }
+
+    /**
+     * Emits the event of a response received on a streaming subscription connection.
+     *
+     * @param operation The name of the operation.
+     * @param frame     The number of responses received on the connection, including this one.
+     */
+    static void streamingFrameReceived(String operation, int frame) {
+    }
+
+    /**
+     * Emits the event of the disconnection of a streaming subscription connection.
+     *
+     * @param operation      The name of the operation.
+     * @param reason         The reason of the disconnection.
+     * @param exception      The exception that caused the disconnection, can be null.
+     * @param connectedNanos How long the connection was connected, in nanoseconds.
+     * @param frames         The number of responses received on the connection.
+     */
+    static void streamingDisconnected(String operation, HangingRequestDisconnectReason reason, Exception exception,
+            long connectedNanos, int frames) {
+    }
+}
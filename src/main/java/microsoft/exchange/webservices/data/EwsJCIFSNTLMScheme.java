@@ -47,6 +47,11 @@ public class EwsJCIFSNTLMScheme implements AuthScheme {
      */
     private int state;
 
+    /**
+     * The flight recorder event of the handshake in progress, null if it is not recorded.
+     */
+    private Object handshakeEvent;
+
     public EwsJCIFSNTLMScheme() throws AuthenticationException {
         // Check if JCIFS is present. If not present, do not proceed.
         try {
@@ -78,11 +83,15 @@ public String authenticate(Credentials credentials, HttpMethod method) throws Au
         if (this.state == INITIATED || this.state == FAILED) {
             response = ntlm.generateType1Msg(ntcredentials.getHost(), ntcredentials.getDomain());
             this.state = TYPE1_MSG_GENERATED;
+            this.handshakeEvent = EwsFlightRecorder.beginNtlmHandshake();
         }
         else {
             response = ntlm.generateType3Msg(ntcredentials.getUserName(), ntcredentials.getPassword(),
                     ntcredentials.getHost(), ntcredentials.getDomain(), this.ntlmchallenge);
             this.state = TYPE3_MSG_GENERATED;
+            EwsFlightRecorder.endNtlmHandshake(this.handshakeEvent, ntcredentials.getDomain(),
+                    ntcredentials.getUserName());
+            this.handshakeEvent = null;
         }
 
         return "NTLM " + response;
@@ -13,11 +13,16 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.net.SocketFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
 import javax.net.ssl.TrustManager;
 import java.io.IOException;
 import java.net.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p> EwsSSLProtocolSocketFactory can be used to creats SSL {@link Socket}s that accept self-signed certificates. </p>
@@ -53,25 +58,48 @@
 @SuppressWarnings("ALL")
 class EwsSSLProtocolSocketFactory implements SecureProtocolSocketFactory {
 
-    /** The SSL Context. */
-    private SSLContext sslcontext = null;
+    /** The version of the SSL settings, incremented when they change so that the SSL contexts are created again. */
+    private static final AtomicInteger settingsVersion = new AtomicInteger();
 
     /** The X509 TrustManager. */
-    static TrustManager trustManager = null;
+    private final TrustManager trustManager;
+
+    /**
+     * The SSL context of this factory, created on first use. It is held by the factory rather than shared, so that it
+     * is released with the transport that uses it, and it lives as long as the factory so TLS sessions can be resumed.
+     */
+    private volatile VersionedSSLContext sslContext;
 
     private static final Logger logger = LoggerFactory.getLogger(EwsSSLProtocolSocketFactory.class);
 
     /**
      * Constructor for EasySSLProtocolSocketFactory.
+     *
+     * @param trustManager the trust manager to verify the server with, can be null
      */
-    public EwsSSLProtocolSocketFactory() {
+    public EwsSSLProtocolSocketFactory(TrustManager trustManager) {
         super();
+        this.trustManager = trustManager;
+    }
+
+    /**
+     * Marks the SSL contexts of all factories as stale, so that changed settings apply to new connections. Nothing is
+     * discarded right away: each factory creates a new context the next time it opens a connection.
+     */
+    static void invalidateSSLContexts() {
+        settingsVersion.incrementAndGet();
     }
 
-    private static SSLContext createEasySSLContext() {
+    private SSLContext createEasySSLContext() {
         try {
-            SSLContext context = SSLContext.getInstance("SSL");
+            SSLContext context = SSLContext.getInstance("TLS");
             context.init(null, new TrustManager[]{new EwsX509TrustManager(null, trustManager)}, null);
+
+            SSLSessionContext sessionContext = context.getClientSessionContext();
+            if (sessionContext != null) {
+                sessionContext.setSessionCacheSize(EwsSSLSettings.getSessionCacheSize());
+                sessionContext.setSessionTimeout(EwsSSLSettings.getSessionTimeout());
+            }
             return context;
         }
         catch (Exception e) {
@@ -81,10 +109,70 @@ private static SSLContext createEasySSLContext() {
     }
 
     private SSLContext getSSLContext() {
-        if (this.sslcontext == null) {
-            this.sslcontext = createEasySSLContext();
+        int version = settingsVersion.get();
+        VersionedSSLContext context = this.sslContext;
+        if (context == null || context.version != version) {
+            synchronized (this) {
+                context = this.sslContext;
+                if (context == null || context.version != version) {
+                    context = new VersionedSSLContext(createEasySSLContext(), version);
+                    this.sslContext = context;
+                }
+            }
         }
-        return this.sslcontext;
+        return context.context;
+    }
+
+    /**
+     * An SSL context and the version of the SSL settings it was created with.
+     */
+    private static final class VersionedSSLContext {
+
+        private final SSLContext context;
+
+        private final int version;
+
+        VersionedSSLContext(SSLContext context, int version) {
+            this.context = context;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Enables the configured protocols on a new socket and performs the handshake, recording whether a cached
+     * session was resumed.
+     *
+     * @param socket the socket
+     * @return the socket
+     * @throws IOException if the handshake fails
+     */
+    private static Socket startHandshake(Socket socket) throws IOException {
+        SSLSocket sslSocket = (SSLSocket) socket;
+
+        List<String> supported = Arrays.asList(sslSocket.getSupportedProtocols());
+        List<String> protocols = new ArrayList<String>();
+        for (String protocol : EwsSSLSettings.getEnabledProtocols()) {
+            if (supported.contains(protocol)) {
+                protocols.add(protocol);
+            }
+        }
+        if (!protocols.isEmpty()) {
+            sslSocket.setEnabledProtocols(protocols.toArray(new String[protocols.size()]));
+        }
+
+        long start = System.currentTimeMillis();
+        Object handshakeEvent = EwsFlightRecorder.beginTlsHandshake();
+        try {
+            sslSocket.startHandshake();
+        }
+        catch (IOException e) {
+            sslSocket.close();
+            throw e;
+        }
+        boolean resumed = sslSocket.getSession().getCreationTime() < start;
+        EwsSSLSettings.recordHandshake(resumed);
+        EwsFlightRecorder.endTlsHandshake(handshakeEvent, sslSocket.getSession(), resumed);
+        return sslSocket;
     }
 
     /**
@@ -93,16 +181,14 @@ private SSLContext getSSLContext() {
     public Socket createSocket(String host, int port, InetAddress clientHost, int clientPort) throws IOException,
             UnknownHostException {
 
-        return getSSLContext().getSocketFactory().createSocket(host, port, clientHost, clientPort);
+        return startHandshake(getSSLContext().getSocketFactory().createSocket(host, port, clientHost, clientPort));
     }
 
     /**
      * Attempts to get a new socket connection to the given host within the given time limit.
      * <p>
-     * To circumvent the limitations of older JREs that do not support connect timeout a
-     * controller thread is executed. The controller thread attempts to create a new socket
-     * within the given limit of time. If socket constructor does not return until the
-     * timeout expires, the controller terminates and throws an {@link ConnectTimeoutException}
+     * The plain connection is opened first and then layered with TLS, so that the host and port are known to the
+     * SSL engine and a cached session can be resumed.
      * </p>
      *
      * @param host the host name/IP
@@ -120,29 +206,16 @@ public Socket createSocket(String host, int port, InetAddress clientHost, int cl
     public Socket createSocket(final String host, final int port, final InetAddress localAddress, final int localPort,
                                final HttpConnectionParams params) throws IOException, UnknownHostException,
             ConnectTimeoutException {
-        if (params == null) {
-            throw new IllegalArgumentException("Parameters may not be null");
-        }
-        int timeout = params.getConnectionTimeout();
-        SocketFactory socketfactory = getSSLContext().getSocketFactory();
-        if (timeout == 0) {
-            return socketfactory.createSocket(host, port, localAddress, localPort);
-        }
-        else {
-            Socket socket = socketfactory.createSocket();
-            SocketAddress localaddr = new InetSocketAddress(localAddress, localPort);
-            SocketAddress remoteaddr = new InetSocketAddress(host, port);
-            socket.bind(localaddr);
-            socket.connect(remoteaddr, timeout);
-            return socket;
-        }
+        // Connect within the timeout of the current request, then layer TLS on the connected socket.
+        Socket socket = HttpClientTransport.connectSocket(host, port, localAddress, localPort, params);
+        return createSocket(socket, host, port, true);
     }
 
     /**
      * @see SecureProtocolSocketFactory#createSocket(java.lang.String, int)
      */
     public Socket createSocket(String host, int port) throws IOException, UnknownHostException {
-        return getSSLContext().getSocketFactory().createSocket(host, port);
+        return startHandshake(getSSLContext().getSocketFactory().createSocket(host, port));
     }
 
     /**
@@ -150,15 +223,16 @@ public Socket createSocket(String host, int port) throws IOException, UnknownHos
      */
     public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException,
             UnknownHostException {
-        return getSSLContext().getSocketFactory().createSocket(socket, host, port, autoClose);
+        return startHandshake(getSSLContext().getSocketFactory().createSocket(socket, host, port, autoClose));
     }
 
     public boolean equals(Object obj) {
-        return ((obj != null) && obj.getClass().equals(EwsSSLProtocolSocketFactory.class));
+        return ((obj != null) && obj.getClass().equals(EwsSSLProtocolSocketFactory.class) &&
+                (this.trustManager == ((EwsSSLProtocolSocketFactory) obj).trustManager));
     }
 
     public int hashCode() {
-        return EwsSSLProtocolSocketFactory.class.hashCode();
+        return EwsSSLProtocolSocketFactory.class.hashCode() ^ System.identityHashCode(this.trustManager);
     }
 
 }
@@ -0,0 +1,156 @@
+/**************************************************************************
+ * copyright file="EwsSSLSettings.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the EwsSSLSettings.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Defines the settings of the https connections opened by all services, and counts their handshakes.
+ * <p/>
+ * Each service keeps one SSL context per trust manager, shared by all the connections of the service that use it, so
+ * TLS sessions can be resumed on new connections to the same server instead of going through a full handshake. The
+ * contexts are released with the service. Changing a setting makes them stale, and a new context is created the
+ * next time a connection is opened, so only connections opened afterwards are affected.
+ */
+public final class EwsSSLSettings {
+
+    /**
+     * The protocols enabled on https connections, in order of preference.
+     */
+    private static volatile String[] enabledProtocols = {"TLSv1.3", "TLSv1.2"};
+
+    /**
+     * The number of TLS sessions cached per SSL context, 0 for no limit.
+     */
+    private static volatile int sessionCacheSize = 1000;
+
+    /**
+     * The time TLS sessions stay cached, in seconds, 0 for no limit.
+     */
+    private static volatile int sessionTimeout = 8 * 60 * 60;
+
+    /**
+     * The number of handshakes.
+     */
+    private static final AtomicLong handshakeCount = new AtomicLong();
+
+    /**
+     * The number of handshakes that resumed a cached session.
+     */
+    private static final AtomicLong resumedHandshakeCount = new AtomicLong();
+
+    /**
+     * Prevents a default instance of the EwsSSLSettings class from being created.
+     */
+    private EwsSSLSettings() {
+    }
+
+    /**
+     * Gets the protocols enabled on https connections. Defaults to TLSv1.3 and TLSv1.2.
+     *
+     * @return The protocols.
+     */
+    public static String[] getEnabledProtocols() {
+        return enabledProtocols.clone();
+    }
+
+    /**
+     * Sets the protocols enabled on https connections. Protocols the platform does not support are ignored. When
+     * none of them is supported, the platform defaults are used.
+     *
+     * @param protocols The protocols, for example "TLSv1.2".
+     */
+    public static void setEnabledProtocols(String... protocols) {
+        EwsUtilities.EwsAssert(protocols != null, "EwsSSLSettings.setEnabledProtocols", "protocols is null");
+        enabledProtocols = protocols.clone();
+        EwsSSLProtocolSocketFactory.invalidateSSLContexts();
+    }
+
+    /**
+     * Gets the number of TLS sessions cached per SSL context. Defaults to 1000.
+     *
+     * @return The session cache size, 0 for no limit.
+     */
+    public static int getSessionCacheSize() {
+        return sessionCacheSize;
+    }
+
+    /**
+     * Sets the number of TLS sessions cached per SSL context.
+     *
+     * @param size The session cache size, 0 for no limit.
+     */
+    public static void setSessionCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size");
+        }
+        sessionCacheSize = size;
+        EwsSSLProtocolSocketFactory.invalidateSSLContexts();
+    }
+
+    /**
+     * Gets the time TLS sessions stay cached, in seconds. Defaults to eight hours.
+     *
+     * @return The session timeout, 0 for no limit.
+     */
+    public static int getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /**
+     * Sets the time TLS sessions stay cached, in seconds.
+     *
+     * @param seconds The session timeout, 0 for no limit.
+     */
+    public static void setSessionTimeout(int seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("seconds");
+        }
+        sessionTimeout = seconds;
+        EwsSSLProtocolSocketFactory.invalidateSSLContexts();
+    }
+
+    /**
+     * Gets the number of TLS handshakes on https connections.
+     *
+     * @return The handshake count.
+     */
+    public static long getHandshakeCount() {
+        return handshakeCount.get();
+    }
+
+    /**
+     * Gets the number of TLS handshakes that resumed a cached session rather than performing a full handshake.
+     *
+     * @return The resumed handshake count.
+     */
+    public static long getResumedHandshakeCount() {
+        return resumedHandshakeCount.get();
+    }
+
+    /**
+     * Gets the fraction of TLS handshakes that resumed a cached session.
+     *
+     * @return The resumption rate, between 0 and 1.
+     */
+    public static double getResumptionRate() {
+        long handshakes = handshakeCount.get();
+        return handshakes == 0 ? 0 : (double) resumedHandshakeCount.get() / handshakes;
+    }
+
+    /**
+     * Records a completed handshake.
+     *
+     * @param resumed Whether the handshake resumed a cached session.
+     */
+    static void recordHandshake(boolean resumed) {
+        handshakeCount.incrementAndGet();
+        if (resumed) {
+            resumedHandshakeCount.incrementAndGet();
+        }
+    }
+}
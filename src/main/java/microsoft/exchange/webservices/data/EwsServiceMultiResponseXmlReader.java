@@ -6,9 +6,9 @@
  **************************************************************************/
 package microsoft.exchange.webservices.data;
 
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -56,7 +56,7 @@ protected static EwsServiceMultiResponseXmlReader create(InputStream stream, Exc
      * @return An XML reader to use.
      * @throws XMLStreamException
      */
-    private static XMLEventReader createXmlReader(InputStream stream) throws XMLStreamException {
+    private static XMLStreamReader createXmlReader(InputStream stream) throws XMLStreamException {
 
         // E14:240522 The ProhibitDtd property is used to indicate whether XmlReader should process DTDs or not. By
         // default,
@@ -64,10 +64,10 @@ private static XMLEventReader createXmlReader(InputStream stream) throws XMLStre
         // set to an instance of XmlUrlResolver by default. We don't want XmlTextReader to try to resolve this DTD
         // reference
         // so we disable the XmlResolver as well.
-        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        XMLInputFactory inputFactory = EwsXmlFactories.getInputFactory();
         InputStreamReader isr = new InputStreamReader(stream);
         BufferedReader in = new BufferedReader(isr);
-        return inputFactory.createXMLEventReader(in);
+        return inputFactory.createXMLStreamReader(in);
     }
 
 
@@ -78,7 +78,7 @@ private static XMLEventReader createXmlReader(InputStream stream) throws XMLStre
      * @throws Exception
      */
     @Override
-    protected XMLEventReader initializeXmlReader(InputStream stream) throws Exception {
+    protected XMLStreamReader initializeXmlReader(InputStream stream) throws Exception {
         return createXmlReader(stream);
     }
 
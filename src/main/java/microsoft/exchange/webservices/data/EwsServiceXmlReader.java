@@ -8,12 +8,11 @@
 package microsoft.exchange.webservices.data;
 
 import java.io.InputStream;
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.TimeZone;
 
 /**
  * XML reader.
@@ -91,19 +90,7 @@ public Date readElementValueAsUnspecifiedDate() throws Exception {
     public Date readElementValueAsUnbiasedDateTimeScopedToServiceTimeZone() throws Exception {
         // Convert the element's value to a DateTime with no adjustment.
         String date = this.readElementValue();
-        Date tempDate = null;
-
-        try {
-            DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-            //formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-            tempDate = formatter.parse(date);
-        }
-        catch (Exception e) {
-            //e.printStackTrace();
-            DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS");
-            //formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-            tempDate = formatter.parse(date);
-        }
+        Date tempDate = EwsDateTimeCodec.parseUnbiasedDateTime(date, TimeZone.getDefault());
 
 		/*
          * TimeZone tz = sdfin.getTimeZone(); Calendar calen =
@@ -11,7 +11,6 @@
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -44,9 +43,9 @@ class EwsServiceXmlWriter implements IDisposable {
     private boolean isTimeZoneHeaderEmitted;
 
     /**
-     * The Buffer size.
+     * The number of bytes base64-encoded at a time, a multiple of 3.
      */
-    private static final int BufferSize = 4096;
+    private static final int Base64BlockSize = 3 * 1024;
 
     /**
      * The  requireWSSecurityUtilityNamespace *
@@ -63,7 +62,7 @@ class EwsServiceXmlWriter implements IDisposable {
      */
     protected EwsServiceXmlWriter(ExchangeServiceBase service, OutputStream stream) throws XMLStreamException {
         this.service = service;
-        XMLOutputFactory xmlof = XMLOutputFactory.newInstance();
+        XMLOutputFactory xmlof = EwsXmlFactories.getOutputFactory();
         xmlWriter = xmlof.createXMLStreamWriter(stream, "utf-8");
 
     }
@@ -468,37 +467,35 @@ public void writeElementValue(XmlNamespace xmlNamespace, String localName, Objec
      * @throws XMLStreamException the xML stream exception
      */
     public void writeBase64ElementValue(byte[] buffer) throws XMLStreamException {
-
-        String strValue = Base64.encode(buffer);
-        this.xmlWriter.writeCharacters(strValue);//Base64.encode(buffer));
+        char[] chars = new char[Base64BlockSize / 3 * 4];
+        for (int offset = 0; offset < buffer.length; offset += Base64BlockSize) {
+            int count = Base64.encode(buffer, offset, Math.min(Base64BlockSize, buffer.length - offset), chars, 0);
+            this.xmlWriter.writeCharacters(chars, 0, count);
+        }
     }
 
     /**
-     * * Writes the base64-encoded element value.
+     * * Writes the base64-encoded element value. The stream is read and encoded a block at a time, so only one block
+     * is held in memory whatever the size of the stream.
      *
      * @param stream The stream.
      * @throws IOException        Signals that an I/O exception has occurred.
      * @throws XMLStreamException the xML stream exception
      */
     public void writeBase64ElementValue(InputStream stream) throws IOException, XMLStreamException {
-
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        byte[] buf = new byte[BufferSize];
-        try {
-            for (int readNum; (readNum = stream.read(buf)) != -1; ) {
-                bos.write(buf, 0, readNum);
+        byte[] buf = new byte[Base64BlockSize];
+        char[] chars = new char[Base64BlockSize / 3 * 4];
+        int length;
+        do {
+            // Only a full block encodes without padding, so keep reading until the block is full or the stream ends.
+            length = 0;
+            for (int readNum; length < buf.length &&
+                    (readNum = stream.read(buf, length, buf.length - length)) != -1; ) {
+                length += readNum;
             }
-        }
-        catch (IOException ex) {
-            ex.printStackTrace();
-        }
-        finally {
-            bos.close();
-        }
-        byte[] bytes = bos.toByteArray();
-        String strValue = Base64.encode(bytes);
-        this.xmlWriter.writeCharacters(strValue);
-
+            int count = Base64.encode(buf, 0, length, chars, 0);
+            this.xmlWriter.writeCharacters(chars, 0, count);
+        } while (length == buf.length);
     }
 
     /**
@@ -33,7 +33,7 @@ protected EwsTraceListener() {
      */
     @Override
     public void trace(String traceType, String traceMessage) {
-        logger.trace(traceType + " - " + traceMessage);
+        logger.trace("{} - {}", traceType, traceMessage);
     }
 
 }
@@ -6,9 +6,7 @@
  **************************************************************************/
 package microsoft.exchange.webservices.data;
 
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamWriter;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -20,6 +18,8 @@
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -267,6 +267,11 @@ public Map<Class<?>, Map<String, String>> createInstance() {
                 }
             });
 
+    /**
+     * The lookup tables of the enum types parsed or serialized so far.
+     */
+    private static final ConcurrentMap<Class<?>, EnumTable> enumTables = new ConcurrentHashMap<Class<?>, EnumTable>();
+
     /**
      * Dictionary to map from special CLR type names to their "short" names.
      */
@@ -480,27 +485,24 @@ static <TItem extends Item> TItem findFirstItemOfType(Class<TItem> cls, Iterable
     }
 
     /**
-     * Write trace start element.
+     * Appends a trace start element.
      *
-     * @param writer         The writer to write the start element to.
+     * @param sb             The builder to append the start element to.
      * @param traceTag       The trace tag.
      * @param includeVersion If true, include build version attribute.
+     * @param threadId       The id of the thread the entry is logged for.
+     * @param time           The time the entry is logged for.
      */
-    private static void writeTraceStartElement(XMLStreamWriter writer, String traceTag, boolean includeVersion) throws
-            XMLStreamException {
-        writer.writeStartElement("Trace");
-        writer.writeAttribute("Tag", traceTag);
-        writer.writeAttribute("Tid", Thread.currentThread().getId() + "");
-        Date d = new Date();
-
-        SimpleDateFormat utcDateTimeFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-        utcDateTimeFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-        String formattedString = utcDateTimeFormatter.format(d);
-        writer.writeAttribute("Time", formattedString);
+    private static void appendTraceStartElement(StringBuilder sb, String traceTag, boolean includeVersion,
+            long threadId, Date time) {
+        sb.append("<Trace Tag=\"").append(traceTag);
+        sb.append("\" Tid=\"").append(threadId);
+        sb.append("\" Time=\"").append(EwsDateTimeCodec.formatDateTime(time));
 
         if (includeVersion) {
-            writer.writeAttribute("Version", EwsUtilities.getBuildVersion());
+            sb.append("\" Version=\"").append(EwsUtilities.getBuildVersion());
         }
+        sb.append("\">");
     }
 
     /**
@@ -513,26 +515,32 @@ private static void writeTraceStartElement(XMLStreamWriter writer, String traceT
      * @throws IOException        Signals that an I/O exception has occurred.
      */
     protected static String formatLogMessage(String entryKind, String logEntry) throws XMLStreamException, IOException {
-        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-        XMLOutputFactory factory = XMLOutputFactory.newInstance();
-        XMLStreamWriter writer = factory.createXMLStreamWriter(outStream);
-        EwsUtilities.writeTraceStartElement(writer, entryKind, false);
-        writer.writeCharacters(System.getProperty("line.separator"));
-        writer.writeCharacters(logEntry);
-        writer.writeCharacters(System.getProperty("line.separator"));
-        writer.writeEndElement();
-        writer.writeCharacters(System.getProperty("line.separator"));
-        writer.flush();
-        writer.close();
-        outStream.flush();
-        String formattedLogMessage = outStream.toString();
-        formattedLogMessage = formattedLogMessage.replaceAll("&apos;", "'");
-        formattedLogMessage = formattedLogMessage.replaceAll("&quot;", "\"");
-        formattedLogMessage = formattedLogMessage.replaceAll("&gt;", ">");
-        formattedLogMessage = formattedLogMessage.replaceAll("&lt;", "<");
-        formattedLogMessage = formattedLogMessage.replaceAll("&amp;", "&");
-        outStream.close();
-        return formattedLogMessage;
+        return formatLogMessage(entryKind, logEntry, Thread.currentThread().getId(), new Date());
+    }
+
+    /**
+     * Formats a log entry logged for another thread or at another time than the current ones.
+     *
+     * @param entryKind the entry kind
+     * @param logEntry  the log entry
+     * @param threadId  the id of the thread the entry is logged for
+     * @param time      the time the entry is logged for
+     * @return the string
+     * @throws XMLStreamException the xML stream exception
+     * @throws IOException        Signals that an I/O exception has occurred.
+     */
+    static String formatLogMessage(String entryKind, String logEntry, long threadId, Date time) throws
+            XMLStreamException, IOException {
+        // The entry is traced as it is, without escaping, so the XML of requests and responses stays readable.
+        String lineSeparator = System.getProperty("line.separator");
+        StringBuilder sb = new StringBuilder(logEntry.length() + 128);
+        EwsUtilities.appendTraceStartElement(sb, entryKind, false, threadId, time);
+        sb.append(lineSeparator);
+        sb.append(logEntry);
+        sb.append(lineSeparator);
+        sb.append("</Trace>");
+        sb.append(lineSeparator);
+        return sb.toString();
     }
 
     /**
@@ -633,12 +641,12 @@ protected static <T extends Enum> void parseEnumValueList(Class<T> c, List<T> li
 
         String[] enumValues = value.split(regexp.toString());
 
+        EnumTable enumTable = getEnumTable(c);
         for (String enumValue : enumValues) {
             // list.add((T)Enum.parse(c, enumValue, false));
-            for (Object o : c.getEnumConstants()) {
-                if (o.toString().equals(enumValue)) {
-                    list.add((T) o);
-                }
+            Object o = enumTable.getConstantByName(enumValue);
+            if (o != null) {
+                list.add((T) o);
             }
         }
     }
@@ -650,18 +658,8 @@ protected static <T extends Enum> void parseEnumValueList(Class<T> c, List<T> li
      * @return String representation of enum to be used in the protocol
      */
     protected static String serializeEnum(Object value) {
-        Map<String, String> enumToStringDict;
-        String strValue = value.toString();
-        if (enumToSchemaDictionaries.getMember().
-                containsKey(value.getClass())) {
-            enumToStringDict = enumToSchemaDictionaries.getMember().get(value.getClass());
-            Enum<?> e = (Enum<?>) value;
-            if (enumToStringDict.containsKey(e.name())) {
-                strValue = enumToStringDict.get(e.name());
-            }
-        }
-
-        return strValue;
+        Enum<?> e = (Enum<?>) value;
+        return getEnumTable(e.getDeclaringClass()).getSchemaName(e);
     }
 
     /**
@@ -679,35 +677,7 @@ protected static <T> T parse(Class<T> cls, String value) throws InstantiationExc
             ParseException {
 
         if (cls.isEnum()) {
-            Map<String, String> stringToEnumDict;
-            if (schemaToEnumDictionaries.getMember().containsKey(cls)) {
-                stringToEnumDict = schemaToEnumDictionaries.getMember().get(cls);
-                if (stringToEnumDict.containsKey(value)) {
-                    String strEnumName = stringToEnumDict.get(value);
-                    for (Object o : cls.getEnumConstants()) {
-                        if (o.toString().equals(strEnumName)) {
-                            return (T) o;
-                        }
-                    }
-                    return null;
-                }
-                else {
-                    for (Object o : cls.getEnumConstants()) {
-                        if (o.toString().equals(value)) {
-                            return (T) o;
-                        }
-                    }
-                    return null;
-                }
-            }
-            else {
-                for (Object o : cls.getEnumConstants()) {
-                    if (o.toString().equals(value)) {
-                        return (T) o;
-                    }
-                }
-                return null;
-            }
+            return (T) getEnumTable(cls).getConstant(value);
         }
         else if (cls.isInstance(Integer.valueOf(0)))
         // else if( cls.isInstance(new Integer(0)))
@@ -717,11 +687,7 @@ else if (cls.isInstance(Integer.valueOf(0)))
             return (T) o;
         }
         else if (cls.isInstance(new Date())) {
-            SimpleDateFormat utcDateTimeFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-            utcDateTimeFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-
-            Object o = null;
-            return (T) utcDateTimeFormatter.parse(value);
+            return (T) EwsDateTimeCodec.parseDateTime(value);
         }
         else if (cls.isInstance(Boolean.valueOf(false)))
         // else if( cls.isInstance(new Boolean(false)))
@@ -742,6 +708,24 @@ else if (cls.isInstance(Double.valueOf(0.0))) {
     }
 
 
+    /**
+     * Gets the lookup tables of an enum type, building them on first use.
+     *
+     * @param c The enum type.
+     * @return The lookup tables.
+     */
+    private static EnumTable getEnumTable(Class<?> c) {
+        EnumTable enumTable = enumTables.get(c);
+        if (enumTable == null) {
+            enumTable = new EnumTable(c);
+            EnumTable existing = enumTables.putIfAbsent(c, enumTable);
+            if (existing != null) {
+                enumTable = existing;
+            }
+        }
+        return enumTable;
+    }
+
     /**
      * Builds the schema to enum mapping dictionary.
      *
@@ -804,9 +788,7 @@ protected static void validateParamCollection(EventType[] eventTypes, String par
      * @return String representation of DateTime.
      */
     static String dateTimeToXSDate(Date date) {
-        SimpleDateFormat utcDateFormatter = new SimpleDateFormat("yyyy-MM-dd'Z'");
-        utcDateFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-        return utcDateFormatter.format(date);
+        return EwsDateTimeCodec.formatDate(date);
     }
 
     /**
@@ -816,9 +798,7 @@ static String dateTimeToXSDate(Date date) {
      * @return String representation of DateTime.
      */
     protected static String dateTimeToXSDateTime(Date date) {
-        SimpleDateFormat utcDateTimeFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-        utcDateTimeFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-        return utcDateTimeFormatter.format(date);
+        return EwsDateTimeCodec.formatDateTime(date);
     }
 
     /**
@@ -1519,4 +1499,86 @@ protected static <T> void forEach(Iterable<T> collection, IAction<T> action) {
             action.action(entry);
         }
     }
+
+    /**
+     * The lookup tables of an enum type, mapping the names used in the protocol to constants and back, including the
+     * schema names of the schema mapping dictionaries.
+     */
+    private static final class EnumTable {
+
+        /**
+         * The constants, by the name they are parsed from.
+         */
+        private final Map<String, Object> constants = new HashMap<String, Object>();
+
+        /**
+         * The constants, by the string they are named by, without schema names.
+         */
+        private final Map<String, Object> constantsByName = new HashMap<String, Object>();
+
+        /**
+         * The names the constants are serialized to, by ordinal.
+         */
+        private final String[] schemaNames;
+
+        /**
+         * Initializes a new instance of the EnumTable class.
+         *
+         * @param c The enum type.
+         */
+        EnumTable(Class<?> c) {
+            Object[] enumConstants = c.getEnumConstants();
+            for (Object o : enumConstants) {
+                if (!this.constantsByName.containsKey(o.toString())) {
+                    this.constantsByName.put(o.toString(), o);
+                }
+            }
+            this.constants.putAll(this.constantsByName);
+
+            Map<String, String> stringToEnumDict = schemaToEnumDictionaries.getMember().get(c);
+            if (stringToEnumDict != null) {
+                for (Map.Entry<String, String> entry : stringToEnumDict.entrySet()) {
+                    this.constants.put(entry.getKey(), this.constantsByName.get(entry.getValue()));
+                }
+            }
+
+            Map<String, String> enumToStringDict = enumToSchemaDictionaries.getMember().get(c);
+            this.schemaNames = new String[enumConstants.length];
+            for (int i = 0; i < enumConstants.length; i++) {
+                Enum<?> e = (Enum<?>) enumConstants[i];
+                String schemaName = enumToStringDict != null ? enumToStringDict.get(e.name()) : null;
+                this.schemaNames[e.ordinal()] = schemaName != null ? schemaName : e.toString();
+            }
+        }
+
+        /**
+         * Gets the constant parsed from a name, which may be a schema name.
+         *
+         * @param value The name.
+         * @return The constant, or null if no constant has this name.
+         */
+        Object getConstant(String value) {
+            return this.constants.get(value);
+        }
+
+        /**
+         * Gets the constant named by a string, ignoring schema names.
+         *
+         * @param value The name.
+         * @return The constant, or null if no constant has this name.
+         */
+        Object getConstantByName(String value) {
+            return this.constantsByName.get(value);
+        }
+
+        /**
+         * Gets the name a constant is serialized to.
+         *
+         * @param e The constant.
+         * @return The schema name of the constant, or its string representation.
+         */
+        String getSchemaName(Enum<?> e) {
+            return this.schemaNames[e.ordinal()];
+        }
+    }
 }
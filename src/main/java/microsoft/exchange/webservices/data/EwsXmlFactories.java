@@ -0,0 +1,139 @@
+/**************************************************************************
+ * copyright file="EwsXmlFactories.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the EwsXmlFactories.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+
+/**
+ * Holds the StAX factories shared by all readers and writers of requests, responses and traces.
+ * <p/>
+ * Looking up and configuring a factory is much more expensive than creating a reader or writer with it, so one
+ * factory of each kind is configured once and then used from all threads. DTDs and external entities are disabled on
+ * the input factory. A specific StAX implementation can be plugged in with {@link #setInputFactory},
+ * {@link #setOutputFactory} and {@link #setEventFactory}. It must allow its factories to be used concurrently once
+ * configured, as the common implementations do. The location of the event factory is never set, as it would be shared
+ * by all the events created.
+ */
+public final class EwsXmlFactories {
+
+    /**
+     * The property with which the JDK implementation recycles the last reader or writer it created. Recycling is not
+     * thread-safe, so it is turned off on shared factories.
+     */
+    private static final String ReuseInstanceProperty = "http://java.sun.com/xml/stream/properties/reuse-instance";
+
+    /**
+     * The shared input factory.
+     */
+    private static volatile XMLInputFactory inputFactory = configure(XMLInputFactory.newInstance());
+
+    /**
+     * The shared output factory.
+     */
+    private static volatile XMLOutputFactory outputFactory = configure(XMLOutputFactory.newInstance());
+
+    /**
+     * The shared event factory.
+     */
+    private static volatile XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+    /**
+     * Prevents a default instance of the EwsXmlFactories class from being created.
+     */
+    private EwsXmlFactories() {
+    }
+
+    /**
+     * Gets the input factory shared by all XML readers.
+     *
+     * @return The input factory.
+     */
+    public static XMLInputFactory getInputFactory() {
+        return inputFactory;
+    }
+
+    /**
+     * Sets the input factory shared by all XML readers, for example one of a specific StAX implementation. The
+     * factory is configured like the default one and must not be changed afterwards.
+     *
+     * @param factory The input factory.
+     */
+    public static void setInputFactory(XMLInputFactory factory) {
+        EwsUtilities.EwsAssert(factory != null, "EwsXmlFactories.setInputFactory", "factory is null");
+        inputFactory = configure(factory);
+    }
+
+    /**
+     * Gets the output factory shared by all XML writers.
+     *
+     * @return The output factory.
+     */
+    public static XMLOutputFactory getOutputFactory() {
+        return outputFactory;
+    }
+
+    /**
+     * Sets the output factory shared by all XML writers, for example one of a specific StAX implementation. The
+     * factory is configured like the default one and must not be changed afterwards.
+     *
+     * @param factory The output factory.
+     */
+    public static void setOutputFactory(XMLOutputFactory factory) {
+        EwsUtilities.EwsAssert(factory != null, "EwsXmlFactories.setOutputFactory", "factory is null");
+        outputFactory = configure(factory);
+    }
+
+    /**
+     * Gets the event factory shared by all XML readers.
+     *
+     * @return The event factory.
+     */
+    public static XMLEventFactory getEventFactory() {
+        return eventFactory;
+    }
+
+    /**
+     * Sets the event factory shared by all XML readers, for example one of a specific StAX implementation. The
+     * factory must not be changed afterwards.
+     *
+     * @param factory The event factory.
+     */
+    public static void setEventFactory(XMLEventFactory factory) {
+        EwsUtilities.EwsAssert(factory != null, "EwsXmlFactories.setEventFactory", "factory is null");
+        eventFactory = factory;
+    }
+
+    /**
+     * Configures an input factory to be shared: no DTDs, no external entities and no recycled readers.
+     *
+     * @param factory The input factory.
+     * @return The factory.
+     */
+    private static XMLInputFactory configure(XMLInputFactory factory) {
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        if (factory.isPropertySupported(ReuseInstanceProperty)) {
+            factory.setProperty(ReuseInstanceProperty, false);
+        }
+        return factory;
+    }
+
+    /**
+     * Configures an output factory to be shared: no recycled writers.
+     *
+     * @param factory The output factory.
+     * @return The factory.
+     */
+    private static XMLOutputFactory configure(XMLOutputFactory factory) {
+        if (factory.isPropertySupported(ReuseInstanceProperty)) {
+            factory.setProperty(ReuseInstanceProperty, false);
+        }
+        return factory;
+    }
+}
@@ -6,16 +6,31 @@
  **************************************************************************/
 package microsoft.exchange.webservices.data;
 
-import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.*;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.util.EventReaderDelegate;
+import javax.xml.stream.util.StreamReaderDelegate;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * Defines the EwsXmlReader class.
+ * <p/>
+ * The reader is built on the cursor of an XMLStreamReader, so reading a node does not allocate an event object, and
+ * names and attributes are read from the cursor in place. Only the text of character nodes is materialized.
+ * <p/>
+ * The cursor cannot peek, so {@link #isEmptyElement()} moves it to the node after the current start element and
+ * keeps a copy of the attributes and namespace declarations of the start element, which remains the current node
+ * until the next read.
  */
 @SuppressWarnings("ALL")
 class EwsXmlReader {
@@ -28,17 +43,57 @@ class EwsXmlReader {
     /**
      * The xml reader.
      */
-    private XMLEventReader xmlReader = null;
+    private XMLStreamReader xmlReader = null;
 
     /**
-     * The present event.
+     * Whether the first node has been read. The cursor starts on the start of the document, which is the first node.
      */
-    private XMLEvent presentEvent;
+    private boolean started;
 
     /**
-     * The prev event.
+     * Whether the cursor has moved past the current node, to the node returned by the next read.
      */
-    private XMLEvent prevEvent;
+    private boolean peeked;
+
+    /**
+     * The type of the current node, 0 before the first read.
+     */
+    private int nodeType;
+
+    /**
+     * The local name of the current element.
+     */
+    private String localName;
+
+    /**
+     * The namespace prefix of the current element, empty if it has none.
+     */
+    private String namespacePrefix;
+
+    /**
+     * The namespace URI of the current element, empty if it has none.
+     */
+    private String namespaceUri;
+
+    /**
+     * The number of attributes of the current start element, once the cursor has moved past it.
+     */
+    private int attributeCount;
+
+    /**
+     * The attribute local names, namespace URIs, prefixes and values, once the cursor has moved past the element.
+     */
+    private String[] attributes = new String[4 * 4];
+
+    /**
+     * The number of namespace declarations of the current start element, once the cursor has moved past it.
+     */
+    private int namespaceCount;
+
+    /**
+     * The declared prefixes and namespace URIs, once the cursor has moved past the element.
+     */
+    private String[] namespaces = new String[2 * 2];
 
     /**
      * Initializes a new instance of the EwsXmlReader class.
@@ -57,13 +112,9 @@ public EwsXmlReader(InputStream stream) throws Exception {
      * @return An XML reader to use.
      * @throws Exception
      */
-    protected XMLEventReader initializeXmlReader(InputStream stream) throws XMLStreamException, Exception {
-
-        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
-        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
-        //inputFactory.setProperty(XMLInputFactory.RESOLVER, null);
+    protected XMLStreamReader initializeXmlReader(InputStream stream) throws XMLStreamException, Exception {
 
-        return inputFactory.createXMLEventReader(stream);
+        return EwsXmlFactories.getInputFactory().createXMLStreamReader(stream);
     }
 
 
@@ -87,7 +138,7 @@ private static String formatElementName(String namespacePrefix, String localElem
      * @param nodeType     Type of the node
      * @throws Exception the exception
      */
-    private void internalReadElement(XmlNamespace xmlNamespace, String localName, XMLNodeType nodeType) throws
+    private void internalReadElement(XmlNamespace xmlNamespace, String localName, int nodeType) throws
             Exception {
 
         if (xmlNamespace == XmlNamespace.NotSpecified) {
@@ -97,10 +148,11 @@ private void internalReadElement(XmlNamespace xmlNamespace, String localName, XM
             this.read(nodeType);
 
             if ((!this.getLocalName().equals(localName)) ||
-                    (this.getNamespaceUri() != EwsUtilities.getNamespaceUri(xmlNamespace))) {
+                    (!this.getNamespaceUri().equals(EwsUtilities.getNamespaceUri(xmlNamespace)))) {
                 throw new ServiceXmlDeserializationException(
                         String.format(Strings.UnexpectedElement, EwsUtilities.getNamespacePrefix(xmlNamespace),
-                                localName, nodeType.toString(), this.getName(), this.getNodeType().toString()));
+                                localName, XMLNodeType.getString(nodeType), this.getName(),
+                                this.getNodeType().toString()));
             }
         }
     }
@@ -113,13 +165,13 @@ private void internalReadElement(XmlNamespace xmlNamespace, String localName, XM
      * @param nodeType        Type of the node
      * @throws Exception the exception
      */
-    private void internalReadElement(String namespacePrefix, String localName, XMLNodeType nodeType) throws Exception {
+    private void internalReadElement(String namespacePrefix, String localName, int nodeType) throws Exception {
         read(nodeType);
 
         if ((!this.getLocalName().equals(localName)) || (!this.getNamespacePrefix().equals(namespacePrefix))) {
             throw new ServiceXmlDeserializationException(
-                    String.format(Strings.UnexpectedElement, namespacePrefix, localName, nodeType.toString(),
-                            this.getName(), this.getNodeType().toString()));
+                    String.format(Strings.UnexpectedElement, namespacePrefix, localName,
+                            XMLNodeType.getString(nodeType), this.getName(), this.getNodeType().toString()));
         }
     }
 
@@ -135,22 +187,93 @@ public void read() throws ServiceXmlDeserializationException, XMLStreamException
         // that there's another node to
         // read. Throw an exception if not true.
         while (true) {
-            if (!xmlReader.hasNext()) {
+            if (!this.moveToNextNode()) {
                 throw new ServiceXmlDeserializationException(Strings.UnexpectedEndOfXmlDocument);
             }
-            else {
-                XMLEvent event = xmlReader.nextEvent();
-                if (event.getEventType() == XMLStreamConstants.CHARACTERS) {
-                    Characters characters = (Characters) event;
-                    if (characters.isIgnorableWhiteSpace() || characters.isWhiteSpace()) {
-                        continue;
-                    }
-                }
-                this.prevEvent = this.presentEvent;
-                this.presentEvent = event;
-                break;
+            int eventType = this.xmlReader.getEventType();
+            if (eventType == XMLStreamConstants.CHARACTERS && this.xmlReader.isWhiteSpace()) {
+                continue;
             }
+            this.setCurrentNode(eventType);
+            break;
+        }
+    }
+
+    /**
+     * Moves the cursor to the node after the current one, unless it already is there.
+     *
+     * @return false if the document has no more nodes
+     * @throws XMLStreamException the xML stream exception
+     */
+    private boolean moveToNextNode() throws XMLStreamException {
+        if (this.peeked) {
+            this.peeked = false;
+            return true;
+        }
+        if (!this.started) {
+            this.started = true;
+            return true;
+        }
+        if (!this.xmlReader.hasNext()) {
+            return false;
         }
+        this.xmlReader.next();
+        return true;
+    }
+
+    /**
+     * Makes the node under the cursor the current node.
+     *
+     * @param eventType The type of the node.
+     */
+    private void setCurrentNode(int eventType) {
+        this.nodeType = eventType;
+        if (eventType == XMLStreamConstants.START_ELEMENT || eventType == XMLStreamConstants.END_ELEMENT) {
+            this.localName = this.xmlReader.getLocalName();
+            this.namespacePrefix = emptyIfNull(this.xmlReader.getPrefix());
+            this.namespaceUri = emptyIfNull(this.xmlReader.getNamespaceURI());
+        }
+        else {
+            this.localName = null;
+            this.namespacePrefix = null;
+            this.namespaceUri = null;
+        }
+    }
+
+    /**
+     * Moves the cursor past the current start element, keeping a copy of its attributes and namespace declarations.
+     *
+     * @throws XMLStreamException the xML stream exception
+     */
+    private void peek() throws XMLStreamException {
+        if (this.peeked) {
+            return;
+        }
+
+        int count = this.xmlReader.getAttributeCount();
+        if (this.attributes.length < count * 4) {
+            this.attributes = new String[count * 4];
+        }
+        for (int i = 0; i < count; i++) {
+            this.attributes[i * 4] = this.xmlReader.getAttributeLocalName(i);
+            this.attributes[i * 4 + 1] = emptyIfNull(this.xmlReader.getAttributeNamespace(i));
+            this.attributes[i * 4 + 2] = emptyIfNull(this.xmlReader.getAttributePrefix(i));
+            this.attributes[i * 4 + 3] = this.xmlReader.getAttributeValue(i);
+        }
+        this.attributeCount = count;
+
+        count = this.xmlReader.getNamespaceCount();
+        if (this.namespaces.length < count * 2) {
+            this.namespaces = new String[count * 2];
+        }
+        for (int i = 0; i < count; i++) {
+            this.namespaces[i * 2] = emptyIfNull(this.xmlReader.getNamespacePrefix(i));
+            this.namespaces[i * 2 + 1] = emptyIfNull(this.xmlReader.getNamespaceURI(i));
+        }
+        this.namespaceCount = count;
+
+        this.xmlReader.next();
+        this.peeked = true;
     }
 
     /**
@@ -160,33 +283,96 @@ public void read() throws ServiceXmlDeserializationException, XMLStreamException
      * @throws Exception the exception
      */
     public void read(XMLNodeType nodeType) throws Exception {
+        this.read(nodeType.nodeType);
+    }
+
+    /**
+     * Reads the specified node type.
+     *
+     * @param nodeType Type of the node.
+     * @throws Exception the exception
+     */
+    private void read(int nodeType) throws Exception {
         this.read();
-        if (!this.getNodeType().equals(nodeType)) {
+        if (this.nodeType != nodeType) {
             throw new ServiceXmlDeserializationException(
-                    String.format(Strings.UnexpectedElementType, nodeType, this.getNodeType()));
+                    String.format(Strings.UnexpectedElementType, XMLNodeType.getString(nodeType),
+                            this.getNodeType()));
         }
     }
 
     /**
-     * * Read attribute value from QName.
+     * Gets the number of attributes of the current start element.
+     *
+     * @return The attribute count.
+     */
+    private int getAttributeCount() {
+        return this.peeked ? this.attributeCount : this.xmlReader.getAttributeCount();
+    }
+
+    /**
+     * Gets the local name of an attribute of the current start element.
+     *
+     * @param index The index of the attribute.
+     * @return The local name.
+     */
+    private String getAttributeLocalName(int index) {
+        return this.peeked ? this.attributes[index * 4] : this.xmlReader.getAttributeLocalName(index);
+    }
+
+    /**
+     * Gets the namespace URI of an attribute of the current start element.
+     *
+     * @param index The index of the attribute.
+     * @return The namespace URI, empty if the attribute has none.
+     */
+    private String getAttributeNamespace(int index) {
+        return this.peeked ? this.attributes[index * 4 + 1] :
+                emptyIfNull(this.xmlReader.getAttributeNamespace(index));
+    }
+
+    /**
+     * Gets the namespace prefix of an attribute of the current start element.
      *
-     * @param qName QName of the attribute
+     * @param index The index of the attribute.
+     * @return The prefix, empty if the attribute has none.
+     */
+    private String getAttributePrefix(int index) {
+        return this.peeked ? this.attributes[index * 4 + 2] : emptyIfNull(this.xmlReader.getAttributePrefix(index));
+    }
+
+    /**
+     * Gets the value of an attribute of the current start element.
+     *
+     * @param index The index of the attribute.
+     * @return The value.
+     */
+    private String getAttributeValue(int index) {
+        return this.peeked ? this.attributes[index * 4 + 3] : this.xmlReader.getAttributeValue(index);
+    }
+
+    /**
+     * * Read attribute value from its namespace and local name.
+     *
+     * @param namespaceUri  Namespace URI of the attribute, empty if it has none
+     * @param attributeName Local name of the attribute
      * @return Attribute Value
      * @throws Exception thrown if attribute value can not be read
      */
-    private String readAttributeValue(QName qName) throws Exception {
-        if (this.presentEvent.isStartElement()) {
-            StartElement startElement = this.presentEvent.asStartElement();
-            Attribute attr = startElement.getAttributeByName(qName);
-            if (null != attr) {
-                return attr.getValue();
-            }
-            else {
-                return null;
+    private String readAttributeValue(String namespaceUri, String attributeName) throws Exception {
+        if (this.nodeType == XMLStreamConstants.START_ELEMENT) {
+            int count = this.getAttributeCount();
+            for (int i = 0; i < count; i++) {
+                if (this.getAttributeLocalName(i).equals(attributeName) &&
+                        this.getAttributeNamespace(i).equals(namespaceUri)) {
+                    return this.getAttributeValue(i);
+                }
             }
+            return null;
         }
         else {
-            String errMsg = String.format("Could not fetch attribute %s", qName.toString());
+            String errMsg = String.format("Could not fetch attribute %s",
+                    namespaceUri.isEmpty() ? attributeName : "{" + namespaceUri + "}" + attributeName);
             throw new Exception(errMsg);
         }
     }
@@ -204,8 +390,7 @@ public String readAttributeValue(XmlNamespace xmlNamespace, String attributeName
             return this.readAttributeValue(attributeName);
         }
         else {
-            QName qName = new QName(EwsUtilities.getNamespaceUri(xmlNamespace), attributeName);
-            return readAttributeValue(qName);
+            return readAttributeValue(EwsUtilities.getNamespaceUri(xmlNamespace), attributeName);
         }
     }
 
@@ -217,8 +402,7 @@ public String readAttributeValue(XmlNamespace xmlNamespace, String attributeName
      * @throws Exception the exception
      */
     public String readAttributeValue(String attributeName) throws Exception {
-        QName qName = new QName(attributeName);
-        return readAttributeValue(qName);
+        return readAttributeValue("", attributeName);
     }
 
     /**
@@ -366,65 +550,65 @@ public <T> T readElementValue(Class<T> cls) throws Exception {
      *                            the service xml deserialization exception
      */
     public String readValue() throws XMLStreamException, ServiceXmlDeserializationException {
-        String errMsg =
-                String.format("Could not read value from %s.", XMLNodeType.getString(this.presentEvent.getEventType()));
-        if (this.presentEvent.isStartElement()) {
+        if (this.nodeType == XMLStreamConstants.START_ELEMENT) {
             // Go to next event and check for Characters event
             this.read();
-            if (this.presentEvent.isCharacters()) {
-                StringBuffer elementValue = new StringBuffer();
-                do {
-                    if (this.getNodeType().nodeType == XMLNodeType.CHARACTERS) {
-                        Characters characters = (Characters) this.presentEvent;
-                        if (!characters.isIgnorableWhiteSpace() && !characters.isWhiteSpace()) {
-                            if (characters.getData().length() != 0) {
-                                elementValue.append(characters.getData());
-                            }
-                        }
-                    }
-                    this.read();
-                } while (!this.presentEvent.isEndElement());
-                // Characters chars = this.presentEvent.asCharacters();
-                // String elementValue = chars.getData();
-                // Advance to next event post Characters (ideally it will be End
-                // Element)
-                // this.read();
-                return elementValue.toString();
+            if (this.isText()) {
+                return this.readText();
             }
             else {
-                errMsg = errMsg + "Could not find " + XMLNodeType.getString(XMLNodeType.CHARACTERS);
-                throw new ServiceXmlDeserializationException(errMsg);
-            }
-        }
-        else if (this.presentEvent.getEventType() == XMLNodeType.CHARACTERS && this.presentEvent.isCharacters()) {
-            /*
-			 * if(this.presentEvent.asCharacters().getData().equals("<")) {
-			 */
-            StringBuffer data = new StringBuffer(this.presentEvent.asCharacters().getData());
-            do {
-                this.read();
-                if (this.getNodeType().nodeType == XMLNodeType.CHARACTERS) {
-                    Characters characters = (Characters) this.presentEvent;
-                    if (!characters.isIgnorableWhiteSpace() && !characters.isWhiteSpace()) {
-                        if (characters.getData().length() != 0) {
-                            data.append(characters.getData());
-                        }
-                    }
-                }
-            } while (!this.presentEvent.isEndElement());
-            return data.toString();// this.presentEvent. = new XMLEvent();
-			/*
-			 * } else { Characters chars = this.presentEvent.asCharacters();
-			 * String elementValue = chars.getData(); // Advance to next event
-			 * post Characters (ideally it will be End // Element) this.read();
-			 * return elementValue; }
-			 */
+                throw new ServiceXmlDeserializationException(
+                        String.format("Could not read value from %s.", XMLNodeType.getString(this.nodeType)) +
+                                "Could not find " + XMLNodeType.getString(XMLNodeType.CHARACTERS));
+            }
+        }
+        else if (this.isText()) {
+            return this.readText();
         }
         else {
-            errMsg = errMsg + "Expected is " + XMLNodeType.getString(XMLNodeType.START_ELEMENT);
-            throw new ServiceXmlDeserializationException(errMsg);
+            throw new ServiceXmlDeserializationException(
+                    String.format("Could not read value from %s.", XMLNodeType.getString(this.nodeType)) +
+                            "Expected is " + XMLNodeType.getString(XMLNodeType.START_ELEMENT));
+        }
+
+    }
+
+    /**
+     * Reads the text starting at the current node up to the end of the element, which becomes the current node.
+     * Whitespace only chunks are skipped, like they are by read. Text held by a single node is returned as is.
+     *
+     * @return The text.
+     * @throws XMLStreamException the xML stream exception
+     * @throws ServiceXmlDeserializationException
+     *                            the service xml deserialization exception
+     */
+    private String readText() throws XMLStreamException, ServiceXmlDeserializationException {
+        String text = this.xmlReader.getText();
+        StringBuilder data = null;
+        while (true) {
+            this.read();
+            if (this.nodeType == XMLStreamConstants.END_ELEMENT) {
+                return data != null ? data.toString() : text;
+            }
+            if (this.isText()) {
+                String chunk = this.xmlReader.getText();
+                if (chunk.length() != 0) {
+                    if (data == null) {
+                        data = new StringBuilder(text.length() + chunk.length() + 16).append(text);
+                    }
+                    data.append(chunk);
+                }
+            }
         }
+    }
 
+    /**
+     * Gets a value indicating whether the current node holds text.
+     *
+     * @return true for character and CDATA nodes
+     */
+    private boolean isText() {
+        return this.nodeType == XMLStreamConstants.CHARACTERS || this.nodeType == XMLStreamConstants.CDATA;
     }
 
     /**
@@ -440,7 +624,7 @@ public boolean tryReadValue(OutParam<String> value) throws XMLStreamException, S
         if (!this.isEmptyElement()) {
             this.read();
 
-            if (this.presentEvent.isCharacters()) {
+            if (this.isText()) {
                 value.setParam(this.readValue());
                 return true;
             }
@@ -465,6 +649,59 @@ public <T> T readValue(Class<T> cls) throws Exception {
         return EwsUtilities.parse(cls, this.readValue());
     }
 
+    /**
+     * Reads the base64 text of the current element, or from the current text node, up to the end of the element,
+     * which becomes the current node. The text is decoded in chunks as the parser returns it and the decoded bytes
+     * are written to the stream as they come, so the content is never held in memory as a whole.
+     *
+     * @param outputStream the output stream
+     * @throws ServiceXmlDeserializationException
+     *                            the service xml deserialization exception
+     * @throws XMLStreamException the xML stream exception
+     * @throws IOException        Signals that an I/O exception has occurred.
+     */
+    public void readBase64Value(OutputStream outputStream)
+            throws ServiceXmlDeserializationException, XMLStreamException, IOException {
+        int eventType;
+        if (this.nodeType == XMLStreamConstants.START_ELEMENT) {
+            eventType = this.peeked ? this.xmlReader.getEventType() : this.xmlReader.next();
+        }
+        else if (this.isText()) {
+            eventType = this.xmlReader.getEventType();
+        }
+        else {
+            throw new ServiceXmlDeserializationException(
+                    String.format("Could not read value from %s.", XMLNodeType.getString(this.nodeType)) +
+                            "Expected is " + XMLNodeType.getString(XMLNodeType.START_ELEMENT));
+        }
+        this.peeked = false;
+
+        Base64Decoder decoder = new Base64Decoder(outputStream);
+        char[] chars = null;
+        for (; eventType != XMLStreamConstants.END_ELEMENT; eventType = this.xmlReader.next()) {
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                throw new XMLStreamException("Expected a text only element, found a child element",
+                        this.xmlReader.getLocation());
+            }
+            if (eventType == XMLStreamConstants.CHARACTERS || eventType == XMLStreamConstants.CDATA) {
+                if (chars == null) {
+                    chars = new char[ReadWriteBufferSize];
+                }
+                int length = this.xmlReader.getTextLength();
+                for (int offset = 0; offset < length; ) {
+                    int count = this.xmlReader.getTextCharacters(offset, chars, 0, chars.length);
+                    if (count <= 0) {
+                        break;
+                    }
+                    decoder.decode(chars, 0, count);
+                    offset += count;
+                }
+            }
+        }
+        decoder.finish();
+        this.setCurrentNode(XMLStreamConstants.END_ELEMENT);
+    }
+
     /**
      * Reads the base64 element value.
      *
@@ -477,19 +714,13 @@ public <T> T readValue(Class<T> cls) throws Exception {
     public byte[] readBase64ElementValue() throws ServiceXmlDeserializationException, XMLStreamException, IOException {
         this.ensureCurrentNodeIsStartElement();
 
-        byte[] buffer = null;
-
         ByteArrayOutputStream byteArrayStream = new ByteArrayOutputStream();
-
-        buffer = Base64EncoderStream.decode(this.xmlReader.getElementText().toString());
-        byteArrayStream.write(buffer);
-
+        this.readBase64Value(byteArrayStream);
         return byteArrayStream.toByteArray();
-
     }
 
     /**
-     * Reads the base64 element value.
+     * Reads the base64 element value, decoding it to the stream as it is read.
      *
      * @param outputStream the output stream
      * @throws Exception the exception
@@ -497,9 +728,7 @@ public byte[] readBase64ElementValue() throws ServiceXmlDeserializationException
     public void readBase64ElementValue(OutputStream outputStream) throws Exception {
         this.ensureCurrentNodeIsStartElement();
 
-        byte[] buffer = null;
-        buffer = Base64EncoderStream.decode(this.xmlReader.getElementText().toString());
-        outputStream.write(buffer);
+        this.readBase64Value(outputStream);
         outputStream.flush();
     }
 
@@ -511,7 +740,7 @@ public void readBase64ElementValue(OutputStream outputStream) throws Exception {
      * @throws Exception the exception
      */
     public void readStartElement(String namespacePrefix, String localName) throws Exception {
-        this.internalReadElement(namespacePrefix, localName, new XMLNodeType(XMLNodeType.START_ELEMENT));
+        this.internalReadElement(namespacePrefix, localName, XMLNodeType.START_ELEMENT);
     }
 
     /**
@@ -522,7 +751,7 @@ public void readStartElement(String namespacePrefix, String localName) throws Ex
      * @throws Exception the exception
      */
     public void readStartElement(XmlNamespace xmlNamespace, String localName) throws Exception {
-        this.internalReadElement(xmlNamespace, localName, new XMLNodeType(XMLNodeType.START_ELEMENT));
+        this.internalReadElement(xmlNamespace, localName, XMLNodeType.START_ELEMENT);
     }
 
     /**
@@ -533,7 +762,7 @@ public void readStartElement(XmlNamespace xmlNamespace, String localName) throws
      * @throws Exception the exception
      */
     public void readEndElement(String namespacePrefix, String elementName) throws Exception {
-        this.internalReadElement(namespacePrefix, elementName, new XMLNodeType(XMLNodeType.END_ELEMENT));
+        this.internalReadElement(namespacePrefix, elementName, XMLNodeType.END_ELEMENT);
     }
 
     /**
@@ -545,7 +774,7 @@ public void readEndElement(String namespacePrefix, String elementName) throws Ex
      */
     public void readEndElement(XmlNamespace xmlNamespace, String localName) throws Exception {
 
-        this.internalReadElement(xmlNamespace, localName, new XMLNodeType(XMLNodeType.END_ELEMENT));
+        this.internalReadElement(xmlNamespace, localName, XMLNodeType.END_ELEMENT);
 
     }
 
@@ -571,7 +800,7 @@ public void readEndElementIfNecessary(XmlNamespace xmlNamespace, String localNam
      * @return boolean
      */
     public boolean isStartElement() {
-        return this.presentEvent.isStartElement();
+        return this.nodeType == XMLStreamConstants.START_ELEMENT;
     }
 
     /**
@@ -582,13 +811,8 @@ public boolean isStartElement() {
      * @return boolean
      */
     public boolean isStartElement(String namespacePrefix, String localName) {
-        boolean isStart = false;
-        if (this.presentEvent.isStartElement()) {
-            StartElement startElement = this.presentEvent.asStartElement();
-            QName qName = startElement.getName();
-            isStart = qName.getLocalPart().equals(localName) && qName.getPrefix().equals(namespacePrefix);
-        }
-        return isStart;
+        return this.nodeType == XMLStreamConstants.START_ELEMENT && this.localName.equals(localName) &&
+                this.namespacePrefix.equals(namespacePrefix);
     }
 
     /**
@@ -600,8 +824,8 @@ public boolean isStartElement(String namespacePrefix, String localName) {
      */
     public boolean isStartElement(XmlNamespace xmlNamespace, String localName) {
         return (this.isStartElement()) && (this.getLocalName().equals(localName)) &&
-                ((this.getNamespacePrefix() == EwsUtilities.getNamespacePrefix(xmlNamespace)) ||
-                        (this.getNamespaceUri() == EwsUtilities.getNamespaceUri(xmlNamespace)));
+                ((this.getNamespacePrefix().equals(EwsUtilities.getNamespacePrefix(xmlNamespace))) ||
+                        (this.getNamespaceUri().equals(EwsUtilities.getNamespaceUri(xmlNamespace))));
     }
 
     /**
@@ -612,14 +836,8 @@ public boolean isStartElement(XmlNamespace xmlNamespace, String localName) {
      * @return boolean
      */
     public boolean isEndElement(String namespacePrefix, String localName) {
-        boolean isEndElement = false;
-        if (this.presentEvent.isEndElement()) {
-            EndElement endElement = this.presentEvent.asEndElement();
-            QName qName = endElement.getName();
-            isEndElement = qName.getLocalPart().equals(localName) && qName.getPrefix().equals(namespacePrefix);
-
-        }
-        return isEndElement;
+        return this.nodeType == XMLStreamConstants.END_ELEMENT && this.localName.equals(localName) &&
+                this.namespacePrefix.equals(namespacePrefix);
     }
 
     /**
@@ -630,20 +848,9 @@ public boolean isEndElement(String namespacePrefix, String localName) {
      * @return boolean
      */
     public boolean isEndElement(XmlNamespace xmlNamespace, String localName) {
-
-        boolean isEndElement = false;
-		/*
-		 * if(localName.equals("Body")) { return true; } else
-		 */
-        if (this.presentEvent.isEndElement()) {
-            EndElement endElement = this.presentEvent.asEndElement();
-            QName qName = endElement.getName();
-            isEndElement = qName.getLocalPart().equals(localName) &&
-                    (qName.getPrefix().equals(EwsUtilities.getNamespacePrefix(xmlNamespace)) ||
-                            qName.getNamespaceURI().equals(EwsUtilities.getNamespaceUri(xmlNamespace)));
-
-        }
-        return isEndElement;
+        return this.nodeType == XMLStreamConstants.END_ELEMENT && this.localName.equals(localName) &&
+                (this.namespacePrefix.equals(EwsUtilities.getNamespacePrefix(xmlNamespace)) ||
+                        this.namespaceUri.equals(EwsUtilities.getNamespaceUri(xmlNamespace)));
     }
 
     /**
@@ -721,11 +928,10 @@ public void ensureCurrentNodeIsStartElement(XmlNamespace xmlNamespace, String lo
      *          the service xml deserialization exception
      */
     public void ensureCurrentNodeIsStartElement() throws ServiceXmlDeserializationException {
-        XMLNodeType presentNodeType = new XMLNodeType(this.presentEvent.getEventType());
-        if (!this.presentEvent.isStartElement()) {
+        if (this.nodeType != XMLStreamConstants.START_ELEMENT) {
             throw new ServiceXmlDeserializationException(
-                    String.format(Strings.ExpectedStartElement, this.presentEvent.toString(),
-                            presentNodeType.toString()));
+                    String.format(Strings.ExpectedStartElement, this.getName(),
+                            XMLNodeType.getString(this.nodeType)));
         }
     }
 
@@ -758,15 +964,8 @@ public String readOuterXml() throws ServiceXmlDeserializationException, XMLStrea
             throw new ServiceXmlDeserializationException(Strings.CurrentPositionNotElementStart);
         }
 
-        XMLEvent startEvent = this.presentEvent;
-        XMLEvent event;
         StringBuilder str = new StringBuilder();
-        str.append(startEvent);
-        do {
-            event = this.xmlReader.nextEvent();
-            str.append(event);
-        } while (!checkEndElement(startEvent, event));
-
+        this.writeSubtree(str, true);
         return str.toString();
     }
 
@@ -783,44 +982,167 @@ public String readInnerXml() throws ServiceXmlDeserializationException, XMLStrea
             throw new ServiceXmlDeserializationException(Strings.CurrentPositionNotElementStart);
         }
 
-        XMLEvent startEvent = this.presentEvent;
         StringBuilder str = new StringBuilder();
-        do {
-            XMLEvent event = this.xmlReader.nextEvent();
-            if (checkEndElement(startEvent, event)) {
-                break;
+        this.writeSubtree(str, false);
+        return str.toString();
+    }
+
+    /**
+     * Writes the current element as XML, and reads up to its end, which becomes the current node.
+     *
+     * @param str              The builder to write to.
+     * @param includeElement   Whether to write the element itself, or only its content.
+     * @throws XMLStreamException the xML stream exception
+     */
+    private void writeSubtree(StringBuilder str, boolean includeElement) throws XMLStreamException {
+        String prefix = this.namespacePrefix;
+        String name = this.localName;
+        if (includeElement) {
+            this.writeStartElement(str, prefix, name);
+        }
+
+        if (!this.peeked) {
+            this.xmlReader.next();
+        }
+        this.peeked = false;
+
+        int depth = 0;
+        for (int eventType = this.xmlReader.getEventType(); ; eventType = this.xmlReader.next()) {
+            switch (eventType) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    this.writeStartElement(str, emptyIfNull(this.xmlReader.getPrefix()),
+                            this.xmlReader.getLocalName());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (depth == 0) {
+                        if (includeElement) {
+                            writeEndElement(str, prefix, name);
+                        }
+                        this.setCurrentNode(eventType);
+                        return;
+                    }
+                    depth--;
+                    writeEndElement(str, emptyIfNull(this.xmlReader.getPrefix()), this.xmlReader.getLocalName());
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    writeEscaped(str, this.xmlReader.getText(), false);
+                    break;
+                case XMLStreamConstants.CDATA:
+                    str.append("<![CDATA[").append(this.xmlReader.getText()).append("]]>");
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    str.append("<!--").append(this.xmlReader.getText()).append("-->");
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    str.append("<?").append(this.xmlReader.getPITarget()).append(' ')
+                            .append(this.xmlReader.getPIData()).append("?>");
+                    break;
+                default:
+                    break;
             }
-            str.append(event);
-        } while (true);
+        }
+    }
 
-        return str.toString();
+    /**
+     * Writes the start tag of the start element under the cursor, or of the current start element if the cursor has
+     * moved past it, with its namespace declarations and attributes.
+     *
+     * @param str       The builder to write to.
+     * @param prefix    The namespace prefix of the element.
+     * @param localName The local name of the element.
+     */
+    private void writeStartElement(StringBuilder str, String prefix, String localName) {
+        str.append('<');
+        writeName(str, prefix, localName);
+
+        int count = this.peeked ? this.namespaceCount : this.xmlReader.getNamespaceCount();
+        for (int i = 0; i < count; i++) {
+            String declaredPrefix = this.peeked ? this.namespaces[i * 2] :
+                    emptyIfNull(this.xmlReader.getNamespacePrefix(i));
+            String declaredUri = this.peeked ? this.namespaces[i * 2 + 1] :
+                    emptyIfNull(this.xmlReader.getNamespaceURI(i));
+            str.append(' ');
+            writeName(str, declaredPrefix.isEmpty() ? "" : "xmlns", declaredPrefix.isEmpty() ? "xmlns" :
+                    declaredPrefix);
+            str.append("=\"");
+            writeEscaped(str, declaredUri, true);
+            str.append('"');
+        }
+
+        count = this.getAttributeCount();
+        for (int i = 0; i < count; i++) {
+            str.append(' ');
+            writeName(str, this.getAttributePrefix(i), this.getAttributeLocalName(i));
+            str.append("=\"");
+            writeEscaped(str, this.getAttributeValue(i), true);
+            str.append('"');
+        }
+        str.append('>');
     }
 
     /**
-     * Check end element.
+     * Writes an end tag.
      *
-     * @param startEvent the start event
-     * @param endEvent   the end event
-     * @return true, if successful
+     * @param str       The builder to write to.
+     * @param prefix    The namespace prefix of the element.
+     * @param localName The local name of the element.
      */
-    public static boolean checkEndElement(XMLEvent startEvent, XMLEvent endEvent) {
+    private static void writeEndElement(StringBuilder str, String prefix, String localName) {
+        str.append("</");
+        writeName(str, prefix, localName);
+        str.append('>');
+    }
 
-        boolean isEndElement = false;
-        if (endEvent.isEndElement()) {
-            QName qEName = endEvent.asEndElement().getName();
-            QName qSName = startEvent.asStartElement().getName();
-            isEndElement = qEName.getLocalPart().equals(qSName.getLocalPart()) &&
-                    (qEName.getPrefix().equals(qSName.getPrefix()) || qEName.getNamespaceURI().equals(qSName.
-                            getNamespaceURI()));
+    /**
+     * Writes a qualified name.
+     *
+     * @param str       The builder to write to.
+     * @param prefix    The namespace prefix, empty if there is none.
+     * @param localName The local name.
+     */
+    private static void writeName(StringBuilder str, String prefix, String localName) {
+        if (!prefix.isEmpty()) {
+            str.append(prefix).append(':');
+        }
+        str.append(localName);
+    }
 
+    /**
+     * Writes text, escaping the characters that cannot appear as is.
+     *
+     * @param str       The builder to write to.
+     * @param text      The text.
+     * @param attribute Whether the text is an attribute value.
+     */
+    private static void writeEscaped(StringBuilder str, String text, boolean attribute) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    str.append("&amp;");
+                    break;
+                case '<':
+                    str.append("&lt;");
+                    break;
+                case '>':
+                    str.append("&gt;");
+                    break;
+                case '"':
+                    str.append(attribute ? "&quot;" : "\"");
+                    break;
+                default:
+                    str.append(c);
+                    break;
+            }
         }
-        return isEndElement;
     }
 
     /**
      * Gets the XML reader for node.
      *
-     * @return null
+     * @return An event reader over the current element.
      * @throws XMLStreamException
      * @throws ServiceXmlDeserializationException
      *
@@ -831,6 +1153,20 @@ protected XMLEventReader getXmlReaderForNode() throws FileNotFoundException, Ser
         return readSubtree(); //this.xmlReader.ReadSubtree();
     }
 
+    /**
+     * Gets an event reader over the current element, from its start to its end.
+     * <p/>
+     * The event reader is a view over this reader: it reads the events from the underlying parser as it goes, without
+     * copying or parsing the element again, and reports no more events once it has returned the end of the element,
+     * which then becomes the current node of this reader. This reader must not be used again until the event reader
+     * has been read to the end or closed; closing it skips the rest of the element.
+     *
+     * @return The event reader.
+     * @throws XMLStreamException the xML stream exception
+     * @throws FileNotFoundException
+     * @throws ServiceXmlDeserializationException
+     *                            the service xml deserialization exception
+     */
     public XMLEventReader readSubtree() throws XMLStreamException, FileNotFoundException,
             ServiceXmlDeserializationException {
 
@@ -838,34 +1174,127 @@ public XMLEventReader readSubtree() throws XMLStreamException, FileNotFoundExcep
             throw new ServiceXmlDeserializationException(Strings.CurrentPositionNotElementStart);
         }
 
-        XMLEventReader eventReader = null;
-        InputStream in = null;
-        XMLEvent startEvent = this.presentEvent;
-        XMLEvent event = startEvent;
-        StringBuilder str = new StringBuilder();
-        str.append(startEvent);
-        do {
-            event = this.xmlReader.nextEvent();
-            str.append(event);
-        } while (!checkEndElement(startEvent, event));
+        XMLInputFactory inputFactory = EwsXmlFactories.getInputFactory();
+        if (!this.peeked) {
+            return inputFactory.createXMLEventReader(new SubtreeReader(1));
+        }
 
-        try {
+        // The cursor has moved past the start element, so it is rebuilt from the copy kept by peek().
+        this.peeked = false;
+        XMLEventFactory eventFactory = EwsXmlFactories.getEventFactory();
+        List<Attribute> attributeList = new ArrayList<Attribute>(this.attributeCount);
+        for (int i = 0; i < this.attributeCount; i++) {
+            attributeList.add(eventFactory.createAttribute(this.attributes[i * 4 + 2], this.attributes[i * 4 + 1],
+                    this.attributes[i * 4], this.attributes[i * 4 + 3]));
+        }
+        List<Namespace> namespaceList = new ArrayList<Namespace>(this.namespaceCount);
+        for (int i = 0; i < this.namespaceCount; i++) {
+            String prefix = this.namespaces[i * 2];
+            String namespaceUri = this.namespaces[i * 2 + 1];
+            namespaceList.add(prefix.isEmpty() ? eventFactory.createNamespace(namespaceUri) :
+                    eventFactory.createNamespace(prefix, namespaceUri));
+        }
+        final XMLEvent startElement = eventFactory.createStartElement(this.namespacePrefix, this.namespaceUri,
+                this.localName, attributeList.iterator(), namespaceList.iterator(),
+                this.xmlReader.getNamespaceContext());
+
+        int eventType = this.xmlReader.getEventType();
+        int depth = eventType == XMLStreamConstants.START_ELEMENT ? 2 :
+                (eventType == XMLStreamConstants.END_ELEMENT ? 0 : 1);
+        return new EventReaderDelegate(inputFactory.createXMLEventReader(new SubtreeReader(depth))) {
+            private boolean startElementRead;
+
+            @Override
+            public XMLEvent nextEvent() throws XMLStreamException {
+                if (!this.startElementRead) {
+                    this.startElementRead = true;
+                    return startElement;
+                }
+                return super.nextEvent();
+            }
+
+            @Override
+            public Object next() {
+                if (!this.startElementRead) {
+                    this.startElementRead = true;
+                    return startElement;
+                }
+                return super.next();
+            }
 
-            XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+            @Override
+            public boolean hasNext() {
+                return !this.startElementRead || super.hasNext();
+            }
 
-            try {
-                in = new ByteArrayInputStream(str.toString().getBytes("UTF-8"));
+            @Override
+            public XMLEvent peek() throws XMLStreamException {
+                return this.startElementRead ? super.peek() : startElement;
             }
-            catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
+
+            @Override
+            public XMLEvent nextTag() throws XMLStreamException {
+                return this.startElementRead ? super.nextTag() : this.nextEvent();
             }
-            eventReader = inputFactory.createXMLEventReader(in);
+        };
+    }
 
+    /**
+     * A view over the cursor that ends with the end of the element the cursor was on, used by
+     * {@link #readSubtree()}.
+     */
+    private final class SubtreeReader extends StreamReaderDelegate {
+
+        /**
+         * The number of elements open in the subtree, 0 once its end has been read.
+         */
+        private int depth;
+
+        /**
+         * Initializes a new instance of the SubtreeReader class.
+         *
+         * @param depth The number of elements open in the subtree at the node under the cursor.
+         */
+        SubtreeReader(int depth) {
+            super(xmlReader);
+            this.depth = depth;
+            if (depth == 0) {
+                setCurrentNode(XMLStreamConstants.END_ELEMENT);
+            }
+        }
+
+        @Override
+        public boolean hasNext() throws XMLStreamException {
+            return this.depth > 0 && super.hasNext();
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            if (this.depth == 0) {
+                throw new NoSuchElementException();
+            }
+
+            int eventType = super.next();
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                this.depth++;
+            }
+            else if (eventType == XMLStreamConstants.END_ELEMENT && --this.depth == 0) {
+                setCurrentNode(XMLStreamConstants.END_ELEMENT);
+            }
+            return eventType;
         }
-        catch (Exception e) {
-            e.printStackTrace();
+
+        /**
+         * Skips the rest of the subtree. The underlying cursor is left open.
+         *
+         * @throws XMLStreamException the xML stream exception
+         */
+        @Override
+        public void close() throws XMLStreamException {
+            while (this.depth > 0) {
+                this.next();
+            }
         }
-        return eventReader;
     }
 
     /**
@@ -875,26 +1304,31 @@ public XMLEventReader readSubtree() throws XMLStreamException, FileNotFoundExcep
      * @param localName    The local name of the element you wish to move to.
      * @throws XMLStreamException
      */
-    public void ReadToDescendant(XmlNamespace xmlNamespace, String localName) throws XMLStreamException {
+    public void ReadToDescendant(XmlNamespace xmlNamespace, String localName) throws XMLStreamException,
+            ServiceXmlDeserializationException {
         readToDescendant(localName, EwsUtilities.getNamespaceUri(xmlNamespace));
     }
 
-    public boolean readToDescendant(String localName, String namespaceURI) throws XMLStreamException {
+    public boolean readToDescendant(String localName, String namespaceURI) throws XMLStreamException,
+            ServiceXmlDeserializationException {
 
         if (!this.isStartElement()) {
             return false;
         }
-        XMLEvent startEvent = this.presentEvent;
-        XMLEvent event = this.presentEvent;
+
+        int depth = 0;
         do {
-            if (event.isStartElement()) {
-                QName qEName = event.asStartElement().getName();
-                if (qEName.getLocalPart().equals(localName) && qEName.getNamespaceURI().equals(namespaceURI)) {
+            this.read();
+            if (this.nodeType == XMLStreamConstants.START_ELEMENT) {
+                if (this.localName.equals(localName) && this.namespaceUri.equals(namespaceURI)) {
                     return true;
                 }
+                depth++;
+            }
+            else if (this.nodeType == XMLStreamConstants.END_ELEMENT) {
+                depth--;
             }
-            event = this.xmlReader.nextEvent();
-        } while (!checkEndElement(startEvent, event));
+        } while (depth >= 0);
 
         return false;
     }
@@ -906,14 +1340,7 @@ public boolean readToDescendant(String localName, String namespaceURI) throws XM
      * @return boolean
      */
     public boolean hasAttributes() {
-
-        if (this.presentEvent.isStartElement()) {
-            StartElement startElement = this.presentEvent.asStartElement();
-            return startElement.getAttributes().hasNext();
-        }
-        else {
-            return false;
-        }
+        return this.nodeType == XMLStreamConstants.START_ELEMENT && this.getAttributeCount() > 0;
     }
 
     /**
@@ -923,9 +1350,11 @@ public boolean hasAttributes() {
      * @throws XMLStreamException the xML stream exception
      */
     public boolean isEmptyElement() throws XMLStreamException {
-        boolean isPresentStartElement = this.presentEvent.isStartElement();
-        boolean isNextEndElement = this.xmlReader.peek().isEndElement();
-        return isPresentStartElement && isNextEndElement;
+        if (this.nodeType != XMLStreamConstants.START_ELEMENT) {
+            return false;
+        }
+        this.peek();
+        return this.xmlReader.getEventType() == XMLStreamConstants.END_ELEMENT;
     }
 
     /**
@@ -934,17 +1363,7 @@ public boolean isEmptyElement() throws XMLStreamException {
      * @return String
      */
     public String getLocalName() {
-
-        String localName = null;
-
-        if (this.presentEvent.isStartElement()) {
-            localName = this.presentEvent.asStartElement().getName().getLocalPart();
-        }
-        else {
-
-            localName = this.presentEvent.asEndElement().getName().getLocalPart();
-        }
-        return localName;
+        return this.localName;
     }
 
     /**
@@ -953,13 +1372,7 @@ public String getLocalName() {
      * @return String
      */
     protected String getNamespacePrefix() {
-        if (this.presentEvent.isStartElement()) {
-            return this.presentEvent.asStartElement().getName().getPrefix();
-        }
-        if (this.presentEvent.isEndElement()) {
-            return this.presentEvent.asEndElement().getName().getPrefix();
-        }
-        return null;
+        return this.namespacePrefix;
     }
 
     /**
@@ -968,16 +1381,7 @@ protected String getNamespacePrefix() {
      * @return String
      */
     protected String getNamespaceUri() {
-
-        String nameSpaceUri = null;
-        if (this.presentEvent.isStartElement()) {
-            nameSpaceUri = this.presentEvent.asStartElement().getName().getNamespaceURI();
-        }
-        else {
-
-            nameSpaceUri = this.presentEvent.asEndElement().getName().getNamespaceURI();
-        }
-        return nameSpaceUri;
+        return this.namespaceUri;
     }
 
     /**
@@ -987,9 +1391,7 @@ protected String getNamespaceUri() {
      * @throws XMLStreamException the xML stream exception
      */
     public XMLNodeType getNodeType() throws XMLStreamException {
-        XMLEvent event = this.presentEvent;
-        XMLNodeType nodeType = new XMLNodeType(event.getEventType());
-        return nodeType;
+        return XMLNodeType.valueOf(this.nodeType);
     }
 
     /**
@@ -998,15 +1400,10 @@ public XMLNodeType getNodeType() throws XMLStreamException {
      * @return Object
      */
     protected Object getName() {
-        String name = null;
-        if (this.presentEvent.isStartElement()) {
-            name = this.presentEvent.asStartElement().getName().toString();
-        }
-        else {
-
-            name = this.presentEvent.asEndElement().getName().toString();
+        if (this.localName == null) {
+            return null;
         }
-        return name;
+        return this.namespaceUri.isEmpty() ? this.localName : "{" + this.namespaceUri + "}" + this.localName;
     }
 
     /**
@@ -1020,4 +1417,14 @@ private static boolean isNullOrEmpty(String namespacePrefix) {
 
     }
 
+    /**
+     * Returns the empty string for null, as the stream reader may return null for a missing prefix or namespace.
+     *
+     * @param value the value
+     * @return the value, or the empty string if it is null
+     */
+    private static String emptyIfNull(String value) {
+        return value != null ? value : "";
+    }
+
 }
@@ -13,6 +13,8 @@
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  * Represents a binding to the Exchange Web Services.
@@ -23,7 +25,7 @@ public final class ExchangeService extends ExchangeServiceBase implements IAutod
     /**
      * The url.
      */
-    private URI url;
+    private volatile URI url;
 
     /**
      * The preferred culture.
@@ -164,14 +166,29 @@ private ServiceResponseCollection<FindFolderResponse> internalFindFolders(Iterab
                                                                               ServiceErrorHandling errorHandlingMode)
             throws
             Exception {
+        return this.buildFindFolderRequest(parentFolderIds, searchFilter, view, errorHandlingMode).execute();
+    }
+
+    /**
+     * Builds a request to find folders.
+     *
+     * @param parentFolderIds   The parent folder ids.
+     * @param searchFilter      The search filter.
+     * @param view              The view controlling the number of folders returned.
+     * @param errorHandlingMode Indicates the type of error handling should be done.
+     * @return A request to find folders.
+     * @throws Exception the exception
+     */
+    private FindFolderRequest buildFindFolderRequest(Iterable<FolderId> parentFolderIds, SearchFilter searchFilter,
+                                                     FolderView view, ServiceErrorHandling errorHandlingMode) throws
+            Exception {
         FindFolderRequest request = new FindFolderRequest(this, errorHandlingMode);
 
         request.getParentFolderIds().addRangeFolderId(parentFolderIds);
         request.setSearchFilter(searchFilter);
         request.setView(view);
 
-        return request.execute();
-
+        return request;
     }
 
     /**
@@ -247,6 +264,49 @@ public FindFoldersResults findFolders(WellKnownFolderName parentFolderName, Fold
         return this.findFolders(new FolderId(parentFolderName), view);
     }
 
+    /**
+     * Obtains a list of folders by searching the sub-folders of the specified folder, on the async executor of this
+     * service.
+     *
+     * @param parentFolderId The Id of the folder in which to search for folders.
+     * @param searchFilter   The search filter, can be null.
+     * @param view           The view controlling the number of folders returned.
+     * @return A future that completes with the results of the search operation.
+     * @throws Exception the exception
+     */
+    public CompletableFuture<FindFoldersResults> findFoldersAsync(FolderId parentFolderId, SearchFilter searchFilter,
+                                                                  FolderView view) throws Exception {
+        EwsUtilities.validateParam(parentFolderId, "parentFolderId");
+        EwsUtilities.validateParam(view, "view");
+        EwsUtilities.validateParamAllowNull(searchFilter, "searchFilter");
+
+        List<FolderId> folderIdArray = new ArrayList<FolderId>();
+        folderIdArray.add(parentFolderId);
+
+        return this.buildFindFolderRequest(folderIdArray, searchFilter, view, ServiceErrorHandling.ThrowOnError)
+                .executeAsync().map(
+                        new Function<ServiceResponseCollection<FindFolderResponse>, FindFoldersResults>() {
+                            @Override
+                            public FindFoldersResults apply(ServiceResponseCollection<FindFolderResponse> responses) {
+                                return responses.getResponseAtIndex(0).getResults();
+                            }
+                        });
+    }
+
+    /**
+     * Obtains a list of folders by searching the sub-folders of the specified folder, on the async executor of this
+     * service.
+     *
+     * @param parentFolderId The Id of the folder in which to search for folders.
+     * @param view           The view controlling the number of folders returned.
+     * @return A future that completes with the results of the search operation.
+     * @throws Exception the exception
+     */
+    public CompletableFuture<FindFoldersResults> findFoldersAsync(FolderId parentFolderId, FolderView view) throws
+            Exception {
+        return this.findFoldersAsync(parentFolderId, null, view);
+    }
+
     /**
      * Load specified properties for a folder.
      *
@@ -713,6 +773,26 @@ protected Item moveItem(ItemId itemId, FolderId destinationFolderId) throws Exce
     protected <TItem extends Item> ServiceResponseCollection<FindItemResponse<TItem>> findItems(
             Iterable<FolderId> parentFolderIds, SearchFilter searchFilter, String queryString, ViewBase view,
             Grouping groupBy, ServiceErrorHandling errorHandlingMode) throws Exception {
+        return this.<TItem>buildFindItemRequest(parentFolderIds, searchFilter, queryString, view, groupBy,
+                errorHandlingMode).execute();
+    }
+
+    /**
+     * Builds a request to find items.
+     *
+     * @param <TItem>           The type of item
+     * @param parentFolderIds   The parent folder ids.
+     * @param searchFilter      The search filter.
+     * @param queryString       the query string
+     * @param view              The view controlling the number of items returned.
+     * @param groupBy           The group by.
+     * @param errorHandlingMode Indicates the type of error handling should be done.
+     * @return A request to find items.
+     * @throws Exception the exception
+     */
+    private <TItem extends Item> FindItemRequest<TItem> buildFindItemRequest(
+            Iterable<FolderId> parentFolderIds, SearchFilter searchFilter, String queryString, ViewBase view,
+            Grouping groupBy, ServiceErrorHandling errorHandlingMode) throws Exception {
         EwsUtilities.validateParamCollection(parentFolderIds.iterator(), "parentFolderIds");
         EwsUtilities.validateParam(view, "view");
         EwsUtilities.validateParamAllowNull(groupBy, "groupBy");
@@ -727,7 +807,74 @@ protected <TItem extends Item> ServiceResponseCollection<FindItemResponse<TItem>
         request.setView(view);
         request.setGroupBy(groupBy);
 
-        return request.execute();
+        return request;
+    }
+
+    /**
+     * Obtains a list of items by searching the contents of a specific folder, on the async executor of this service.
+     *
+     * @param parentFolderId the parent folder id
+     * @param searchFilter   the search filter, can be null
+     * @param queryString    the query string, can be null
+     * @param view           the view
+     * @return A future that completes with the results of the search operation.
+     * @throws Exception the exception
+     */
+    private CompletableFuture<FindItemsResults<Item>> findItemsAsync(FolderId parentFolderId, SearchFilter searchFilter,
+                                                                     String queryString, ItemView view) throws
+            Exception {
+        List<FolderId> folderIdArray = new ArrayList<FolderId>();
+        folderIdArray.add(parentFolderId);
+
+        return this.<Item>buildFindItemRequest(folderIdArray, searchFilter, queryString, view, null, /* groupBy */
+                ServiceErrorHandling.ThrowOnError).executeAsync().map(
+                new Function<ServiceResponseCollection<FindItemResponse<Item>>, FindItemsResults<Item>>() {
+                    @Override
+                    public FindItemsResults<Item> apply(ServiceResponseCollection<FindItemResponse<Item>> responses) {
+                        return responses.getResponseAtIndex(0).getResults();
+                    }
+                });
+    }
+
+    /**
+     * Obtains a list of items by searching the contents of a specific folder, on the async executor of this service.
+     *
+     * @param parentFolderId the parent folder id
+     * @param queryString    the query string
+     * @param view           the view
+     * @return A future that completes with the results of the search operation.
+     * @throws Exception the exception
+     */
+    public CompletableFuture<FindItemsResults<Item>> findItemsAsync(FolderId parentFolderId, String queryString,
+                                                                    ItemView view) throws Exception {
+        return this.findItemsAsync(parentFolderId, null, /* searchFilter */ queryString, view);
+    }
+
+    /**
+     * Obtains a list of items by searching the contents of a specific folder, on the async executor of this service.
+     *
+     * @param parentFolderId the parent folder id
+     * @param searchFilter   the search filter
+     * @param view           the view
+     * @return A future that completes with the results of the search operation.
+     * @throws Exception the exception
+     */
+    public CompletableFuture<FindItemsResults<Item>> findItemsAsync(FolderId parentFolderId, SearchFilter searchFilter,
+                                                                    ItemView view) throws Exception {
+        return this.findItemsAsync(parentFolderId, searchFilter, null, /* queryString */ view);
+    }
+
+    /**
+     * Obtains a list of items by searching the contents of a specific folder, on the async executor of this service.
+     *
+     * @param parentFolderId the parent folder id
+     * @param view           the view
+     * @return A future that completes with the results of the search operation.
+     * @throws Exception the exception
+     */
+    public CompletableFuture<FindItemsResults<Item>> findItemsAsync(FolderId parentFolderId, ItemView view) throws
+            Exception {
+        return this.findItemsAsync(parentFolderId, null, /* searchFilter */ null, /* queryString */ view);
     }
 
     /**
@@ -1069,10 +1216,24 @@ private ServiceResponseCollection<GetItemResponse> internalBindToItems(Iterable<
                                                                            PropertySet propertySet,
                                                                            ServiceErrorHandling errorHandling) throws
             Exception {
+        return this.buildGetItemRequest(itemIds, propertySet, errorHandling).execute();
+    }
+
+    /**
+     * Builds a request to bind to multiple items.
+     *
+     * @param itemIds       the item ids
+     * @param propertySet   the property set
+     * @param errorHandling the error handling
+     * @return A request to bind to multiple items.
+     * @throws Exception the exception
+     */
+    private GetItemRequest buildGetItemRequest(Iterable<ItemId> itemIds, PropertySet propertySet,
+                                               ServiceErrorHandling errorHandling) throws Exception {
         GetItemRequest request = new GetItemRequest(this, errorHandling);
         request.getItemIds().addRange(itemIds);
         request.setPropertySet(propertySet);
-        return request.execute();
+        return request;
     }
 
     /**
@@ -1091,6 +1252,24 @@ public ServiceResponseCollection<GetItemResponse> bindToItems(Iterable<ItemId> i
         return this.internalBindToItems(itemIds, propertySet, ServiceErrorHandling.ReturnErrors);
     }
 
+    /**
+     * Binds to multiple items in a single call to EWS, on the async executor of this service.
+     *
+     * @param itemIds     the item ids
+     * @param propertySet the property set
+     * @return A future that completes with a ServiceResponseCollection providing results for each of the specified
+     *         item Ids.
+     * @throws Exception the exception
+     */
+    public CompletableFuture<ServiceResponseCollection<GetItemResponse>> bindToItemsAsync(Iterable<ItemId> itemIds,
+                                                                                         PropertySet propertySet)
+            throws Exception {
+        EwsUtilities.validateParamCollection(itemIds.iterator(), "itemIds");
+        EwsUtilities.validateParam(propertySet, "propertySet");
+
+        return this.buildGetItemRequest(itemIds, propertySet, ServiceErrorHandling.ReturnErrors).executeAsync();
+    }
+
     /**
      * * Binds to multiple items in a single call to EWS.
      *
@@ -1690,6 +1869,26 @@ protected GetEventsResults getEvents(String subscriptionId, String waterMark) th
         return this.buildGetEventsRequest(subscriptionId, waterMark).execute().getResponseAtIndex(0).getResults();
     }
 
+    /**
+     * Retrieves the latests events associated with a pull subscription, on the async executor of this service.
+     *
+     * @param subscriptionId the subscription id
+     * @param waterMark      the water mark
+     * @return A future that completes with a GetEventsResults containing a list of events associated with the
+     *         subscription.
+     * @throws Exception the exception
+     */
+    ServiceRequestFuture<GetEventsResults> getEventsAsync(String subscriptionId, String waterMark) throws
+            Exception {
+        return this.buildGetEventsRequest(subscriptionId, waterMark).executeAsync().map(
+                new Function<ServiceResponseCollection<GetEventsResponse>, GetEventsResults>() {
+                    @Override
+                    public GetEventsResults apply(ServiceResponseCollection<GetEventsResponse> responses) {
+                        return responses.getResponseAtIndex(0).getResults();
+                    }
+                });
+    }
+
     /**
      * Begins an asynchronous request to retrieve the latest events associated with a pull subscription. Calling this
      * method results in a call to EWS.
@@ -2070,6 +2269,39 @@ public ChangeCollection<ItemChange> syncFolderItems(FolderId syncFolderId, Prope
                         syncState).execute().getResponseAtIndex(0).getChanges();
     }
 
+    /**
+     * Synchronizes the items of a specific folder, on the async executor of this service.
+     *
+     * @param syncFolderId       The Id of the folder containing the items to synchronize with.
+     * @param propertySet        The set of properties to retrieve for synchronized items.
+     * @param ignoredItemIds     The optional list of item Ids that should be ignored.
+     * @param maxChangesReturned The maximum number of changes that should be returned.
+     * @param syncScope          The sync scope identifying items to include in the ChangeCollection.
+     * @param syncState          The optional sync state representing the point in time when to start the
+     *                           synchronization.
+     * @return A future that completes with a ChangeCollection containing a list of changes that occurred in the
+     *         specified folder.
+     * @throws Exception the exception
+     */
+    public CompletableFuture<ChangeCollection<ItemChange>> syncFolderItemsAsync(FolderId syncFolderId,
+                                                                                PropertySet propertySet,
+                                                                                Iterable<ItemId> ignoredItemIds,
+                                                                                int maxChangesReturned,
+                                                                                SyncFolderItemsScope syncScope,
+                                                                                String syncState) throws Exception {
+        return this
+                .buildSyncFolderItemsRequest(syncFolderId, propertySet, ignoredItemIds, maxChangesReturned, syncScope,
+                        syncState).executeAsync().map(
+                        new Function<ServiceResponseCollection<SyncFolderItemsResponse>,
+                                ChangeCollection<ItemChange>>() {
+                            @Override
+                            public ChangeCollection<ItemChange> apply(
+                                    ServiceResponseCollection<SyncFolderItemsResponse> responses) {
+                                return responses.getResponseAtIndex(0).getChanges();
+                            }
+                        });
+    }
+
     /**
      * Begins an asynchronous request to synchronize the items of a specific folder. Calling this method results in a
      * call
@@ -2158,6 +2390,30 @@ public ChangeCollection<FolderChange> syncFolderHierarchy(FolderId syncFolderId,
                 .getResponseAtIndex(0).getChanges();
     }
 
+    /**
+     * Synchronizes the sub-folders of a specific folder, on the async executor of this service.
+     *
+     * @param syncFolderId the sync folder id, null for the root folder of the mailbox
+     * @param propertySet  the property set
+     * @param syncState    the sync state
+     * @return A future that completes with a ChangeCollection containing a list of changes that occurred in the
+     *         specified folder.
+     * @throws Exception the exception
+     */
+    public CompletableFuture<ChangeCollection<FolderChange>> syncFolderHierarchyAsync(FolderId syncFolderId,
+                                                                                      PropertySet propertySet,
+                                                                                      String syncState) throws
+            Exception {
+        return this.buildSyncFolderHierarchyRequest(syncFolderId, propertySet, syncState).executeAsync().map(
+                new Function<ServiceResponseCollection<SyncFolderHierarchyResponse>, ChangeCollection<FolderChange>>() {
+                    @Override
+                    public ChangeCollection<FolderChange> apply(
+                            ServiceResponseCollection<SyncFolderHierarchyResponse> responses) {
+                        return responses.getResponseAtIndex(0).getChanges();
+                    }
+                });
+    }
+
     /**
      * Begins an asynchronous request to synchronize the sub-folders of a specific folder. Calling this method
      * results in a
@@ -22,8 +22,13 @@
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents an abstract binding to an Exchange Service.
@@ -57,6 +62,11 @@ public abstract class ExchangeServiceBase {
      */
     private int timeout = 100000;
 
+    /**
+     * The timeouts per operation, keyed by the XML element name of the request.
+     */
+    private final Map<String, Integer> operationTimeouts = new ConcurrentHashMap<String, Integer>();
+
     /**
      * The trace enabled.
      */
@@ -72,6 +82,17 @@ public abstract class ExchangeServiceBase {
      */
     private ITraceListener traceListener = new EwsTraceListener();
 
+    /**
+     * The maximum number of bytes of a response body traced.
+     */
+    private int traceBodyLimit = 1024 * 1024;
+
+    /**
+     * The local names of the elements whose text is not traced.
+     */
+    private Set<String> traceRedactedElements = Collections.unmodifiableSet(new HashSet<String>(
+            Arrays.asList(XmlElementNames.Content, XmlElementNames.MimeContent)));
+
     /**
      * The pre authenticate.
      */
@@ -87,6 +108,26 @@ public abstract class ExchangeServiceBase {
      */
     private boolean acceptGzipEncoding = true;
 
+    /**
+     * The request streaming enabled.
+     */
+    private boolean requestStreamingEnabled;
+
+    /**
+     * The throttling retry policy.
+     */
+    private ThrottlingRetryPolicy throttlingRetryPolicy;
+
+    /**
+     * The rate limiter applied per impersonated user.
+     */
+    private ClientRateLimiter mailboxRateLimiter;
+
+    /**
+     * The rate limiter applied per credential.
+     */
+    private ClientRateLimiter credentialRateLimiter;
+
     /**
      * The requested server version.
      */
@@ -95,11 +136,14 @@ public abstract class ExchangeServiceBase {
     /**
      * The server info.
      */
-    private ExchangeServerInfo serverInfo;
+    private volatile ExchangeServerInfo serverInfo;
 
     private Map<String, String> httpHeaders = new HashMap<String, String>();
 
-    private Map<String, String> httpResponseHeaders = new HashMap<String, String>();
+    /**
+     * The HTTP headers of the last response. Every response gets its own map, which replaces this one as a whole.
+     */
+    private volatile Map<String, String> httpResponseHeaders = Collections.emptyMap();
 
     private TimeZone timeZone;
 
@@ -107,9 +151,71 @@ public abstract class ExchangeServiceBase {
 
     private HttpConnectionManager httpConnectionManager;
 
-    HttpClientWebRequest request = null;
+    /**
+     * The transport shared by all requests of this service, created on first use.
+     */
+    private volatile HttpClientTransport httpClientTransport;
+
+    /**
+     * The default number of connections each connection pool of the default transport keeps open to a host.
+     */
+    static final int DefaultMaxConnectionsPerHost = 20;
 
-    private Cookie[] cookies = null;
+    /**
+     * The default number of connections each connection pool of the default transport keeps open to all hosts.
+     */
+    static final int DefaultMaxTotalConnections = 100;
+
+    /**
+     * The number of connections each connection pool of the default transport keeps open to a host.
+     */
+    private int maxConnectionsPerHost = DefaultMaxConnectionsPerHost;
+
+    /**
+     * The number of connections each connection pool of the default transport keeps open to all hosts.
+     */
+    private int maxTotalConnections = DefaultMaxTotalConnections;
+
+    /**
+     * The number of threads of the default async executor.
+     */
+    private static final int DefaultAsyncThreadCount = 8;
+
+    /**
+     * The number of requests the default async executor queues before it rejects new ones.
+     */
+    private static final int DefaultAsyncQueueSize = 1024;
+
+    /**
+     * The executor running the async requests of this service, when set by the caller.
+     */
+    private ExecutorService asyncExecutor;
+
+    /**
+     * The default executor running the async requests of this service, created on first use.
+     */
+    private volatile ExecutorService defaultAsyncExecutor;
+
+    /**
+     * The executor running the readers of the streaming subscription connections of this service, null to start a
+     * thread per connection.
+     */
+    private ExecutorService streamingExecutor;
+
+    /**
+     * The factory for requests, when the default transport is not used.
+     */
+    private IHttpWebRequestFactory httpWebRequestFactory;
+
+    /**
+     * The listener receiving the metrics of the requests of this service, null if metrics are not recorded.
+     */
+    private IRequestMetricsListener requestMetricsListener;
+
+    /**
+     * The cookies to send with subsequent requests. The array is replaced as a whole and never modified.
+     */
+    private volatile Cookie[] cookies = null;
 
     // protected static HttpStatusCode AccountIsLocked = (HttpStatusCode)456;
 
@@ -129,12 +235,25 @@ protected ExchangeServiceBase(ExchangeServiceBase service, ExchangeVersion reque
         this.traceEnabled = service.isTraceEnabled();
         this.traceListener = service.getTraceListener();
         this.traceFlags = service.getTraceFlags();
+        this.traceBodyLimit = service.getTraceBodyLimit();
+        this.traceRedactedElements = service.getTraceRedactedElements();
         this.timeout = service.getTimeout();
+        this.operationTimeouts.putAll(service.operationTimeouts);
+        this.maxConnectionsPerHost = service.getMaxConnectionsPerHost();
+        this.maxTotalConnections = service.getMaxTotalConnections();
         this.preAuthenticate = service.isPreAuthenticate();
         this.userAgent = service.getUserAgent();
         this.acceptGzipEncoding = service.getAcceptGzipEncoding();
+        this.requestStreamingEnabled = service.isRequestStreamingEnabled();
+        this.throttlingRetryPolicy = service.getThrottlingRetryPolicy();
+        this.mailboxRateLimiter = service.getMailboxRateLimiter();
+        this.credentialRateLimiter = service.getCredentialRateLimiter();
         this.timeZone = service.getTimeZone();
         this.httpHeaders = service.getHttpHeaders();
+        this.httpWebRequestFactory = service.httpWebRequestFactory;
+        this.requestMetricsListener = service.getRequestMetricsListener();
+        this.asyncExecutor = service.asyncExecutor;
+        this.streamingExecutor = service.streamingExecutor;
     }
 
     /**
@@ -224,7 +343,7 @@ protected HttpWebRequest prepareHttpWebRequestForUrl(URI url, boolean acceptGzip
             throw new ServiceLocalException(strErr);
         }
 
-        request = new HttpClientWebRequest(this.httpConnectionManager);
+        HttpWebRequest request = this.getHttpWebRequestFactory().createHttpWebRequest();
         try {
             request.setUrl(url.toURL());
         }
@@ -259,8 +378,9 @@ protected HttpWebRequest prepareHttpWebRequestForUrl(URI url, boolean acceptGzip
                 throw new ServiceLocalException(Strings.CredentialsRequired);
             }
 
-            if (this.cookies != null && this.cookies.length > 0) {
-                request.setUserCookie(this.cookies);
+            Cookie[] cookies = this.cookies;
+            if (cookies != null && cookies.length > 0) {
+                request.setUserCookie(cookies);
             }
             // Make sure that credentials have been authenticated if required
             serviceCredentials.preAuthenticate();
@@ -277,8 +397,6 @@ protected HttpWebRequest prepareHttpWebRequestForUrl(URI url, boolean acceptGzip
             throw new ServiceLocalException(strErr);
         }
 
-        this.httpResponseHeaders.clear();
-
         return request;
     }
 
@@ -362,9 +480,27 @@ protected boolean isTraceEnabledFor(TraceFlags traceFlags) {
      */
     protected void traceMessage(TraceFlags traceType, String logEntry) throws XMLStreamException, IOException {
         if (this.isTraceEnabledFor(traceType)) {
+            this.trace(traceType, logEntry);
+        }
+    }
+
+    /**
+     * Passes the specified entry to the TraceListener. An AsyncTraceListener formats it on its writer thread.
+     *
+     * @param traceType Kind of trace entry.
+     * @param logEntry  The entry to log.
+     * @throws XMLStreamException the xML stream exception
+     * @throws IOException        Signals that an I/O exception has occurred.
+     */
+    private void trace(TraceFlags traceType, String logEntry) throws XMLStreamException, IOException {
+        ITraceListener listener = this.traceListener;
+        if (listener instanceof AsyncTraceListener) {
+            ((AsyncTraceListener) listener).traceEntry(traceType, logEntry);
+        }
+        else {
             String traceTypeStr = traceType.toString();
             String logMessage = EwsUtilities.formatLogMessage(traceTypeStr, logEntry);
-            this.traceListener.trace(traceTypeStr, logMessage);
+            listener.trace(traceTypeStr, logMessage);
         }
     }
 
@@ -376,12 +512,77 @@ protected void traceMessage(TraceFlags traceType, String logEntry) throws XMLStr
      */
     protected void traceXml(TraceFlags traceType, ByteArrayOutputStream stream) {
         if (this.isTraceEnabledFor(traceType)) {
-            String traceTypeStr = traceType.toString();
-            String logMessage = EwsUtilities.formatLogMessageWithXmlContent(traceTypeStr, stream);
-            this.traceListener.trace(traceTypeStr, logMessage);
+            ITraceListener listener = this.traceListener;
+            if (listener instanceof AsyncTraceListener) {
+                ((AsyncTraceListener) listener).traceEntry(traceType, stream.toString());
+            }
+            else {
+                String traceTypeStr = traceType.toString();
+                String logMessage = EwsUtilities.formatLogMessageWithXmlContent(traceTypeStr, stream);
+                listener.trace(traceTypeStr, logMessage);
+            }
         }
     }
 
+    /**
+     * Logs the specified response body to the TraceListener if tracing is enabled. The body is redacted, formatted
+     * and passed to the listener on the trace writer thread, or on the writer thread of an AsyncTraceListener.
+     *
+     * @param traceType Kind of trace entry.
+     * @param stream    The stream the response body was read through.
+     */
+    void traceResponseBody(TraceFlags traceType, final ResponseTraceStream stream) {
+        if (this.isTraceEnabledFor(traceType)) {
+            final ITraceListener listener = this.traceListener;
+            final Set<String> redactedElements = this.traceRedactedElements;
+            if (listener instanceof AsyncTraceListener) {
+                ((AsyncTraceListener) listener).traceResponseBody(traceType, stream, redactedElements);
+                return;
+            }
+
+            final String traceTypeStr = traceType.toString();
+            final long threadId = Thread.currentThread().getId();
+            final Date time = new Date();
+            boolean queued = TraceWriter.execute(new Runnable() {
+                @Override
+                public void run() {
+                    String body = stream.toTraceString(redactedElements);
+                    String logMessage;
+                    try {
+                        logMessage = EwsUtilities.formatLogMessage(traceTypeStr, body, threadId, time);
+                    }
+                    catch (Exception e) {
+                        logMessage = body;
+                    }
+                    listener.trace(traceTypeStr, logMessage);
+                }
+            }, stream.getRetainedSize());
+
+            if (!queued) {
+                String note = String.format(Strings.ResponseTraceDropped, stream.getLength());
+                String logMessage;
+                try {
+                    logMessage = EwsUtilities.formatLogMessage(traceTypeStr, note, threadId, time);
+                }
+                catch (Exception e) {
+                    logMessage = note;
+                }
+                listener.trace(traceTypeStr, logMessage);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of response bodies not traced because the responses waiting to be traced already held too
+     * much memory. The count is shared by all services that don't trace to an {@link AsyncTraceListener}, which
+     * counts its own.
+     *
+     * @return The dropped count.
+     */
+    public long getDroppedResponseTraceCount() {
+        return TraceWriter.getDroppedCount();
+    }
+
     /**
      * Traces the HTTP request headers.
      *
@@ -395,12 +596,9 @@ protected void traceXml(TraceFlags traceType, ByteArrayOutputStream stream) {
     protected void traceHttpRequestHeaders(TraceFlags traceType, HttpWebRequest request) throws URISyntaxException,
             EWSHttpException, XMLStreamException, IOException {
         if (this.isTraceEnabledFor(traceType)) {
-            String traceTypeStr = traceType.toString();
             String headersAsString = EwsUtilities.
                     formatHttpRequestHeaders(request);
-            String logMessage = EwsUtilities.
-                    formatLogMessage(traceTypeStr, headersAsString);
-            this.traceListener.trace(traceTypeStr, logMessage);
+            this.trace(traceType, headersAsString);
         }
     }
 
@@ -416,10 +614,8 @@ protected void traceHttpRequestHeaders(TraceFlags traceType, HttpWebRequest requ
     private void traceHttpResponseHeaders(TraceFlags traceType, HttpWebRequest request) throws XMLStreamException,
             IOException, EWSHttpException {
         if (this.isTraceEnabledFor(traceType)) {
-            String traceTypeStr = traceType.toString();
             String headersAsString = EwsUtilities.formatHttpResponseHeaders(request);
-            String logMessage = EwsUtilities.formatLogMessage(traceTypeStr, headersAsString);
-            this.traceListener.trace(traceTypeStr, logMessage);
+            this.trace(traceType, headersAsString);
         }
     }
 
@@ -430,114 +626,10 @@ private void traceHttpResponseHeaders(TraceFlags traceType, HttpWebRequest reque
      * @return DateTime Returned date is always in UTC date.
      */
     protected Date convertUniversalDateTimeStringToDate(String dateString) {
-        String localTimeRegex = "^(.*)([+-]{1}\\d\\d:\\d\\d)$";
-        Pattern localTimePattern = Pattern.compile(localTimeRegex);
-        String timeRegex = "[0-9]{2,4}-[0-9]{1,2}-[0-9]{1,2}T[0-9]{2}:[0-9]{1,2}:[0-9]{1,2}.[0-9]{1,7}";
-        Pattern timePattern = Pattern.compile(timeRegex);
-        String utcPattern = "yyyy-MM-dd'T'HH:mm:ss'Z'";
-        String utcPattern1 = "yyyy-MM-dd'T'HH:mm:ss.SSSSSS'Z'";
-        String localPattern = "yyyy-MM-dd'T'HH:mm:ssz";
-        String localPattern1 = "yyyy-MM-dd'Z'";
-        String pattern = "yyyy-MM-ddz";
-        String localPattern2 = "yyyy-MM-dd'T'HH:mm:ss";
-        DateFormat utcFormatter = null;
-        Date dt = null;
-        String errMsg = String.format("Date String %s not in valid UTC/local format", dateString);
         if (dateString == null || dateString.isEmpty()) {
             return null;
         }
-        else {
-            if (dateString.endsWith("Z")) {
-                // String in UTC format yyyy-MM-ddTHH:mm:ssZ
-                utcFormatter = new SimpleDateFormat(utcPattern);
-                utcFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-                try {
-                    dt = utcFormatter.parse(dateString);
-                }
-                catch (ParseException e) {
-                    utcFormatter = new SimpleDateFormat(pattern);
-                    utcFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-                    //	dateString = dateString.substring(0, 10)+"T12:00:00Z";
-                    try {
-                        dt = utcFormatter.parse(dateString);
-                    }
-                    catch (ParseException e1) {
-                        utcFormatter = new SimpleDateFormat(localPattern1);
-                        utcFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-
-                        try {
-                            dt = utcFormatter.parse(dateString);
-                        }
-                        catch (ParseException ex) {
-
-                            utcFormatter = new SimpleDateFormat(utcPattern1);
-                            utcFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-                        }
-                        try {
-                            dt = utcFormatter.parse(dateString);
-                        }
-                        catch (ParseException e2) {
-                            throw new IllegalArgumentException(errMsg, e);
-                        }
-
-                    }
-                    // throw new IllegalArgumentException(errMsg,e);
-                }
-            }
-            else if (dateString.endsWith("z")) {
-                // String in UTC format yyyy-MM-ddTHH:mm:ssZ
-                utcFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'z'");
-                utcFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-                try {
-                    dt = utcFormatter.parse(dateString);
-                }
-                catch (ParseException e) {
-                    throw new IllegalArgumentException(e);
-                }
-            }
-            else {
-                // dateString is not ending with Z.
-                // Check for yyyy-MM-ddTHH:mm:ss+/-HH:mm pattern
-                Matcher localTimeMatcher = localTimePattern.matcher(dateString);
-                if (localTimeMatcher.find()) {
-                    System.out.println("Pattern matched");
-                    String date = localTimeMatcher.group(1);
-                    String zone = localTimeMatcher.group(2);
-                    // Add the string GMT between DateTime and TimeZone
-                    // since 'z' in yyyy-MM-dd'T'HH:mm:ssz matches
-                    // either format GMT+/-HH:mm or +/-HHmm
-                    dateString = String.format("%sGMT%s", date, zone);
-                    try {
-                        utcFormatter = new SimpleDateFormat(localPattern);
-                        utcFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-                        dt = utcFormatter.parse(dateString);
-                    }
-                    catch (ParseException e) {
-                        try {
-                            utcFormatter = new SimpleDateFormat(pattern);
-                            utcFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-                            dt = utcFormatter.parse(dateString);
-                        }
-                        catch (ParseException ex) {
-                            throw new IllegalArgumentException(ex);
-                        }
-                    }
-                }
-                else {
-                    // Invalid format
-                    utcFormatter = new SimpleDateFormat(localPattern2);
-                    utcFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-                    try {
-                        dt = utcFormatter.parse(dateString);
-                    }
-                    catch (ParseException e) {
-                        e.printStackTrace();
-                        throw new IllegalArgumentException(errMsg);
-                    }
-                }
-            }
-            return dt;
-        }
+        return EwsDateTimeCodec.parseDateTime(dateString);
     }
 
     /**
@@ -564,11 +656,7 @@ protected Date convertStartDateToUnspecifiedDateTime(String value) throws ParseE
      * @return String representation of DateTime in yyyy-MM-ddTHH:mm:ssZ format.
      */
     protected String convertDateTimeToUniversalDateTimeString(Date dt) {
-        DateFormat utcFormatter;
-        String utcPattern = "yyyy-MM-dd'T'HH:mm:ss'Z'";
-        utcFormatter = new SimpleDateFormat(utcPattern);
-        utcFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-        return utcFormatter.format(dt);
+        return EwsDateTimeCodec.formatDateTime(dt);
     }
 
     /**
@@ -730,6 +818,49 @@ public void setTraceFlags(EnumSet<TraceFlags> traceFlags) {
         this.traceFlags = traceFlags;
     }
 
+    /**
+     * Gets the maximum number of bytes of a response body traced. Defaults to 1 MB.
+     *
+     * @return The trace body limit, in bytes.
+     */
+    public int getTraceBodyLimit() {
+        return this.traceBodyLimit;
+    }
+
+    /**
+     * Sets the maximum number of bytes of a response body traced. The rest of the body is still read and parsed, the
+     * trace only gives its length.
+     *
+     * @param traceBodyLimit The trace body limit, in bytes.
+     */
+    public void setTraceBodyLimit(int traceBodyLimit) {
+        if (traceBodyLimit < 0) {
+            throw new IllegalArgumentException("traceBodyLimit");
+        }
+        this.traceBodyLimit = traceBodyLimit;
+    }
+
+    /**
+     * Gets the local names of the elements whose text is replaced by its length in traced responses. Defaults to
+     * Content and MimeContent, which hold the contents of attachments and items.
+     *
+     * @return The redacted element names.
+     */
+    public Set<String> getTraceRedactedElements() {
+        return this.traceRedactedElements;
+    }
+
+    /**
+     * Sets the local names of the elements whose text is replaced by its length in traced responses.
+     *
+     * @param elementNames The redacted element names, none to trace responses as they are.
+     */
+    public void setTraceRedactedElements(String... elementNames) {
+        EwsUtilities.EwsAssert(elementNames != null, "ExchangeServiceBase.setTraceRedactedElements",
+                "elementNames is null");
+        this.traceRedactedElements = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(elementNames)));
+    }
+
     /**
      * Gets the trace listener.
      *
@@ -817,6 +948,44 @@ public void setTimeout(int timeout) {
         this.timeout = timeout;
     }
 
+    /**
+     * Gets the timeout used when sending HTTP requests for the given operation and when receiving their HTTP
+     * responses, in milliseconds.
+     *
+     * @param operation The XML element name of the request, for example "GetItem".
+     * @return timeout in milliseconds, the service timeout unless set for the operation
+     */
+    public int getOperationTimeout(String operation) {
+        Integer operationTimeout = this.operationTimeouts.get(operation);
+        return operationTimeout != null ? operationTimeout : this.timeout;
+    }
+
+    /**
+     * Sets the timeout used when sending HTTP requests for the given operation and when receiving their HTTP
+     * responses, in milliseconds. This allows, for example, a short timeout for GetItem while ExportItems and
+     * GetStreamingEvents get a long one.
+     *
+     * @param operation The XML element name of the request, for example "GetItem".
+     * @param timeout   timeout in milliseconds
+     */
+    public void setOperationTimeout(String operation, int timeout) {
+        EwsUtilities.EwsAssert(operation != null, "ExchangeServiceBase.setOperationTimeout", "operation is null");
+        if (timeout < 1) {
+            throw new IllegalArgumentException(Strings.TimeoutMustBeGreaterThanZero);
+        }
+        this.operationTimeouts.put(operation, timeout);
+    }
+
+    /**
+     * Removes the timeout set for the given operation, so that it uses the service timeout again.
+     *
+     * @param operation The XML element name of the request, for example "GetItem".
+     */
+    public void clearOperationTimeout(String operation) {
+        EwsUtilities.EwsAssert(operation != null, "ExchangeServiceBase.clearOperationTimeout", "operation is null");
+        this.operationTimeouts.remove(operation);
+    }
+
     /**
      * Gets a value that indicates whether HTTP pre-authentication should be performed.
      *
@@ -861,6 +1030,87 @@ public void setAcceptGzipEncoding(boolean acceptGzipEncoding) {
         this.acceptGzipEncoding = acceptGzipEncoding;
     }
 
+    /**
+     * Gets a value indicating whether request bodies are streamed to the server while they are serialized, rather
+     * than built in memory first.
+     *
+     * @return true if request streaming is enabled
+     */
+    public boolean isRequestStreamingEnabled() {
+        return requestStreamingEnabled;
+    }
+
+    /**
+     * Sets a value indicating whether request bodies are streamed to the server while they are serialized, rather
+     * than built in memory first. Streamed bodies are sent with chunked transfer encoding, which keeps the memory
+     * used by large uploads such as attachments bounded. Requests that are signed or traced are still built in
+     * memory. Defaults to false.
+     *
+     * @param requestStreamingEnabled true to enable request streaming
+     */
+    public void setRequestStreamingEnabled(boolean requestStreamingEnabled) {
+        this.requestStreamingEnabled = requestStreamingEnabled;
+    }
+
+    /**
+     * Gets the policy by which requests throttled by the server are retried.
+     *
+     * @return The throttling retry policy, or null if throttled requests are not retried.
+     */
+    public ThrottlingRetryPolicy getThrottlingRetryPolicy() {
+        return this.throttlingRetryPolicy;
+    }
+
+    /**
+     * Sets the policy by which requests throttled by the server are retried. Without a policy, a request that fails
+     * with ErrorServerBusy is reported to the caller right away. Defaults to null.
+     *
+     * @param throttlingRetryPolicy The throttling retry policy, or null to disable retries.
+     */
+    public void setThrottlingRetryPolicy(ThrottlingRetryPolicy throttlingRetryPolicy) {
+        this.throttlingRetryPolicy = throttlingRetryPolicy;
+    }
+
+    /**
+     * Gets the rate limiter applied per impersonated user.
+     *
+     * @return The rate limiter, or null if requests are not limited per impersonated user.
+     */
+    public ClientRateLimiter getMailboxRateLimiter() {
+        return this.mailboxRateLimiter;
+    }
+
+    /**
+     * Sets the rate limiter applied per impersonated user. Requests that impersonate a user wait for the limiter
+     * before they are sent, keyed by the id of that user. The same limiter can be set on several services to share
+     * the limits between them. Defaults to null.
+     *
+     * @param mailboxRateLimiter The rate limiter, or null to disable it.
+     */
+    public void setMailboxRateLimiter(ClientRateLimiter mailboxRateLimiter) {
+        this.mailboxRateLimiter = mailboxRateLimiter;
+    }
+
+    /**
+     * Gets the rate limiter applied per credential.
+     *
+     * @return The rate limiter, or null if requests are not limited per credential.
+     */
+    public ClientRateLimiter getCredentialRateLimiter() {
+        return this.credentialRateLimiter;
+    }
+
+    /**
+     * Sets the rate limiter applied per credential. Requests wait for the limiter before they are sent, keyed by the
+     * account they authenticate as. The same limiter can be set on several services to share the limits between
+     * them. Defaults to null.
+     *
+     * @param credentialRateLimiter The rate limiter, or null to disable it.
+     */
+    public void setCredentialRateLimiter(ClientRateLimiter credentialRateLimiter) {
+        this.credentialRateLimiter = credentialRateLimiter;
+    }
+
     /**
      * Gets the requested server version.
      *
@@ -975,34 +1225,31 @@ protected void processHttpResponseHeaders(TraceFlags traceType, HttpWebRequest r
             IOException, EWSHttpException {
         this.traceHttpResponseHeaders(traceType, request);
 
-        this.saveHttpResponseHeaders(request.getResponseHeaders());
+        this.saveHttpResponseHeaders(request);
     }
 
     /**
-     * Save the HTTP response headers.
+     * Save the HTTP response headers and cookies of a request. The request holds the state of its own call, so
+     * concurrent calls on this service do not overwrite each other's headers while they are being saved.
      *
-     * @param name="headers">The response headers
-     * @summary
+     * @param request The request that received the response
+     * @throws EWSHttpException
      */
-    private void saveHttpResponseHeaders(Map<String, String> headers) {
-        EwsUtilities.EwsAssert(this.httpResponseHeaders.size() == 0, "ExchangeServiceBase.SaveHttpResponseHeaders",
-                "expect no headers in the dictionary yet.");
-
-        this.httpResponseHeaders.clear();
-
-        for (String key : headers.keySet()) {
-            this.httpResponseHeaders.put(key, headers.get(key));
-        }
+    private void saveHttpResponseHeaders(HttpWebRequest request) throws EWSHttpException {
+        this.httpResponseHeaders = Collections.unmodifiableMap(
+                new HashMap<String, String>(request.getResponseHeaders()));
 
         // Save the cookies for subsequent requests
-        if (this.request.getCookies() != null) {
-            this.cookies = this.request.getCookies().clone();
+        Cookie[] responseCookies = request.getCookies();
+        if (responseCookies != null) {
+            this.cookies = responseCookies.clone();
         }
 
     }
 
     /**
-     * Gets a collection of HTTP headers from the last response.
+     * Gets a collection of HTTP headers from the last response. When the service is used from several threads,
+     * this is the response that completed last.
      */
     public Map<String, String> getHttpResponseHeaders() {
         return this.httpResponseHeaders;
@@ -1028,4 +1275,208 @@ protected static byte[] getSessionKey() {
     public HttpConnectionManager getHttpConnectionManager() {
         return httpConnectionManager;
     }
+
+    /**
+     * Gets the transport shared by all requests of this service. It is built on first use and reused afterwards, so
+     * the Http Client and its protocols are not set up again for every request.
+     *
+     * @return the http client transport
+     */
+    HttpClientTransport getHttpClientTransport() {
+        HttpClientTransport transport = this.httpClientTransport;
+        if (transport == null) {
+            synchronized (this) {
+                transport = this.httpClientTransport;
+                if (transport == null) {
+                    transport = new HttpClientTransport(this.httpConnectionManager);
+                    transport.setConnectionLimits(this.maxConnectionsPerHost, this.maxTotalConnections);
+                    this.httpClientTransport = transport;
+                }
+            }
+        }
+        return transport;
+    }
+
+    /**
+     * Gets the number of connections the default transport keeps open to a host, per set of credentials. Defaults
+     * to 20.
+     *
+     * @return the maximum number of connections per host
+     */
+    public synchronized int getMaxConnectionsPerHost() {
+        return this.maxConnectionsPerHost;
+    }
+
+    /**
+     * Sets the number of connections the default transport keeps open to a host, per set of credentials. Requests
+     * beyond it wait for a connection to be released, so this should be at least the number of threads making
+     * requests with the same credentials. A connection manager given to the service keeps its own limits.
+     *
+     * @param maxConnectionsPerHost the maximum number of connections per host
+     */
+    public synchronized void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        if (maxConnectionsPerHost < 1) {
+            throw new IllegalArgumentException("maxConnectionsPerHost");
+        }
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        if (this.httpClientTransport != null) {
+            this.httpClientTransport.setConnectionLimits(this.maxConnectionsPerHost, this.maxTotalConnections);
+        }
+    }
+
+    /**
+     * Gets the number of connections the default transport keeps open to all hosts, per set of credentials.
+     * Defaults to 100.
+     *
+     * @return the maximum number of connections
+     */
+    public synchronized int getMaxTotalConnections() {
+        return this.maxTotalConnections;
+    }
+
+    /**
+     * Sets the number of connections the default transport keeps open to all hosts, per set of credentials. A
+     * connection manager given to the service keeps its own limits.
+     *
+     * @param maxTotalConnections the maximum number of connections
+     */
+    public synchronized void setMaxTotalConnections(int maxTotalConnections) {
+        if (maxTotalConnections < 1) {
+            throw new IllegalArgumentException("maxTotalConnections");
+        }
+        this.maxTotalConnections = maxTotalConnections;
+        if (this.httpClientTransport != null) {
+            this.httpClientTransport.setConnectionLimits(this.maxConnectionsPerHost, this.maxTotalConnections);
+        }
+    }
+
+    /**
+     * Gets the number of NTLM handshakes the default transport of this service has performed.
+     *
+     * @return the handshake count
+     */
+    public long getAuthenticationHandshakeCount() {
+        return this.getHttpClientTransport().getHandshakeCount();
+    }
+
+    /**
+     * Gets the number of requests the default transport of this service has sent on a connection that was already
+     * authenticated with NTLM, each of which saved a handshake.
+     *
+     * @return the count of handshakes avoided
+     */
+    public long getAuthenticationHandshakesAvoidedCount() {
+        return this.getHttpClientTransport().getHandshakesAvoidedCount();
+    }
+
+    /**
+     * Gets the factory through which this service creates its requests. Unless another factory has been set, this
+     * is the shared Apache HttpClient transport of the service.
+     *
+     * @return the http web request factory
+     */
+    public IHttpWebRequestFactory getHttpWebRequestFactory() {
+        IHttpWebRequestFactory factory = this.httpWebRequestFactory;
+        return factory != null ? factory : this.getHttpClientTransport();
+    }
+
+    /**
+     * Sets the factory through which this service creates its requests. Set this property to null to use the default
+     * Apache HttpClient transport.
+     *
+     * @param httpWebRequestFactory the http web request factory
+     */
+    public void setHttpWebRequestFactory(IHttpWebRequestFactory httpWebRequestFactory) {
+        this.httpWebRequestFactory = httpWebRequestFactory;
+    }
+
+    /**
+     * Gets the listener receiving the metrics of the requests of this service.
+     *
+     * @return the request metrics listener, null if metrics are not recorded
+     */
+    public IRequestMetricsListener getRequestMetricsListener() {
+        return this.requestMetricsListener;
+    }
+
+    /**
+     * Sets the listener receiving the metrics of the requests of this service: the duration of each phase, the
+     * number of bytes sent and received and the outcome of every attempt of a request. Use a
+     * {@link RequestMetricsRecorder} to aggregate them per operation. Set this property to null, the default, not to
+     * record metrics.
+     *
+     * @param requestMetricsListener the request metrics listener
+     */
+    public void setRequestMetricsListener(IRequestMetricsListener requestMetricsListener) {
+        this.requestMetricsListener = requestMetricsListener;
+    }
+
+    /**
+     * Gets the executor on which the async requests of this service run. Unless another executor has been set, this
+     * is a pool of 8 daemon threads with a queue of 1024 requests, created for this service on first use.
+     *
+     * @return the async executor
+     */
+    public ExecutorService getAsyncExecutor() {
+        ExecutorService executor = this.asyncExecutor;
+        if (executor != null) {
+            return executor;
+        }
+
+        executor = this.defaultAsyncExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.defaultAsyncExecutor;
+                if (executor == null) {
+                    ThreadPoolExecutor threadPool = new ThreadPoolExecutor(DefaultAsyncThreadCount,
+                            DefaultAsyncThreadCount, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<Runnable>(DefaultAsyncQueueSize), new ThreadFactory() {
+                        private final AtomicInteger threadNumber = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "ews-async-" + this.threadNumber.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    threadPool.allowCoreThreadTimeOut(true);
+                    executor = threadPool;
+                    this.defaultAsyncExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Sets the executor on which the async requests of this service run. Each request occupies a thread of the
+     * executor while it waits for the server, so the executor bounds the number of async requests in progress. The
+     * service does not shut down an executor set by the caller. Set this property to null to use the default executor.
+     *
+     * @param asyncExecutor the async executor
+     */
+    public void setAsyncExecutor(ExecutorService asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Gets the executor on which the streaming subscription connections of this service read their events.
+     *
+     * @return the streaming executor, null if each connection starts its own thread
+     */
+    public ExecutorService getStreamingExecutor() {
+        return this.streamingExecutor;
+    }
+
+    /**
+     * Sets the executor on which the streaming subscription connections of this service read their events. A
+     * connection occupies a thread of the executor for as long as it is open, so a bounded executor must have a
+     * thread for every connection. Set this property to null to start a thread per connection, which is the default.
+     *
+     * @param streamingExecutor the streaming executor
+     */
+    public void setStreamingExecutor(ExecutorService streamingExecutor) {
+        this.streamingExecutor = streamingExecutor;
+    }
 }
@@ -0,0 +1,33 @@
+/**************************************************************************
+ * copyright file="HangingRequestDisconnectReason.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the HangingRequestDisconnectReason.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+/**
+ * Enumeration of reasons that a hanging request may disconnect.
+ */
+enum HangingRequestDisconnectReason {
+
+    /**
+     * The server cleanly closed the connection.
+     */
+    Clean,
+
+    /**
+     * The client closed the connection.
+     */
+    UserInitiated,
+
+    /**
+     * The connection timed out do to a lack of a heartbeat received.
+     */
+    Timeout,
+
+    /**
+     * An exception occurred on the connection
+     */
+    Exception
+}
@@ -10,35 +10,8 @@
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-
-/**
- * Enumeration of reasons that a hanging request may disconnect.
- */
-enum HangingRequestDisconnectReason {
-
-    /**
-     * The server cleanly closed the connection.
-     */
-    Clean,
-
-    /**
-     * The client closed the connection.
-     */
-    UserInitiated,
-
-    /**
-     * The connection timed out do to a lack of a heartbeat received.
-     */
-    Timeout,
-
-    /**
-     * An exception occurred on the connection
-     */
-    Exception
-}
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Represents a collection of arguments for the HangingServiceRequestBase.HangingRequestDisconnectHandler delegate
@@ -138,11 +111,27 @@ protected interface IHandleResponseObject {
      */
     private EwsServiceMultiResponseXmlReader ewsXmlReader;
 
+    /**
+     * Guards connecting and disconnecting. Connecting blocks on the network, which a lock does without pinning the
+     * carrier of a virtual thread, unlike a monitor.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
     /**
      * Expected minimum frequency in responses, in milliseconds.
      */
     protected int heartbeatFrequencyMilliseconds;
 
+    /**
+     * The time the connection was made, in System.nanoTime() terms.
+     */
+    private volatile long connectedNanos;
+
+    /**
+     * The number of responses received on the connection.
+     */
+    private volatile int framesReceived;
+
     protected interface IHangingRequestDisconnectHandler {
 
         /**
@@ -203,9 +192,12 @@ protected HangingServiceRequestBase(ExchangeService service, IHandleResponseObje
      * Exectures the request.
      */
     protected void internalExecute() throws ServiceLocalException, Exception {
-        synchronized (this) {
+        this.lock.lock();
+        try {
             this.response = this.validateAndEmitRequest();
             this.internalOnConnect();
+        } finally {
+            this.lock.unlock();
         }
     }
 
@@ -267,6 +259,8 @@ private void parseResponses(Object state) {
                     this.responseHandler.handleResponseObject(responseObject);
                 }
 
+                this.framesReceived++;
+                EwsFlightRecorder.streamingFrameReceived(this.getXmlElementName(), this.framesReceived);
 
                 this.responseHandler.handleResponseObject(responseObject);
 
@@ -339,10 +333,13 @@ private void setIsConnected(boolean value) {
      * Disconnects the request.
      */
     protected void disconnect() {
-        synchronized (this) {
+        this.lock.lock();
+        try {
             //this.request.close();
             this.response.close();
             this.disconnect(HangingRequestDisconnectReason.UserInitiated, null);
+        } finally {
+            this.lock.unlock();
         }
     }
 
@@ -355,6 +352,8 @@ protected void disconnect() {
     protected void disconnect(HangingRequestDisconnectReason reason, Exception exception) {
         if (this.isConnected()) {
             this.response.close();
+            EwsFlightRecorder.streamingDisconnected(this.getXmlElementName(), reason, exception,
+                    System.nanoTime() - this.connectedNanos, this.framesReceived);
             this.internalOnDisconnect(reason, exception);
         }
     }
@@ -365,26 +364,25 @@ protected void disconnect(HangingRequestDisconnectReason reason, Exception excep
     private void internalOnConnect() throws XMLStreamException, IOException, EWSHttpException {
         if (!this.isConnected()) {
             this.isConnected = true;
+            this.connectedNanos = System.nanoTime();
+            this.framesReceived = 0;
 
             if (this.getService().isTraceEnabledFor(TraceFlags.EwsResponseHttpHeaders)) {
                 // Trace Http headers
                 this.getService().processHttpResponseHeaders(TraceFlags.EwsResponseHttpHeaders, this.response);
             }
-            int poolSize = 1;
-
-            int maxPoolSize = 1;
-
-            long keepAliveTime = 10;
-
-            final ArrayBlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>(1);
-            ThreadPoolExecutor threadPool =
-                    new ThreadPoolExecutor(poolSize, maxPoolSize, keepAliveTime, TimeUnit.SECONDS, queue);
-            threadPool.execute(new Runnable() {
+            Runnable reader = new Runnable() {
                 public void run() {
                     parseResponses(null);
                 }
-            });
-            threadPool.shutdown();
+            };
+
+            ExecutorService executor = this.getService().getStreamingExecutor();
+            if (executor != null) {
+                executor.execute(reader);
+            } else {
+                new Thread(reader, "ews-streaming-reader").start();
+            }
         }
     }
 
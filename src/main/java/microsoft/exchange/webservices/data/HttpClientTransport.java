@@ -0,0 +1,473 @@
+/**************************************************************************
+ * copyright file="HttpClientTransport.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the HttpClientTransport.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import org.apache.commons.httpclient.ConnectTimeoutException;
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpConnectionManager;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.auth.AuthPolicy;
+import org.apache.commons.httpclient.auth.AuthScheme;
+import org.apache.commons.httpclient.auth.AuthState;
+import org.apache.commons.httpclient.params.HttpConnectionParams;
+import org.apache.commons.httpclient.protocol.DefaultProtocolSocketFactory;
+import org.apache.commons.httpclient.protocol.Protocol;
+
+import javax.net.ssl.TrustManager;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HttpClientTransport holds the Apache HttpClient 3.1 state that is shared by all requests of a service: the
+ * connection pools, their authentication preferences and the protocols used to open connections. It is built once per
+ * service and is safe for use from multiple threads; the per-call state lives in {@link HttpClientWebRequest}.
+ * <p/>
+ * This is the default {@link IHttpWebRequestFactory} of a service.
+ */
+class HttpClientTransport implements IHttpWebRequestFactory {
+
+    static {
+        // The scheme registry is global to HttpClient, so register the JCIFS based NTLM scheme only once.
+        AuthPolicy.registerAuthScheme(AuthPolicy.NTLM, EwsJCIFSNTLMScheme.class);
+    }
+
+    /**
+     * The number of connection pools kept for different credentials before the least recently used one is dropped.
+     */
+    private static final int MaxConnectionPools = 16;
+
+    /**
+     * The number of connections each connection pool keeps open to a host.
+     */
+    private volatile int maxConnectionsPerHost = ExchangeServiceBase.DefaultMaxConnectionsPerHost;
+
+    /**
+     * The number of connections each connection pool keeps open to all hosts.
+     */
+    private volatile int maxTotalConnections = ExchangeServiceBase.DefaultMaxTotalConnections;
+
+    /**
+     * The connect timeout of the request executing on each thread, in milliseconds.
+     * <p/>
+     * HttpClient only takes the connect timeout from the parameters of the connection manager, which are shared by
+     * all requests. The socket factories read it from here instead, so that each request connects with its own.
+     */
+    private static final ThreadLocal<Integer> connectTimeout = new ThreadLocal<Integer>();
+
+    /**
+     * The connection pool used for all credentials when the connection manager was given by the caller.
+     */
+    private final ConnectionPool sharedPool;
+
+    /**
+     * The connection pools per credential, used when the transport manages its own connections.
+     */
+    private final ConcurrentMap<String, ConnectionPool> pools = new ConcurrentHashMap<String, ConnectionPool>();
+
+    /**
+     * The protocol used for plain http connections.
+     */
+    private final Protocol httpProtocol;
+
+    /**
+     * The protocol used for https connections when no trust manager is configured.
+     */
+    private final Protocol httpsProtocol;
+
+    /**
+     * The protocols used for https connections, per trust manager.
+     */
+    private final ConcurrentMap<TrustManager, Protocol> trustedHttpsProtocols =
+            new ConcurrentHashMap<TrustManager, Protocol>();
+
+    /**
+     * The number of connection based authentication handshakes performed.
+     */
+    private final AtomicLong handshakeCount = new AtomicLong();
+
+    /**
+     * The number of requests sent on a connection that was already authenticated.
+     */
+    private final AtomicLong handshakesAvoidedCount = new AtomicLong();
+
+    /**
+     * Instantiates a new transport on top of the given connection manager.
+     * <p/>
+     * NTLM authenticates a connection rather than a request, so a connection is only reused by requests made with
+     * the credentials it was authenticated with. When no connection manager is given, the transport keeps a
+     * multi-threaded connection pool per credential. A connection manager given by the caller is used for all
+     * credentials alike.
+     *
+     * @param httpConnectionManager the connection manager, can be null
+     */
+    HttpClientTransport(HttpConnectionManager httpConnectionManager) {
+        this.sharedPool = httpConnectionManager != null ? new ConnectionPool(httpConnectionManager) : null;
+
+        this.httpProtocol = new Protocol(EWSConstants.HTTP_SCHEME, new PlainSocketFactory(), 80);
+        this.httpsProtocol = new Protocol(EWSConstants.HTTPS_SCHEME, new EwsSSLProtocolSocketFactory(null), 443);
+    }
+
+    /**
+     * Creates a new request on top of this transport.
+     *
+     * @return A new HttpClientWebRequest.
+     */
+    @Override
+    public HttpWebRequest createHttpWebRequest() {
+        return new HttpClientWebRequest(this);
+    }
+
+    /**
+     * Gets the connection pool for the given credentials.
+     *
+     * @param userName the user name, can be null
+     * @param domain   the domain, can be null
+     * @return the connection pool
+     */
+    ConnectionPool getConnectionPool(String userName, String domain) {
+        if (this.sharedPool != null) {
+            return this.sharedPool;
+        }
+
+        String key = userName == null ? "" : (domain == null ? "" : domain) + "\\" + userName;
+        ConnectionPool pool = this.pools.get(key);
+        if (pool == null) {
+            RecordedConnectionManager manager = new RecordedConnectionManager();
+            manager.getParams().setDefaultMaxConnectionsPerHost(this.maxConnectionsPerHost);
+            manager.getParams().setMaxTotalConnections(this.maxTotalConnections);
+
+            ConnectionPool newPool = new ConnectionPool(manager);
+            pool = this.pools.putIfAbsent(key, newPool);
+            if (pool == null) {
+                pool = newPool;
+                if (this.pools.size() > MaxConnectionPools) {
+                    this.dropLeastRecentlyUsedPools();
+                }
+            }
+        }
+        pool.lastUsedNanos = System.nanoTime();
+        return pool;
+    }
+
+    /**
+     * Drops the connection pools that were handed out least recently, until no more than MaxConnectionPools are
+     * kept, and closes their idle connections. A request that still holds a dropped pool completes on it, and its
+     * connection is closed when it is released.
+     */
+    private void dropLeastRecentlyUsedPools() {
+        while (this.pools.size() > MaxConnectionPools) {
+            Map.Entry<String, ConnectionPool> leastRecentlyUsed = null;
+            for (Map.Entry<String, ConnectionPool> entry : this.pools.entrySet()) {
+                if (leastRecentlyUsed == null ||
+                        entry.getValue().lastUsedNanos - leastRecentlyUsed.getValue().lastUsedNanos < 0) {
+                    leastRecentlyUsed = entry;
+                }
+            }
+            if (leastRecentlyUsed == null) {
+                return;
+            }
+            if (this.pools.remove(leastRecentlyUsed.getKey(), leastRecentlyUsed.getValue())) {
+                leastRecentlyUsed.getValue().drop();
+            }
+        }
+    }
+
+    /**
+     * Sets the number of connections each connection pool of this transport keeps open. The limits apply to the
+     * pools the transport creates itself, a connection manager given by the caller keeps its own.
+     *
+     * @param maxConnectionsPerHost the number of connections to a host
+     * @param maxTotalConnections   the number of connections to all hosts
+     */
+    void setConnectionLimits(int maxConnectionsPerHost, int maxTotalConnections) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.maxTotalConnections = maxTotalConnections;
+        for (ConnectionPool pool : this.pools.values()) {
+            HttpConnectionManager manager = pool.getHttpClient().getHttpConnectionManager();
+            manager.getParams().setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+            manager.getParams().setMaxTotalConnections(maxTotalConnections);
+        }
+    }
+
+    /**
+     * Records how a request was authenticated, once it has been executed.
+     *
+     * @param pool       the connection pool the request was executed on
+     * @param method     the executed method
+     * @param statusCode the status code of the response
+     */
+    void recordAuthentication(ConnectionPool pool, HttpMethod method, int statusCode) {
+        AuthState authState = method.getHostAuthState();
+        AuthScheme authScheme = authState.getAuthScheme();
+
+        if (authState.isAuthAttempted() && authScheme != null && authScheme.isConnectionBased()) {
+            this.handshakeCount.incrementAndGet();
+            pool.connectionBased = true;
+        }
+        else if (pool.connectionBased && !authState.isAuthAttempted() && statusCode != HttpStatus.SC_UNAUTHORIZED) {
+            this.handshakesAvoidedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the number of connection based authentication handshakes performed.
+     *
+     * @return the handshake count
+     */
+    long getHandshakeCount() {
+        return this.handshakeCount.get();
+    }
+
+    /**
+     * Gets the number of requests sent on a connection that was already authenticated, each of which saved a
+     * handshake.
+     *
+     * @return the count of handshakes avoided
+     */
+    long getHandshakesAvoidedCount() {
+        return this.handshakesAvoidedCount.get();
+    }
+
+    /**
+     * Creates the host configuration for a single request. The configuration refers to the shared protocols, so
+     * connections opened for it are pooled together with those of earlier requests to the same host.
+     *
+     * @param url          the url of the request
+     * @param proxy        the web proxy, can be null
+     * @param trustManager the trust manager used for https connections, can be null
+     * @return the host configuration
+     */
+    HostConfiguration createHostConfiguration(URL url, WebProxy proxy, TrustManager trustManager) {
+        HostConfiguration hostConfiguration = new HostConfiguration();
+        hostConfiguration.setHost(url.getHost(), url.getPort(), this.getProtocol(url.getProtocol(), trustManager));
+
+        if (proxy != null) {
+            hostConfiguration.setProxy(proxy.getHost(), proxy.getPort());
+        }
+        return hostConfiguration;
+    }
+
+    /**
+     * Sets the connect timeout of the request executing on the current thread.
+     *
+     * @param timeout the timeout in milliseconds, 0 to clear it
+     */
+    static void setConnectTimeout(int timeout) {
+        if (timeout > 0) {
+            connectTimeout.set(timeout);
+        } else {
+            connectTimeout.remove();
+        }
+    }
+
+    /**
+     * Gets the connect timeout of the request executing on the current thread.
+     *
+     * @param params the parameters of the connection, used when no request is executing
+     * @return the timeout in milliseconds, 0 for none
+     */
+    static int getConnectTimeout(HttpConnectionParams params) {
+        Integer timeout = connectTimeout.get();
+        return timeout != null ? timeout : params.getConnectionTimeout();
+    }
+
+    /**
+     * Opens a plain socket to the given host within the connect timeout of the current request. The socket times out
+     * reads after the connect timeout as well, until HttpClient applies the socket timeout of the request, so that a
+     * TLS handshake on top of it cannot hang either.
+     *
+     * @param host         the host name or IP address
+     * @param port         the port
+     * @param localAddress the local address to bind to, can be null
+     * @param localPort    the local port to bind to
+     * @param params       the parameters of the connection
+     * @return the connected socket
+     * @throws IOException if the connection fails or times out
+     */
+    static Socket connectSocket(String host, int port, InetAddress localAddress, int localPort,
+                                HttpConnectionParams params) throws IOException {
+        if (params == null) {
+            throw new IllegalArgumentException("Parameters may not be null");
+        }
+        int timeout = getConnectTimeout(params);
+
+        Socket socket = new Socket();
+        try {
+            socket.bind(new InetSocketAddress(localAddress, localPort));
+            socket.setSoTimeout(timeout);
+            socket.connect(new InetSocketAddress(host, port), timeout);
+        }
+        catch (SocketTimeoutException e) {
+            socket.close();
+            throw new ConnectTimeoutException("Connect to " + host + ":" + port + " timed out");
+        }
+        catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return socket;
+    }
+
+    /**
+     * Gets the protocol for the given scheme.
+     *
+     * @param scheme       the url scheme
+     * @param trustManager the trust manager used for https connections, can be null
+     * @return the protocol
+     */
+    private Protocol getProtocol(String scheme, TrustManager trustManager) {
+        if (!scheme.equalsIgnoreCase(EWSConstants.HTTPS_SCHEME)) {
+            return this.httpProtocol;
+        }
+        if (trustManager == null) {
+            return this.httpsProtocol;
+        }
+
+        Protocol protocol = this.trustedHttpsProtocols.get(trustManager);
+        if (protocol == null) {
+            Protocol newProtocol =
+                    new Protocol(EWSConstants.HTTPS_SCHEME, new EwsSSLProtocolSocketFactory(trustManager), 443);
+            protocol = this.trustedHttpsProtocols.putIfAbsent(trustManager, newProtocol);
+            if (protocol == null) {
+                protocol = newProtocol;
+            }
+        }
+        return protocol;
+    }
+
+    /**
+     * A pool of connections used with one set of credentials.
+     */
+    static final class ConnectionPool {
+
+        /**
+         * The Http Client on top of the connections of this pool.
+         */
+        private final HttpClient client;
+
+        /**
+         * Whether the server authenticates connections of this pool with a connection based scheme such as NTLM.
+         * Preemptive basic authentication is not used once this is known, as it would make the server authenticate
+         * each request anew.
+         */
+        private volatile boolean connectionBased;
+
+        /**
+         * The time this pool was last handed out, in System.nanoTime() terms.
+         */
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        /**
+         * Whether this pool has been dropped by its transport, so its connections are closed once released.
+         */
+        private volatile boolean dropped;
+
+        /**
+         * Instantiates a new connection pool.
+         *
+         * @param httpConnectionManager the connection manager
+         */
+        ConnectionPool(HttpConnectionManager httpConnectionManager) {
+            this.client = new HttpClient(httpConnectionManager);
+
+            List<String> authPrefs = new ArrayList<String>();
+            authPrefs.add(AuthPolicy.NTLM);
+            authPrefs.add(AuthPolicy.BASIC);
+            authPrefs.add(AuthPolicy.DIGEST);
+            this.client.getParams().setParameter(AuthPolicy.AUTH_SCHEME_PRIORITY, authPrefs);
+        }
+
+        /**
+         * Gets the Http Client of this pool.
+         *
+         * @return the http client
+         */
+        HttpClient getHttpClient() {
+            return this.client;
+        }
+
+        /**
+         * Gets whether the server authenticates connections of this pool with a connection based scheme.
+         *
+         * @return true if the authentication is connection based
+         */
+        boolean isConnectionBased() {
+            return this.connectionBased;
+        }
+
+        /**
+         * Marks this pool as dropped and closes its idle connections.
+         */
+        private void drop() {
+            this.dropped = true;
+            this.closeIdleConnectionsIfDropped();
+        }
+
+        /**
+         * Closes the idle connections of this pool if it has been dropped, so the connections released by the
+         * requests that were still in progress on it are not left open.
+         */
+        void closeIdleConnectionsIfDropped() {
+            if (this.dropped) {
+                HttpConnectionManager manager = this.client.getHttpConnectionManager();
+                manager.closeIdleConnections(0);
+                if (manager instanceof MultiThreadedHttpConnectionManager) {
+                    ((MultiThreadedHttpConnectionManager) manager).deleteClosedConnections();
+                }
+            }
+        }
+    }
+
+    /**
+     * The socket factory of plain http connections, which connects within the connect timeout of the current request.
+     */
+    private static final class PlainSocketFactory extends DefaultProtocolSocketFactory {
+
+        /**
+         * @see DefaultProtocolSocketFactory#createSocket(String, int, InetAddress, int, HttpConnectionParams)
+         */
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localAddress, int localPort,
+                                   HttpConnectionParams params) throws IOException {
+            return connectSocket(host, port, localAddress, localPort, params);
+        }
+    }
+
+    /**
+     * The connection manager of the connection pools of the transport, which emits a flight recorder event for each
+     * connection handed out.
+     */
+    private static final class RecordedConnectionManager extends MultiThreadedHttpConnectionManager {
+
+        /**
+         * @see MultiThreadedHttpConnectionManager#getConnectionWithTimeout(HostConfiguration, long)
+         */
+        @Override
+        public HttpConnection getConnectionWithTimeout(HostConfiguration hostConfiguration, long timeout)
+                throws ConnectionPoolTimeoutException {
+            Object acquireEvent = EwsFlightRecorder.beginConnectionAcquire();
+            HttpConnection connection = super.getConnectionWithTimeout(hostConfiguration, timeout);
+            EwsFlightRecorder.endConnectionAcquire(acquireEvent, hostConfiguration.getHost(), connection.isOpen());
+            return connection;
+        }
+    }
+}
@@ -7,22 +7,18 @@
 package microsoft.exchange.webservices.data;
 
 import org.apache.commons.httpclient.*;
-import org.apache.commons.httpclient.auth.AuthPolicy;
 import org.apache.commons.httpclient.auth.AuthScope;
 import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
-import org.apache.commons.httpclient.protocol.Protocol;
+import org.apache.commons.httpclient.params.HttpMethodParams;
 
 import javax.net.ssl.TrustManager;
 import java.io.*;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
 
 
 /**
@@ -33,29 +29,54 @@
 class HttpClientWebRequest extends HttpWebRequest {
 
     /**
-     * The Http Client.
+     * The longest time to wait for the connection of a hanging request, in milliseconds.
      */
-    private HttpClient client = null;
+    private static final int AsyncConnectTimeout = 20000;
+
+    /**
+     * The transport shared by the requests of a service.
+     */
+    private HttpClientTransport transport = null;
 
     /**
      * The Http Method.
      */
-    private HttpMethodBase httpMethod = null;
+    private volatile HttpMethodBase httpMethod = null;
+
+    /**
+     * The connection pool of the credentials of this request.
+     */
+    private HttpClientTransport.ConnectionPool connectionPool = null;
+
+    /**
+     * The host configuration of this request.
+     */
+    private HostConfiguration hostConfiguration = null;
+
+    /**
+     * The Http State of this request, holding its credentials and cookies.
+     */
+    private HttpState state = null;
+
+    /**
+     * The connect timeout of this request in milliseconds, 0 to use the timeout of the request.
+     */
+    private int connectTimeout = 0;
 
     /**
      * The TrustManager.
      */
     private TrustManager trustManger = null;
 
-    private HttpConnectionManager simpleHttpConnMng = null;
-
     Cookie[] cookies = null;
 
     /**
      * Instantiates a new http native web request.
+     *
+     * @param transport the transport shared by the requests of a service
      */
-    public HttpClientWebRequest(HttpConnectionManager simpleHttpConnMng) {
-        this.simpleHttpConnMng = simpleHttpConnMng;
+    public HttpClientWebRequest(HttpClientTransport transport) {
+        this.transport = transport;
     }
 
     /**
@@ -63,15 +84,31 @@ public HttpClientWebRequest(HttpConnectionManager simpleHttpConnMng) {
      */
     @Override
     public void close() {
-        ExecutorService es = (ExecutorService) CallableSingleTon.getExecutor();
-        es.shutdown();
-        if (null != httpMethod) {
-            httpMethod.releaseConnection();
-            //postMethod.abort();
+        HttpMethodBase method = httpMethod;
+        if (null != method) {
+            if (method.getStatusLine() != null && method.getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+                // The connection failed to authenticate, do not hand it to the next request.
+                method.abort();
+            }
+            method.releaseConnection();
+            if (connectionPool != null) {
+                connectionPool.closeIdleConnectionsIfDropped();
+            }
         }
         httpMethod = null;
     }
 
+    /**
+     * Aborts the method in progress, which closes its connection.
+     */
+    @Override
+    public void abort() {
+        HttpMethodBase method = httpMethod;
+        if (null != method) {
+            method.abort();
+        }
+    }
+
     /**
      * Prepare connection
      *
@@ -80,38 +117,13 @@ public void close() {
     @SuppressWarnings("deprecation")
     @Override
     public void prepareConnection() throws EWSHttpException {
-        if (trustManger != null) {
-            EwsSSLProtocolSocketFactory.trustManager = trustManger;
-        }
+        this.prepareHostAndState();
 
-        Protocol.registerProtocol("https", new Protocol("https", new EwsSSLProtocolSocketFactory(), 443));
-        AuthPolicy.registerAuthScheme(AuthPolicy.NTLM, EwsJCIFSNTLMScheme.class);
-        client = new HttpClient(this.simpleHttpConnMng);
-        List authPrefs = new ArrayList();
-        authPrefs.add(AuthPolicy.NTLM);
-        authPrefs.add(AuthPolicy.BASIC);
-        authPrefs.add(AuthPolicy.DIGEST);
-        client.getParams().setParameter(AuthPolicy.AUTH_SCHEME_PRIORITY, authPrefs);
-
-        if (getProxy() != null) {
-            client.getHostConfiguration().setProxy(getProxy().getHost(), getProxy().getPort());
-            if (HttpProxyCredentials.isProxySet()) {
-                AuthScope authScope = new AuthScope(getProxy().getHost(), getProxy().getPort());
-                client.getState().setProxyCredentials(authScope,
-                        new NTCredentials(HttpProxyCredentials.getUserName(), HttpProxyCredentials.getPassword(), "",
-                                HttpProxyCredentials.getDomain()));
-                //new AuthScope(AuthScope.ANY_HOST, 80, AuthScope.ANY_REALM)
-            }
-        }
-        if (getUserName() != null) {
-            client.getState()
-                    .setCredentials(AuthScope.ANY, new NTCredentials(getUserName(), getPassword(), "", getDomain()));
-            client.getParams().setAuthenticationPreemptive(true);
+        if (getUserName() != null && !connectionPool.isConnectionBased()) {
+            state.setAuthenticationPreemptive(true);
         }
 
-        client.getHttpConnectionManager().getParams().setSoTimeout(getTimeout());
-        client.getHttpConnectionManager().getParams().setConnectionTimeout(getTimeout());
-        httpMethod = new PostMethod(getUrl().toString());
+        httpMethod = new PostMethod(getRequestUri());
         httpMethod.setRequestHeader("Content-type", getContentType());
         httpMethod.setDoAuthentication(true);
         httpMethod.setRequestHeader("User-Agent", getUserAgent());
@@ -120,7 +132,7 @@ public void prepareConnection() throws EWSHttpException {
         httpMethod.setRequestHeader("Connection", "Keep-Alive");
 
         if (this.cookies != null && this.cookies.length > 0) {
-            client.getState().addCookies(this.cookies);
+            state.addCookies(this.cookies);
         }
         //httpMethod.setFollowRedirects(isAllowAutoRedirect());
 
@@ -144,43 +156,63 @@ public void prepareConnection() throws EWSHttpException {
     @SuppressWarnings("deprecation")
     public void prepareAsyncConnection() throws EWSHttpException {
         try {
-            if (trustManger != null) {
-                EwsSSLProtocolSocketFactory.trustManager = trustManger;
-            }
+            this.prepareHostAndState();
 
-            Protocol.registerProtocol("https", new Protocol("https", new EwsSSLProtocolSocketFactory(), 443));
-            AuthPolicy.registerAuthScheme(AuthPolicy.NTLM, EwsJCIFSNTLMScheme.class);
-            client = new HttpClient(this.simpleHttpConnMng);
-            List authPrefs = new ArrayList();
-            authPrefs.add(AuthPolicy.NTLM);
-            authPrefs.add(AuthPolicy.BASIC);
-            authPrefs.add(AuthPolicy.DIGEST);
-            client.getParams().setParameter(AuthPolicy.AUTH_SCHEME_PRIORITY, authPrefs);
-
-            client.getState()
-                    .setCredentials(AuthScope.ANY, new NTCredentials(getUserName(), getPassword(), "", getDomain()));
-            client.getHttpConnectionManager().getParams().setSoTimeout(getTimeout());
-            client.getHttpConnectionManager().getParams().setConnectionTimeout(20000);
-            httpMethod = new GetMethod(getUrl().toString());
+            connectTimeout = Math.min(AsyncConnectTimeout, getTimeout());
+            httpMethod = new GetMethod(getRequestUri());
             httpMethod.setFollowRedirects(isAllowAutoRedirect());
 
-            int status = client.executeMethod(httpMethod);
+            this.executeMethod();
         }
         catch (IOException e) {
-            client = null;
+            hostConfiguration = null;
+            state = null;
             httpMethod = null;
             throw new EWSHttpException("Unable to open connection to " + this.getUrl());
         }
     }
 
+    /**
+     * Prepares the host configuration and the http state of this request. Only these are created per request, the
+     * Http Client itself is shared through the connection pool of the credentials of this request.
+     */
+    private void prepareHostAndState() {
+        connectionPool = transport.getConnectionPool(getUserName(), getDomain());
+        hostConfiguration = transport.createHostConfiguration(getUrl(), getProxy(), trustManger);
+
+        state = new HttpState();
+        if (getProxy() != null && HttpProxyCredentials.isProxySet()) {
+            AuthScope authScope = new AuthScope(getProxy().getHost(), getProxy().getPort());
+            state.setProxyCredentials(authScope,
+                    new NTCredentials(HttpProxyCredentials.getUserName(), HttpProxyCredentials.getPassword(), "",
+                            HttpProxyCredentials.getDomain()));
+            //new AuthScope(AuthScope.ANY_HOST, 80, AuthScope.ANY_REALM)
+        }
+        if (getUserName() != null) {
+            state.setCredentials(AuthScope.ANY, new NTCredentials(getUserName(), getPassword(), "", getDomain()));
+        }
+    }
+
+    /**
+     * Gets the request uri relative to the host, so the method is executed against the host configuration of this
+     * request rather than against the globally registered protocols.
+     *
+     * @return the path and query of the url
+     */
+    private String getRequestUri() {
+        String file = getUrl().getFile();
+        return (file == null || file.isEmpty()) ? "/" : file;
+    }
+
     /**
      * Method for getting the cookie vlaues.
      *
      * @throws EWSHttpException throws EWSHttpException
      */
+    @Override
     public Cookie[] getCookies() {
 
-        return this.client.getState().getCookies();
+        return this.state.getCookies();
 
     }
 
@@ -189,6 +221,7 @@ public Cookie[] getCookies() {
      *
      * @throws EWSHttpException throws EWSHttpException
      */
+    @Override
     public void setUserCookie(Cookie[] rcookies) {
 
         if (rcookies != null && rcookies.length > 0) {
@@ -253,6 +286,34 @@ public OutputStream getOutputStream() throws EWSHttpException {
         return os;
     }
 
+    /**
+     * Sets a request body that has already been built in memory. The buffer itself becomes the request entity, so the
+     * body is not copied.
+     *
+     * @param body the request body
+     * @throws EWSHttpException the eWS http exception
+     */
+    @Override
+    public void setRequestBody(ByteArrayOutputStream body) throws EWSHttpException {
+        throwIfConnIsNull();
+        ((EntityEnclosingMethod) httpMethod).setRequestEntity(new ByteArrayOSRequestEntity(body, this));
+    }
+
+    /**
+     * Sets a writer that produces the request body while the request is executed. The body is sent with chunked
+     * transfer encoding, and the server is asked to confirm with 100-continue first so that authentication
+     * challenges are answered before any of it goes out.
+     *
+     * @param writer the writer producing the request body
+     * @throws EWSHttpException the eWS http exception
+     */
+    @Override
+    public void setRequestBodyWriter(IRequestBodyWriter writer) throws EWSHttpException {
+        throwIfConnIsNull();
+        ((EntityEnclosingMethod) httpMethod).setRequestEntity(new StreamingRequestEntity(writer, getContentType(), this));
+        httpMethod.getParams().setBooleanParameter(HttpMethodParams.USE_EXPECT_CONTINUE, true);
+    }
+
     /**
      * Gets the response headers.
      *
@@ -336,7 +397,26 @@ public String getResponseContentType() throws EWSHttpException {
     public int executeRequest() throws EWSHttpException, HttpException, IOException {
         throwIfConnIsNull();
 
-        return client.executeMethod(httpMethod);
+        return this.executeMethod();
+    }
+
+    /**
+     * Executes the method on the connection pool of this request and records how it was authenticated.
+     *
+     * @return the status code
+     * @throws IOException the IO Exception
+     */
+    private int executeMethod() throws IOException {
+        // The timeouts apply to this request only, the parameters of the shared connection manager are left alone.
+        httpMethod.getParams().setSoTimeout(getTimeout());
+        HttpClientTransport.setConnectTimeout(connectTimeout > 0 ? connectTimeout : getTimeout());
+        try {
+            int statusCode = connectionPool.getHttpClient().executeMethod(hostConfiguration, httpMethod, state);
+            transport.recordAuthentication(connectionPool, httpMethod, statusCode);
+            return statusCode;
+        } finally {
+            HttpClientTransport.setConnectTimeout(0);
+        }
     }
 
     /**
@@ -6,6 +6,7 @@
  **************************************************************************/
 package microsoft.exchange.webservices.data;
 
+import org.apache.commons.httpclient.Cookie;
 import org.apache.commons.httpclient.HttpException;
 
 import javax.net.ssl.TrustManager;
@@ -17,8 +18,10 @@
 
 /**
  * The Class HttpWebRequest.
+ *
+ * @see IHttpWebRequestFactory
  */
-abstract class HttpWebRequest {
+public abstract class HttpWebRequest {
 
     /**
      * The url.
@@ -100,6 +103,21 @@ abstract class HttpWebRequest {
      */
     private WebProxy proxy;
 
+    /**
+     * The time the request body last started to be sent, in System.nanoTime() terms, 0 if it has not been sent.
+     */
+    private volatile long requestBodyStartNanos;
+
+    /**
+     * The time the request body was last sent, in System.nanoTime() terms, 0 if it has not been sent.
+     */
+    private volatile long requestBodySentNanos;
+
+    /**
+     * The number of bytes of the request body last sent.
+     */
+    private volatile long requestBodyLength;
+
     /**
      * Gets the Web Proxy.
      *
@@ -430,6 +448,24 @@ public void setCredentials(String domain, String user, String pwd) {
         this.password = pwd;
     }
 
+    /**
+     * Gets the cookies held by this request after it has been executed. Transports that do not track cookies return
+     * null.
+     *
+     * @return the cookies
+     */
+    public Cookie[] getCookies() {
+        return null;
+    }
+
+    /**
+     * Sets the cookies to send with this request. Transports that do not track cookies ignore them.
+     *
+     * @param cookies the cookies
+     */
+    public void setUserCookie(Cookie[] cookies) {
+    }
+
     /**
      * Gets the input stream.
      *
@@ -455,11 +491,92 @@ public void setCredentials(String domain, String user, String pwd) {
      */
     public abstract OutputStream getOutputStream() throws EWSHttpException;
 
+    /**
+     * Sets a writer that produces the request body. Transports that can stream invoke the writer while the request
+     * is executed, so the body is never held in memory as a whole. By default the body is written to
+     * {@link #getOutputStream()} right away.
+     *
+     * @param writer the writer producing the request body
+     * @throws Exception the exception
+     */
+    public void setRequestBodyWriter(IRequestBodyWriter writer) throws Exception {
+        OutputStream stream = this.getOutputStream();
+        writer.writeRequestBody(stream);
+        stream.flush();
+    }
+
+    /**
+     * Sets a request body that has already been built in memory. By default the body is copied to
+     * {@link #getOutputStream()}; transports that can send the buffer as is should override this.
+     *
+     * @param body the request body
+     * @throws EWSHttpException the eWS http exception
+     * @throws IOException      the IO Exception
+     */
+    public void setRequestBody(ByteArrayOutputStream body) throws EWSHttpException, IOException {
+        OutputStream stream = this.getOutputStream();
+        body.writeTo(stream);
+        stream.flush();
+    }
+
+    /**
+     * Records that the request body starts to be sent, for the metrics of the service request. Implementations call
+     * this each time they send the body, as authentication may require sending it more than once.
+     */
+    protected void onRequestBodyStarted() {
+        this.requestBodyStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Records that the request body has been sent, for the metrics of the service request.
+     *
+     * @param length The number of bytes of the body.
+     */
+    protected void onRequestBodySent(long length) {
+        this.requestBodyLength = length;
+        this.requestBodySentNanos = System.nanoTime();
+    }
+
+    /**
+     * Gets the time the request body last started to be sent.
+     *
+     * @return The time in System.nanoTime() terms, 0 if the implementation does not record it.
+     */
+    long getRequestBodyStartNanos() {
+        return this.requestBodyStartNanos;
+    }
+
+    /**
+     * Gets the time the request body was last sent.
+     *
+     * @return The time in System.nanoTime() terms, 0 if the implementation does not record it.
+     */
+    long getRequestBodySentNanos() {
+        return this.requestBodySentNanos;
+    }
+
+    /**
+     * Gets the number of bytes of the request body last sent.
+     *
+     * @return The length of the body.
+     */
+    long getRequestBodyLength() {
+        return this.requestBodyLength;
+    }
+
     /**
      * Close.
      */
     public abstract void close();
 
+    /**
+     * Aborts the exchange in progress, from any thread. The thread executing the request fails right away and the
+     * connection is not reused. The default implementation does nothing, so the exchange runs until it completes or
+     * times out.
+     */
+    public void abort() {
+    }
+
     /**
      * Prepare connection.
      *
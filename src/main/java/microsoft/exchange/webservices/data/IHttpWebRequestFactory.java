@@ -0,0 +1,22 @@
+/**************************************************************************
+ * copyright file="IHttpWebRequestFactory.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the IHttpWebRequestFactory.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+/**
+ * Defines a factory for the HttpWebRequest instances through which a service talks to Exchange. Applications can
+ * implement IHttpWebRequestFactory to plug in an HTTP transport other than the default Apache HttpClient one.
+ */
+public interface IHttpWebRequestFactory {
+
+    /**
+     * Creates a new, unprepared request. The service sets the url, credentials and headers on the request and then
+     * calls {@link HttpWebRequest#prepareConnection()}.
+     *
+     * @return A new HttpWebRequest.
+     */
+    HttpWebRequest createHttpWebRequest();
+}
@@ -0,0 +1,27 @@
+/**************************************************************************
+ * copyright file="IRequestBodyWriter.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the IRequestBodyWriter.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.io.OutputStream;
+
+/**
+ * Defines a writer that produces the body of a request while the request is being sent.
+ *
+ * @see HttpWebRequest#setRequestBodyWriter(IRequestBodyWriter)
+ */
+public interface IRequestBodyWriter {
+
+    /**
+     * Writes the request body to the stream. The writer may be invoked more than once for a single request, for
+     * example when the request has to be resent after an authentication challenge, and must produce the same body
+     * each time.
+     *
+     * @param stream The stream to write the body to.
+     * @throws Exception the exception
+     */
+    void writeRequestBody(OutputStream stream) throws Exception;
+}
@@ -0,0 +1,23 @@
+/**************************************************************************
+ * copyright file="IRequestMetricsListener.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the IRequestMetricsListener.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+/**
+ * IRequestMetricsListener receives the metrics of the service requests of a service.
+ *
+ * @see RequestMetricsRecorder
+ */
+public interface IRequestMetricsListener {
+
+    /**
+     * Handles the metrics of an attempt of a service request. This is called on the thread that executed the
+     * attempt once it has completed, so it must return quickly.
+     *
+     * @param metrics The metrics.
+     */
+    void requestCompleted(RequestMetrics metrics);
+}
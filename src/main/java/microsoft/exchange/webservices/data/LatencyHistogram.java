@@ -0,0 +1,219 @@
+/**************************************************************************
+ * copyright file="LatencyHistogram.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the LatencyHistogram.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations that can be recorded from many threads without locking.
+ * <p/>
+ * Durations are counted in microsecond buckets. Below 16 microseconds each bucket holds one value, above that each
+ * power of 2 is split into 8 buckets, so percentiles are given within 12.5% of the recorded durations.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The number of buckets holding a single value.
+     */
+    private static final int LinearBucketCount = 16;
+
+    /**
+     * The number of buckets each power of 2 is split into, as a power of 2.
+     */
+    private static final int SubBucketBits = 3;
+
+    /**
+     * The number of buckets.
+     */
+    private static final int BucketCount = LinearBucketCount + (63 - 4) * (1 << SubBucketBits);
+
+    /**
+     * The number of durations recorded in each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BucketCount);
+
+    /**
+     * The number of durations recorded.
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * The sum of the durations recorded, in microseconds.
+     */
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * The longest duration recorded, in microseconds.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param duration The duration.
+     * @param unit     The unit of the duration.
+     */
+    public void record(long duration, TimeUnit unit) {
+        long micros = Math.max(0, unit.toMicros(duration));
+        this.counts.incrementAndGet(getBucket(micros));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(micros);
+
+        long current = this.max.get();
+        while (micros > current && !this.max.compareAndSet(current, micros)) {
+            current = this.max.get();
+        }
+    }
+
+    /**
+     * Takes a snapshot of this histogram. Durations recorded while the snapshot is taken may be only partly
+     * included.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot getSnapshot() {
+        long[] bucketCounts = new long[BucketCount];
+        for (int i = 0; i < BucketCount; i++) {
+            bucketCounts[i] = this.counts.get(i);
+        }
+        return new Snapshot(bucketCounts, this.count.get(), this.sum.get(), this.max.get());
+    }
+
+    /**
+     * Gets the bucket of a duration.
+     *
+     * @param micros The duration, in microseconds.
+     * @return The index of the bucket.
+     */
+    private static int getBucket(long micros) {
+        if (micros < LinearBucketCount) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SubBucketBits)) & ((1 << SubBucketBits) - 1);
+        return LinearBucketCount + ((exponent - 4) << SubBucketBits) + subBucket;
+    }
+
+    /**
+     * Gets the upper bound of a bucket.
+     *
+     * @param bucket The index of the bucket.
+     * @return The largest duration of the bucket, in microseconds.
+     */
+    private static long getBucketUpperBound(int bucket) {
+        if (bucket < LinearBucketCount) {
+            return bucket;
+        }
+        int exponent = ((bucket - LinearBucketCount) >> SubBucketBits) + 4;
+        long subBucket = (bucket - LinearBucketCount) & ((1 << SubBucketBits) - 1);
+        long width = 1L << (exponent - SubBucketBits);
+        return ((1L << SubBucketBits) + subBucket + 1) * width - 1;
+    }
+
+    /**
+     * Represents the durations recorded in a histogram at a point in time.
+     */
+    public static final class Snapshot {
+
+        /**
+         * The number of durations in each bucket.
+         */
+        private final long[] counts;
+
+        /**
+         * The number of durations.
+         */
+        private final long count;
+
+        /**
+         * The sum of the durations, in microseconds.
+         */
+        private final long sum;
+
+        /**
+         * The longest duration, in microseconds.
+         */
+        private final long max;
+
+        /**
+         * Initializes a new instance of the Snapshot class.
+         *
+         * @param counts The number of durations in each bucket.
+         * @param count  The number of durations.
+         * @param sum    The sum of the durations, in microseconds.
+         * @param max    The longest duration, in microseconds.
+         */
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Gets the number of durations recorded.
+         *
+         * @return The count.
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * Gets the mean of the durations recorded.
+         *
+         * @param unit The unit of the mean.
+         * @return The mean, 0 if no duration was recorded.
+         */
+        public long getMean(TimeUnit unit) {
+            return this.count == 0 ? 0 : unit.convert(this.sum / this.count, TimeUnit.MICROSECONDS);
+        }
+
+        /**
+         * Gets the longest duration recorded.
+         *
+         * @param unit The unit of the duration.
+         * @return The longest duration, 0 if no duration was recorded.
+         */
+        public long getMax(TimeUnit unit) {
+            return unit.convert(this.max, TimeUnit.MICROSECONDS);
+        }
+
+        /**
+         * Gets the duration below which a percentage of the durations recorded fall.
+         *
+         * @param percentile The percentage, between 0 and 100, for example 99 for the 99th percentile.
+         * @param unit       The unit of the duration.
+         * @return The duration, 0 if no duration was recorded.
+         */
+        public long getPercentile(double percentile, TimeUnit unit) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("percentile");
+            }
+
+            long total = 0;
+            for (long bucketCount : this.counts) {
+                total += bucketCount;
+            }
+            if (total == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= rank) {
+                    return unit.convert(Math.min(getBucketUpperBound(i), this.max), TimeUnit.MICROSECONDS);
+                }
+            }
+            return unit.convert(this.max, TimeUnit.MICROSECONDS);
+        }
+    }
+}
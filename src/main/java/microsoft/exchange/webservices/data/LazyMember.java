@@ -21,12 +21,12 @@
     /**
      * The lazy member.
      */
-    private T lazyMember;
+    private volatile T lazyMember;
 
     /**
      * The initialized.
      */
-    private boolean initialized = false;
+    private volatile boolean initialized = false;
 
     /**
      * The lazy implementation.
@@ -43,8 +43,8 @@ public T getMember() {
             synchronized (this) {
                 if (!this.initialized) {
                     this.lazyMember = lazyImplementation.createInstance();
+                    this.initialized = true;
                 }
-                this.initialized = true;
             }
         }
         return lazyMember;
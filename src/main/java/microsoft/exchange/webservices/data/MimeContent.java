@@ -7,6 +7,8 @@
 package microsoft.exchange.webservices.data;
 
 import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 
 /**
  * Represents the MIME content of an item.
@@ -63,8 +65,10 @@ protected void readAttributesFromXml(EwsServiceXmlReader reader) throws Exceptio
      */
     @Override
     protected void readTextValueFromXml(EwsServiceXmlReader reader) throws XMLStreamException,
-            ServiceXmlDeserializationException {
-        this.content = Base64EncoderStream.decode(reader.readValue());
+            ServiceXmlDeserializationException, IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        reader.readBase64Value(stream);
+        this.content = stream.toByteArray();
     }
 
     /**
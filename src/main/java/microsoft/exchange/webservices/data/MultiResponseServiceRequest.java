@@ -7,6 +7,9 @@
 
 package microsoft.exchange.webservices.data;
 
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
 /**
  * Represents a service request that can have multiple responses.
  *
@@ -130,6 +133,59 @@ protected ServiceResponseCollection<TResponse> execute() throws Exception {
         return serviceResponses;
     }
 
+    /**
+     * Executes this request on the async executor of the service.
+     *
+     * @return A future that completes with the service response collection.
+     */
+    protected ServiceRequestFuture<ServiceResponseCollection<TResponse>> executeAsync() {
+        return this.internalExecuteAsync().map(new Function<Object, ServiceResponseCollection<TResponse>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public ServiceResponseCollection<TResponse> apply(Object response) {
+                ServiceResponseCollection<TResponse> serviceResponses = (ServiceResponseCollection<TResponse>) response;
+
+                if (getErrorHandlingMode() == ServiceErrorHandling.ThrowOnError) {
+                    EwsUtilities.EwsAssert(serviceResponses.getCount() == 1, "MultiResponseServiceRequest.ExecuteAsync",
+                            "ServiceErrorHandling.ThrowOnError error handling is only valid for singleton request");
+
+                    try {
+                        serviceResponses.getResponseAtIndex(0).throwIfNecessary();
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }
+                return serviceResponses;
+            }
+        });
+    }
+
+    /**
+     * Gets the back-off hint of a response the server throttled as a whole. A batch is only considered throttled
+     * when every response in it is ErrorServerBusy, since the server did process the other items.
+     *
+     * @param serviceResponse The response.
+     * @return The largest BackOffMilliseconds hint, or -1 if the response was not throttled.
+     */
+    @Override
+    protected long getThrottledBackOffMilliseconds(Object serviceResponse) {
+        ServiceResponseCollection<?> serviceResponses = (ServiceResponseCollection<?>) serviceResponse;
+        if (serviceResponses.getCount() == 0) {
+            return -1;
+        }
+
+        long backOffMilliseconds = 0;
+        for (int i = 0; i < serviceResponses.getCount(); i++) {
+            long responseBackOff = ThrottlingRetryPolicy.getBackOffMilliseconds(
+                    serviceResponses.getResponseAtIndex(i));
+            if (responseBackOff < 0) {
+                return -1;
+            }
+            backOffMilliseconds = Math.max(backOffMilliseconds, responseBackOff);
+        }
+        return backOffMilliseconds;
+    }
+
 
     /**
      * Ends executing this async request.
@@ -6,6 +6,9 @@
  **************************************************************************/
 package microsoft.exchange.webservices.data;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
 /**
  * Represents a pull subscription.
  */
@@ -41,6 +44,25 @@ public GetEventsResults getEvents() throws Exception {
         return results;
     }
 
+    /**
+     * Obtains a collection of events that occurred on the subscribed folders since the point in time defined by the
+     * Watermark property, on the async executor of the service. When the future completes, Watermark is updated.
+     *
+     * @return A future that completes with a collection of events that occurred since the last watermark
+     * @throws Exception the exception
+     */
+    public CompletableFuture<GetEventsResults> getEventsAsync() throws Exception {
+        return getService().getEventsAsync(this.getId(), this.getWaterMark()).map(
+                new Function<GetEventsResults, GetEventsResults>() {
+                    @Override
+                    public GetEventsResults apply(GetEventsResults results) {
+                        setWaterMark(results.getNewWatermark());
+                        moreEventsAvailable = results.isMoreEventsAvailable();
+                        return results;
+                    }
+                });
+    }
+
     /**
      * Begins an asynchronous request to obtain a collection of events that occurred on the subscribed folders since the
      * point in time defined by the Watermark property
@@ -0,0 +1,117 @@
+/**************************************************************************
+ * copyright file="RequestDeadline.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the RequestDeadline.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents a deadline for the service requests made by the current thread.
+ * <p/>
+ * A request takes the deadline in effect on the thread that creates it, so async requests keep the deadline of their
+ * caller while they run on the async executor. Each attempt of the request is sent with a timeout no longer than the
+ * time left, and a request still in progress at the deadline is aborted with a
+ * {@link ServiceRequestTimeoutException}. Deadlines nest: an inner deadline never extends an outer one.
+ * <pre>
+ *     RequestDeadline deadline = RequestDeadline.start(5, TimeUnit.SECONDS);
+ *     try {
+ *         service.findItems(folderId, view);
+ *     } finally {
+ *         deadline.close();
+ *     }
+ * </pre>
+ */
+public final class RequestDeadline implements AutoCloseable {
+
+    /**
+     * The deadline in effect on each thread.
+     */
+    private static final ThreadLocal<RequestDeadline> current = new ThreadLocal<RequestDeadline>();
+
+    /**
+     * The deadline, in System.nanoTime() terms.
+     */
+    private final long deadlineNanos;
+
+    /**
+     * The deadline that was in effect when this one started.
+     */
+    private final RequestDeadline previous;
+
+    /**
+     * Initializes a new instance of the RequestDeadline class.
+     *
+     * @param deadlineNanos The deadline, in System.nanoTime() terms.
+     * @param previous      The deadline that was in effect.
+     */
+    private RequestDeadline(long deadlineNanos, RequestDeadline previous) {
+        this.deadlineNanos = deadlineNanos;
+        this.previous = previous;
+    }
+
+    /**
+     * Starts a deadline for the requests made by the current thread, until it is closed.
+     *
+     * @param timeout The time from now until the deadline.
+     * @param unit    The unit of the timeout.
+     * @return The deadline, to be closed once the requests it covers have been made.
+     */
+    public static RequestDeadline start(long timeout, TimeUnit unit) {
+        EwsUtilities.EwsAssert(unit != null, "RequestDeadline.start", "unit is null");
+
+        RequestDeadline previous = current.get();
+        long deadlineNanos = System.nanoTime() + unit.toNanos(Math.max(0, timeout));
+        if (previous != null && previous.deadlineNanos - deadlineNanos < 0) {
+            deadlineNanos = previous.deadlineNanos;
+        }
+
+        RequestDeadline deadline = new RequestDeadline(deadlineNanos, previous);
+        current.set(deadline);
+        return deadline;
+    }
+
+    /**
+     * Gets the deadline in effect on the current thread.
+     *
+     * @return The deadline, or null if there is none.
+     */
+    static RequestDeadline current() {
+        return current.get();
+    }
+
+    /**
+     * Gets the time left until this deadline.
+     *
+     * @return The time left in milliseconds, 0 if the deadline has passed.
+     */
+    public long getRemainingMilliseconds() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(this.deadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * Gets a value indicating whether this deadline has passed.
+     *
+     * @return true if the deadline has passed
+     */
+    public boolean isExpired() {
+        return this.deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Ends this deadline on the current thread, restoring the deadline that was in effect when it started. Requests
+     * already created keep the deadline.
+     */
+    @Override
+    public void close() {
+        if (current.get() == this) {
+            if (this.previous != null) {
+                current.set(this.previous);
+            } else {
+                current.remove();
+            }
+        }
+    }
+}
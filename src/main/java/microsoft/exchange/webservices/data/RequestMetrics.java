@@ -0,0 +1,245 @@
+/**************************************************************************
+ * copyright file="RequestMetrics.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the RequestMetrics.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents the timings, sizes and outcome of an attempt of a service request, as passed to an
+ * {@link IRequestMetricsListener}.
+ */
+public final class RequestMetrics {
+
+    /**
+     * The name of the operation.
+     */
+    private final String operation;
+
+    /**
+     * The impersonated mailbox.
+     */
+    private final String impersonatedMailbox;
+
+    /**
+     * The number of retries made before this attempt.
+     */
+    private final int attempt;
+
+    /**
+     * The time this attempt started, in System.nanoTime() terms.
+     */
+    private final long startNanos;
+
+    /**
+     * The duration of each phase in nanoseconds, -1 if it was not reached.
+     */
+    private final long[] durations = new long[RequestPhase.values().length];
+
+    /**
+     * The number of bytes of the request body.
+     */
+    private long requestBytes = -1;
+
+    /**
+     * The number of bytes of the response body.
+     */
+    private long responseBytes = -1;
+
+    /**
+     * The result.
+     */
+    private ServiceResult result = ServiceResult.Error;
+
+    /**
+     * The error code.
+     */
+    private ServiceError errorCode;
+
+    /**
+     * The exception the attempt failed with.
+     */
+    private Exception exception;
+
+    /**
+     * Initializes a new instance of the RequestMetrics class.
+     *
+     * @param operation           The name of the operation.
+     * @param impersonatedMailbox The impersonated mailbox, null if there is none.
+     * @param attempt             The number of retries made before this attempt.
+     */
+    RequestMetrics(String operation, String impersonatedMailbox, int attempt) {
+        this.operation = operation;
+        this.impersonatedMailbox = impersonatedMailbox;
+        this.attempt = attempt;
+        this.startNanos = System.nanoTime();
+        Arrays.fill(this.durations, -1);
+    }
+
+    /**
+     * Gets the name of the operation, the XML element name of the request, for example "FindItem".
+     *
+     * @return The operation.
+     */
+    public String getOperation() {
+        return this.operation;
+    }
+
+    /**
+     * Gets the mailbox the request impersonated.
+     *
+     * @return The impersonated mailbox, null if the request did not impersonate.
+     */
+    public String getImpersonatedMailbox() {
+        return this.impersonatedMailbox;
+    }
+
+    /**
+     * Gets the number of retries of the request made before this attempt.
+     *
+     * @return 0 for the first attempt.
+     */
+    public int getAttempt() {
+        return this.attempt;
+    }
+
+    /**
+     * Gets the duration of a phase of this attempt.
+     *
+     * @param phase The phase.
+     * @param unit  The unit of the duration.
+     * @return The duration, -1 if the attempt did not reach the phase.
+     */
+    public long getDuration(RequestPhase phase, TimeUnit unit) {
+        long duration = this.durations[phase.ordinal()];
+        return duration < 0 ? -1 : unit.convert(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the number of bytes of the request body sent.
+     *
+     * @return The request size, -1 if the request was not sent.
+     */
+    public long getRequestBytes() {
+        return this.requestBytes;
+    }
+
+    /**
+     * Gets the number of bytes of the response body read, after decompression.
+     *
+     * @return The response size, -1 if the response was not read.
+     */
+    public long getResponseBytes() {
+        return this.responseBytes;
+    }
+
+    /**
+     * Gets the overall result of the response. An attempt that failed without a response has the Error result.
+     *
+     * @return The result.
+     */
+    public ServiceResult getResult() {
+        return this.result;
+    }
+
+    /**
+     * Gets the error code of the first response that failed.
+     *
+     * @return The error code, null if there is none.
+     */
+    public ServiceError getErrorCode() {
+        return this.errorCode;
+    }
+
+    /**
+     * Gets the exception this attempt failed with.
+     *
+     * @return The exception, null if a response was read.
+     */
+    public Exception getException() {
+        return this.exception;
+    }
+
+    /**
+     * Gets the time this attempt started.
+     *
+     * @return The time in System.nanoTime() terms.
+     */
+    long getStartNanos() {
+        return this.startNanos;
+    }
+
+    /**
+     * Sets the duration of a phase.
+     *
+     * @param phase    The phase.
+     * @param duration The duration in nanoseconds.
+     */
+    void setDuration(RequestPhase phase, long duration) {
+        this.durations[phase.ordinal()] = Math.max(0, duration);
+    }
+
+    /**
+     * Sets the number of bytes of the request body.
+     *
+     * @param requestBytes The request size.
+     */
+    void setRequestBytes(long requestBytes) {
+        this.requestBytes = requestBytes;
+    }
+
+    /**
+     * Sets the number of bytes of the response body.
+     *
+     * @param responseBytes The response size.
+     */
+    void setResponseBytes(long responseBytes) {
+        this.responseBytes = responseBytes;
+    }
+
+    /**
+     * Sets the outcome from the response read.
+     *
+     * @param serviceResponse The response.
+     */
+    void setResponse(Object serviceResponse) {
+        if (serviceResponse instanceof ServiceResponseCollection) {
+            ServiceResponseCollection<?> responses = (ServiceResponseCollection<?>) serviceResponse;
+            this.result = responses.getOverallResult();
+            for (ServiceResponse response : responses) {
+                if (response.getResult() == ServiceResult.Error) {
+                    this.errorCode = response.getErrorCode();
+                    break;
+                }
+            }
+        }
+        else if (serviceResponse instanceof ServiceResponse) {
+            ServiceResponse response = (ServiceResponse) serviceResponse;
+            this.result = response.getResult();
+            this.errorCode = response.getResult() == ServiceResult.Error ? response.getErrorCode() : null;
+        }
+        else {
+            this.result = ServiceResult.Success;
+        }
+    }
+
+    /**
+     * Sets the exception this attempt failed with.
+     *
+     * @param exception The exception.
+     */
+    void setException(Exception exception) {
+        this.exception = exception;
+        this.result = ServiceResult.Error;
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ServiceResponseException) {
+                this.errorCode = ((ServiceResponseException) cause).getErrorCode();
+                break;
+            }
+        }
+    }
+}
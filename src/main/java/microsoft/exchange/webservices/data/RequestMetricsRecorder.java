@@ -0,0 +1,353 @@
+/**************************************************************************
+ * copyright file="RequestMetricsRecorder.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the RequestMetricsRecorder.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A request metrics listener that aggregates the metrics of the service requests per operation: a latency
+ * histogram per phase, the bytes sent and received and the number of calls per result and error code. Metrics are
+ * recorded without locking, and can be read while they are recorded:
+ * <pre>
+ *     RequestMetricsRecorder recorder = new RequestMetricsRecorder();
+ *     service.setRequestMetricsListener(recorder);
+ *     ...
+ *     LatencyHistogram.Snapshot findItem = recorder.getSnapshot().get("FindItem").getHistogram(RequestPhase.Total);
+ *     long p99 = findItem.getPercentile(99, TimeUnit.MILLISECONDS);
+ * </pre>
+ * The impersonated mailbox of the calls is not aggregated, as it has too many values; a listener of its own can
+ * group calls by mailbox.
+ */
+public final class RequestMetricsRecorder implements IRequestMetricsListener {
+
+    /**
+     * The metrics of each operation.
+     */
+    private final ConcurrentMap<String, OperationMetrics> operations =
+            new ConcurrentHashMap<String, OperationMetrics>();
+
+    /**
+     * Records the metrics of an attempt of a service request.
+     *
+     * @param metrics The metrics.
+     */
+    @Override
+    public void requestCompleted(RequestMetrics metrics) {
+        OperationMetrics operation = this.operations.get(metrics.getOperation());
+        if (operation == null) {
+            OperationMetrics newOperation = new OperationMetrics();
+            operation = this.operations.putIfAbsent(metrics.getOperation(), newOperation);
+            if (operation == null) {
+                operation = newOperation;
+            }
+        }
+        operation.record(metrics);
+    }
+
+    /**
+     * Takes a snapshot of the metrics recorded.
+     *
+     * @return The metrics of each operation, by operation name.
+     */
+    public Map<String, OperationSnapshot> getSnapshot() {
+        Map<String, OperationSnapshot> snapshot = new TreeMap<String, OperationSnapshot>();
+        for (Map.Entry<String, OperationMetrics> operation : this.operations.entrySet()) {
+            snapshot.put(operation.getKey(), operation.getValue().getSnapshot(operation.getKey()));
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Discards the metrics recorded.
+     */
+    public void reset() {
+        this.operations.clear();
+    }
+
+    /**
+     * Writes a snapshot of the metrics recorded as tab-separated values: a line per operation and phase, with the
+     * durations in microseconds, followed by the call count, bytes and results of the operation.
+     *
+     * @param out The output to write to.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void export(Appendable out) throws IOException {
+        String lineSeparator = System.getProperty("line.separator");
+        out.append("operation\tphase\tcount\tmean\tp50\tp90\tp99\tmax").append(lineSeparator);
+        for (OperationSnapshot operation : this.getSnapshot().values()) {
+            for (RequestPhase phase : RequestPhase.values()) {
+                LatencyHistogram.Snapshot histogram = operation.getHistogram(phase);
+                out.append(operation.getOperation()).append('\t').append(phase.toString());
+                out.append('\t').append(String.valueOf(histogram.getCount()));
+                out.append('\t').append(String.valueOf(histogram.getMean(TimeUnit.MICROSECONDS)));
+                out.append('\t').append(String.valueOf(histogram.getPercentile(50, TimeUnit.MICROSECONDS)));
+                out.append('\t').append(String.valueOf(histogram.getPercentile(90, TimeUnit.MICROSECONDS)));
+                out.append('\t').append(String.valueOf(histogram.getPercentile(99, TimeUnit.MICROSECONDS)));
+                out.append('\t').append(String.valueOf(histogram.getMax(TimeUnit.MICROSECONDS)));
+                out.append(lineSeparator);
+            }
+
+            out.append(operation.getOperation()).append("\tcalls\t").append(String.valueOf(operation.getCallCount()));
+            out.append("\trequestBytes\t").append(String.valueOf(operation.getRequestBytes()));
+            out.append("\tresponseBytes\t").append(String.valueOf(operation.getResponseBytes()));
+            for (ServiceResult result : ServiceResult.values()) {
+                out.append('\t').append(result.toString());
+                out.append('\t').append(String.valueOf(operation.getResultCount(result)));
+            }
+            for (Map.Entry<ServiceError, Long> error : operation.getErrorCounts().entrySet()) {
+                out.append('\t').append(error.getKey().toString());
+                out.append('\t').append(String.valueOf(error.getValue()));
+            }
+            out.append(lineSeparator);
+        }
+    }
+
+    /**
+     * The metrics recorded for an operation.
+     */
+    private static final class OperationMetrics {
+
+        /**
+         * The histogram of each phase.
+         */
+        private final LatencyHistogram[] histograms = new LatencyHistogram[RequestPhase.values().length];
+
+        /**
+         * The number of calls.
+         */
+        private final AtomicLong callCount = new AtomicLong();
+
+        /**
+         * The number of bytes sent.
+         */
+        private final AtomicLong requestBytes = new AtomicLong();
+
+        /**
+         * The number of bytes received.
+         */
+        private final AtomicLong responseBytes = new AtomicLong();
+
+        /**
+         * The number of calls of each result.
+         */
+        private final AtomicLongArray resultCounts = new AtomicLongArray(ServiceResult.values().length);
+
+        /**
+         * The number of calls of each error code.
+         */
+        private final ConcurrentMap<ServiceError, AtomicLong> errorCounts =
+                new ConcurrentHashMap<ServiceError, AtomicLong>();
+
+        /**
+         * Initializes a new instance of the OperationMetrics class.
+         */
+        private OperationMetrics() {
+            for (int i = 0; i < this.histograms.length; i++) {
+                this.histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        /**
+         * Records the metrics of a call.
+         *
+         * @param metrics The metrics.
+         */
+        private void record(RequestMetrics metrics) {
+            for (RequestPhase phase : RequestPhase.values()) {
+                long duration = metrics.getDuration(phase, TimeUnit.NANOSECONDS);
+                if (duration >= 0) {
+                    this.histograms[phase.ordinal()].record(duration, TimeUnit.NANOSECONDS);
+                }
+            }
+
+            this.callCount.incrementAndGet();
+            if (metrics.getRequestBytes() > 0) {
+                this.requestBytes.addAndGet(metrics.getRequestBytes());
+            }
+            if (metrics.getResponseBytes() > 0) {
+                this.responseBytes.addAndGet(metrics.getResponseBytes());
+            }
+            this.resultCounts.incrementAndGet(metrics.getResult().ordinal());
+
+            ServiceError errorCode = metrics.getErrorCode();
+            if (errorCode != null) {
+                AtomicLong errorCount = this.errorCounts.get(errorCode);
+                if (errorCount == null) {
+                    AtomicLong newErrorCount = new AtomicLong();
+                    errorCount = this.errorCounts.putIfAbsent(errorCode, newErrorCount);
+                    if (errorCount == null) {
+                        errorCount = newErrorCount;
+                    }
+                }
+                errorCount.incrementAndGet();
+            }
+        }
+
+        /**
+         * Takes a snapshot of the metrics.
+         *
+         * @param operation The name of the operation.
+         * @return The snapshot.
+         */
+        private OperationSnapshot getSnapshot(String operation) {
+            LatencyHistogram.Snapshot[] histogramSnapshots = new LatencyHistogram.Snapshot[this.histograms.length];
+            for (int i = 0; i < this.histograms.length; i++) {
+                histogramSnapshots[i] = this.histograms[i].getSnapshot();
+            }
+
+            long[] results = new long[this.resultCounts.length()];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = this.resultCounts.get(i);
+            }
+
+            Map<ServiceError, Long> errors = new EnumMap<ServiceError, Long>(ServiceError.class);
+            for (Map.Entry<ServiceError, AtomicLong> error : this.errorCounts.entrySet()) {
+                errors.put(error.getKey(), error.getValue().get());
+            }
+
+            return new OperationSnapshot(operation, histogramSnapshots, this.callCount.get(),
+                    this.requestBytes.get(), this.responseBytes.get(), results, Collections.unmodifiableMap(errors));
+        }
+    }
+
+    /**
+     * Represents the metrics recorded for an operation at a point in time.
+     */
+    public static final class OperationSnapshot {
+
+        /**
+         * The name of the operation.
+         */
+        private final String operation;
+
+        /**
+         * The histogram of each phase.
+         */
+        private final LatencyHistogram.Snapshot[] histograms;
+
+        /**
+         * The number of calls.
+         */
+        private final long callCount;
+
+        /**
+         * The number of bytes sent.
+         */
+        private final long requestBytes;
+
+        /**
+         * The number of bytes received.
+         */
+        private final long responseBytes;
+
+        /**
+         * The number of calls of each result.
+         */
+        private final long[] resultCounts;
+
+        /**
+         * The number of calls of each error code.
+         */
+        private final Map<ServiceError, Long> errorCounts;
+
+        /**
+         * Initializes a new instance of the OperationSnapshot class.
+         *
+         * @param operation     The name of the operation.
+         * @param histograms    The histogram of each phase.
+         * @param callCount     The number of calls.
+         * @param requestBytes  The number of bytes sent.
+         * @param responseBytes The number of bytes received.
+         * @param resultCounts  The number of calls of each result.
+         * @param errorCounts   The number of calls of each error code.
+         */
+        private OperationSnapshot(String operation, LatencyHistogram.Snapshot[] histograms, long callCount,
+                long requestBytes, long responseBytes, long[] resultCounts, Map<ServiceError, Long> errorCounts) {
+            this.operation = operation;
+            this.histograms = histograms;
+            this.callCount = callCount;
+            this.requestBytes = requestBytes;
+            this.responseBytes = responseBytes;
+            this.resultCounts = resultCounts;
+            this.errorCounts = errorCounts;
+        }
+
+        /**
+         * Gets the name of the operation.
+         *
+         * @return The operation.
+         */
+        public String getOperation() {
+            return this.operation;
+        }
+
+        /**
+         * Gets the histogram of the durations of a phase.
+         *
+         * @param phase The phase.
+         * @return The histogram.
+         */
+        public LatencyHistogram.Snapshot getHistogram(RequestPhase phase) {
+            return this.histograms[phase.ordinal()];
+        }
+
+        /**
+         * Gets the number of calls, each attempt of a retried request counting as a call.
+         *
+         * @return The call count.
+         */
+        public long getCallCount() {
+            return this.callCount;
+        }
+
+        /**
+         * Gets the number of bytes of the request bodies sent.
+         *
+         * @return The bytes sent.
+         */
+        public long getRequestBytes() {
+            return this.requestBytes;
+        }
+
+        /**
+         * Gets the number of bytes of the response bodies read, after decompression.
+         *
+         * @return The bytes received.
+         */
+        public long getResponseBytes() {
+            return this.responseBytes;
+        }
+
+        /**
+         * Gets the number of calls with a result.
+         *
+         * @param result The result.
+         * @return The call count.
+         */
+        public long getResultCount(ServiceResult result) {
+            return this.resultCounts[result.ordinal()];
+        }
+
+        /**
+         * Gets the number of calls that failed with each error code.
+         *
+         * @return The call counts, by error code.
+         */
+        public Map<ServiceError, Long> getErrorCounts() {
+            return this.errorCounts;
+        }
+    }
+}
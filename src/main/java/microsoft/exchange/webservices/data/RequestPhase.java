@@ -0,0 +1,49 @@
+/**************************************************************************
+ * copyright file="RequestPhase.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the RequestPhase.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+/**
+ * Defines the phases of a service request that are timed by {@link RequestMetrics}.
+ */
+public enum RequestPhase {
+
+    /**
+     * The validation of the request parameters.
+     */
+    Validate,
+
+    /**
+     * The serialization of the request. When the request is streamed, it is serialized while it is sent.
+     */
+    Serialize,
+
+    /**
+     * The time from executing the HTTP request to sending its body: taking a connection from the pool, connecting,
+     * the TLS handshake and the authentication round trips.
+     */
+    ConnectAndAuthenticate,
+
+    /**
+     * The time from sending the request body to receiving the response headers.
+     */
+    ServerWait,
+
+    /**
+     * The time from the start of the request to receiving the response headers.
+     */
+    FirstByte,
+
+    /**
+     * The reading and parsing of the response body.
+     */
+    Parse,
+
+    /**
+     * The time from the start of the request to the end of the response, including the wait for the rate limiters.
+     */
+    Total
+}
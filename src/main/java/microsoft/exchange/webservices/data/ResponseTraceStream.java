@@ -0,0 +1,238 @@
+/**************************************************************************
+ * copyright file="ResponseTraceStream.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the ResponseTraceStream.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * A stream that keeps a copy of the response bytes it returns, so the response can be parsed as it arrives and traced
+ * once it has been read. The copy is limited to a number of bytes, the bytes beyond it are counted but not kept.
+ */
+final class ResponseTraceStream extends FilterInputStream {
+
+    /**
+     * The encoding of traced responses.
+     */
+    private static final Charset Utf8 = Charset.forName("UTF-8");
+
+    /**
+     * The initial size of the copy.
+     */
+    private static final int InitialCopySize = 8 * 1024;
+
+    /**
+     * The maximum number of bytes kept.
+     */
+    private final int limit;
+
+    /**
+     * The bytes kept.
+     */
+    private byte[] copy;
+
+    /**
+     * The number of bytes kept.
+     */
+    private int count;
+
+    /**
+     * The number of bytes read.
+     */
+    private long length;
+
+    /**
+     * Initializes a new instance of the ResponseTraceStream class.
+     *
+     * @param stream The response stream.
+     * @param limit  The maximum number of bytes kept for the trace.
+     */
+    ResponseTraceStream(InputStream stream, int limit) {
+        super(stream);
+        this.limit = limit;
+        this.copy = new byte[Math.min(limit, InitialCopySize)];
+    }
+
+    @Override
+    public int read() throws IOException {
+        int data = this.in.read();
+        if (data != -1) {
+            if (this.count < this.limit) {
+                this.ensureCapacity(this.count + 1);
+                this.copy[this.count++] = (byte) data;
+            }
+            this.length++;
+        }
+        return data;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        int bytesRead = this.in.read(buffer, offset, count);
+        if (bytesRead > 0) {
+            int kept = (int) Math.min(bytesRead, (long) this.limit - this.count);
+            if (kept > 0) {
+                this.ensureCapacity(this.count + kept);
+                System.arraycopy(buffer, offset, this.copy, this.count, kept);
+                this.count += kept;
+            }
+            this.length += bytesRead;
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Skips bytes by reading them, so they are traced like the bytes returned.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(Math.max(n, 0), 4096)];
+        long skipped = 0;
+        while (skipped < n) {
+            int bytesRead = this.read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (bytesRead <= 0) {
+                break;
+            }
+            skipped += bytesRead;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Grows the copy to hold at least the specified number of bytes.
+     *
+     * @param capacity The number of bytes.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > this.copy.length) {
+            int newLength = (int) Math.min(Math.max((long) this.copy.length << 1, capacity), this.limit);
+            this.copy = Arrays.copyOf(this.copy, newLength);
+        }
+    }
+
+    /**
+     * Gets the number of bytes of heap the copy of the response holds.
+     *
+     * @return The size of the copy.
+     */
+    int getRetainedSize() {
+        return this.copy.length;
+    }
+
+    /**
+     * Shrinks the copy of the response to the specified number of bytes, so it holds no more memory than it is
+     * traced with. Once the response has been read, the bytes cut off count as not traced.
+     *
+     * @param maxBytes The number of bytes to keep.
+     */
+    void truncate(int maxBytes) {
+        int size = Math.min(this.count, maxBytes);
+        if (size < this.copy.length) {
+            this.copy = Arrays.copyOf(this.copy, size);
+            this.count = size;
+        }
+    }
+
+    /**
+     * Gets the number of bytes read from the response.
+     *
+     * @return The length of the response read so far.
+     */
+    long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Gets the response read so far as trace text. The text of the elements with the specified local names is
+     * replaced by its length, and the bytes beyond the limit by a note giving their number.
+     *
+     * @param redactedElements The local names of the elements whose text is not traced.
+     * @return The trace text.
+     */
+    String toTraceString(Set<String> redactedElements) {
+        String text = new String(this.copy, 0, this.count, Utf8);
+        if (!redactedElements.isEmpty()) {
+            text = redact(text, redactedElements);
+        }
+        if (this.length > this.count) {
+            text += String.format("%n[%d more bytes not traced]", this.length - this.count);
+        }
+        return text;
+    }
+
+    /**
+     * Replaces the text of the elements with the specified local names.
+     *
+     * @param xml              The XML.
+     * @param redactedElements The local names of the elements.
+     * @return The XML with the text of the elements replaced.
+     */
+    static String redact(String xml, Set<String> redactedElements) {
+        StringBuilder sb = null;
+        int copied = 0;
+        int index = xml.indexOf('<');
+        while (index != -1 && index + 1 < xml.length()) {
+            int nameEnd = index + 1;
+            while (nameEnd < xml.length() && isNameChar(xml.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            int tagEnd = xml.indexOf('>', nameEnd);
+            if (tagEnd == -1) {
+                break;
+            }
+
+            String qualifiedName = xml.substring(index + 1, nameEnd);
+            String localName = qualifiedName.substring(qualifiedName.indexOf(':') + 1);
+            int next = tagEnd + 1;
+            if (nameEnd > index + 1 && xml.charAt(tagEnd - 1) != '/' && redactedElements.contains(localName)) {
+                int endTag = xml.indexOf("</" + qualifiedName, next);
+                int contentEnd = endTag == -1 ? xml.length() : endTag;
+                if (sb == null) {
+                    sb = new StringBuilder(xml.length());
+                }
+                sb.append(xml, copied, next);
+                sb.append("[").append(contentEnd - next).append(" characters redacted]");
+                copied = contentEnd;
+                next = contentEnd;
+            }
+            index = xml.indexOf('<', next);
+        }
+
+        if (sb == null) {
+            return xml;
+        }
+        return sb.append(xml, copied, xml.length()).toString();
+    }
+
+    /**
+     * Determines whether a character is part of an element name.
+     *
+     * @param c The character.
+     * @return true if the character is part of a name
+     */
+    private static boolean isNameChar(char c) {
+        return c != '>' && c != '/' && !Character.isWhitespace(c) && c != '<' && c != '?' && c != '!';
+    }
+}
@@ -16,7 +16,7 @@
 
 @SuppressWarnings("ALL")
 public class SafeXmlFactory {
-    public static XMLInputFactory factory = XMLInputFactory.newInstance();
+    public static XMLInputFactory factory = EwsXmlFactories.getInputFactory();
 
 
     public static XMLStreamReader createSafeXmlTextReader(InputStream stream) throws Exception {
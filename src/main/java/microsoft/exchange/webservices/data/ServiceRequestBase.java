@@ -8,9 +8,8 @@
 
 import javax.xml.stream.XMLStreamException;
 import java.io.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.InflaterInputStream;
 
@@ -32,6 +31,26 @@ abstract class ServiceRequestBase {
      */
     private ExchangeService service;
 
+    /**
+     * The HttpWebRequest of the attempt in progress.
+     */
+    private volatile HttpWebRequest webRequest;
+
+    /**
+     * Whether this request has been aborted.
+     */
+    private volatile boolean aborted;
+
+    /**
+     * The deadline in effect when this request was created, null if there is none.
+     */
+    private final RequestDeadline deadline = RequestDeadline.current();
+
+    /**
+     * The metrics of the attempt in progress, null if metrics are not recorded.
+     */
+    private RequestMetrics metrics;
+
     // Methods for subclasses to override
 
     /**
@@ -267,36 +286,8 @@ protected HttpWebRequest emit(OutParam<HttpWebRequest> request) throws Exception
         request.setParam(this.getService().prepareHttpWebRequest());
         this.getService().traceHttpRequestHeaders(TraceFlags.EwsRequestHttpHeaders, request.getParam());
 
-        // If tracing is enabled, we generate the request in-memory so that we
-        // can pass it along to the ITraceListener. Then we copy the stream to
-        // the request stream.
-        if (this.service.isTraceEnabledFor(TraceFlags.EwsRequest)) {
-            ByteArrayOutputStream memoryStream = new ByteArrayOutputStream();
-            EwsServiceXmlWriter writer = new EwsServiceXmlWriter(this.service, memoryStream);
-            this.writeToXml(writer);
-            this.service.traceXml(TraceFlags.EwsRequest, memoryStream);
-            OutputStream urlOutStream = request.getParam().getOutputStream();
-            // request.getParam().write(memoryStream);
-            // System.out.println("Actual XML : "+new
-            // String(memoryStream.toByteArray())+": end of XML");
-
-            memoryStream.writeTo(urlOutStream);
-            urlOutStream.flush();
-            urlOutStream.close();
-            writer.dispose();
-            memoryStream.close();
-        }
-        else {
-            // ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            // ObjectOutputStream urlOutStream = new ObjectOutputStream(bos);
-            OutputStream urlOutStream = request.getParam().getOutputStream();
-            EwsServiceXmlWriter writer = new EwsServiceXmlWriter(this.service, urlOutStream);
-            this.writeToXml(writer);
-            // request.getParam().write(bos);
-            urlOutStream.flush();
-            urlOutStream.close();
-            writer.dispose();
-        }
+        this.writeToRequest(request.getParam());
+
         // Closing and flushing stream does not ensure xml data is posted. Hence
         // try to get response code. This will force the xml data to be posted.
         request.getParam().executeRequest();
@@ -316,35 +307,51 @@ protected HttpWebRequest emit(OutParam<HttpWebRequest> request) throws Exception
     }
 
     /**
-     * Get the request stream
+     * Serializes this request once and hands it to the HttpWebRequest as its body.
+     * <p/>
+     * Signing and tracing need the complete request in memory, as does a transport that does not stream. In that
+     * case the request is written to a single buffer that is signed, traced and then used as the request body as is.
+     * Otherwise the request is serialized straight to the connection while it is sent.
      *
-     * @param request The request
-     * @throws ExecutionException
-     * @throws InterruptedException
-     * @returns The Request stream
+     * @param request The HttpWebRequest to write to.
+     * @throws Exception the exception
      */
-    private ByteArrayOutputStream getWebRequestStream(Future request) throws EWSHttpException, InterruptedException,
-            ExecutionException {
-        // In the async case, although we can use async callback to make the
-        // entire worflow completely async,
-        // there is little perf gain with this approach because of EWS's message
-        // nature.
-        // The overall latency of BeginGetRequestStream() is same as
-        // GetRequestStream() in this case.
-        // The overhead to implement a two-step async operation includes wait
-        // handle synchronization, exception handling and wrapping.
-        // Therefore, we only leverage BeginGetResponse() and EndGetReponse() to
-        // provide the async functionality.
-        // Reference:
-        // http://www.wintellect.com/CS/blogs/jeffreyr/archive/2009/02/08/httpwebrequest-its-request-stream-and
-        // -sending-data-in-chunks.aspx
-        // return
-        // request.endGetRequestStream(request.beginGetRequestStream(request,
-        // null));
+    private void writeToRequest(HttpWebRequest request) throws Exception {
+        boolean needSignature =
+                this.service.getCredentials() != null && this.service.getCredentials().isNeedSignature();
+        boolean needTrace = this.service.isTraceEnabledFor(TraceFlags.EwsRequest);
+
+        if (!needSignature && !needTrace && this.service.isRequestStreamingEnabled()) {
+            request.setRequestBodyWriter(new IRequestBodyWriter() {
+                @Override
+                public void writeRequestBody(OutputStream stream) throws Exception {
+                    EwsServiceXmlWriter writer = new EwsServiceXmlWriter(getService(), stream);
+                    writeToXml(writer);
+                    writer.dispose();
+                }
+            });
+        }
+        else {
+            long startNanos = System.nanoTime();
+            ByteArrayOutputStream memoryStream = new ByteArrayOutputStream();
+            EwsServiceXmlWriter writer = new EwsServiceXmlWriter(this.service, memoryStream);
+            writer.setRequireWSSecurityUtilityNamespace(needSignature);
+            this.writeToXml(writer);
+            writer.dispose();
 
-        return (ByteArrayOutputStream) request.get();
-        // return ( ByteArrayOutputStream)request.getOutputStream();
+            if (needSignature) {
+                this.service.getCredentials().sign(memoryStream);
+            }
+            if (this.metrics != null) {
+                this.metrics.setDuration(RequestPhase.Serialize, System.nanoTime() - startNanos);
+            }
 
+            if (needTrace) {
+                this.service.traceXml(TraceFlags.EwsRequest, memoryStream);
+            }
+
+            request.setRequestBody(memoryStream);
+        }
     }
 
     /**
@@ -401,6 +408,28 @@ protected void traceResponse(HttpWebRequest request, ByteArrayOutputStream memor
 
     }
 
+    /**
+     * Traces the response read through a trace stream.
+     *
+     * @param request The response.
+     * @param stream  The stream the response was read through.
+     * @throws XMLStreamException the xML stream exception
+     * @throws IOException        Signals that an I/O exception has occurred.
+     * @throws EWSHttpException   the eWS http exception
+     */
+    protected void traceResponse(HttpWebRequest request, ResponseTraceStream stream) throws XMLStreamException,
+            IOException, EWSHttpException {
+        String contentType = request.getResponseContentType();
+
+        if (!isNullOrEmpty(contentType) &&
+                (contentType.startsWith("text/") || contentType.startsWith("application/soap"))) {
+            this.service.traceResponseBody(TraceFlags.EwsResponse, stream);
+        }
+        else {
+            this.service.traceMessage(TraceFlags.EwsResponse, "Non-textual response");
+        }
+    }
+
     /**
      * Gets the response error stream.
      *
@@ -446,12 +475,14 @@ protected Object readResponse(EwsServiceXmlReader ewsXmlReader) throws Exception
 
         ewsXmlReader.readStartElement(XmlNamespace.Messages, this.getResponseXmlElementName());
 
+        Object parseEvent = EwsFlightRecorder.beginParse();
         serviceResponse = this.parseResponse(ewsXmlReader);
 
         ewsXmlReader.readEndElementIfNecessary(XmlNamespace.Messages, this.getResponseXmlElementName());
 
         ewsXmlReader.readEndElement(XmlNamespace.Soap, XmlElementNames.SOAPBodyElementName);
         ewsXmlReader.readEndElement(XmlNamespace.Soap, XmlElementNames.SOAPEnvelopeElementName);
+        EwsFlightRecorder.endParse(parseEvent, this.getXmlElementName());
         return serviceResponse;
     }
 
@@ -544,24 +575,16 @@ protected void processWebException(Exception webException, HttpWebRequest req) t
             this.getService().processHttpResponseHeaders(TraceFlags.EwsResponseHttpHeaders, req);
             if (500 == req.getResponseCode()) {
                 if (this.service.isTraceEnabledFor(TraceFlags.EwsResponse)) {
-                    ByteArrayOutputStream memoryStream = new ByteArrayOutputStream();
-                    InputStream serviceResponseStream = ServiceRequestBase.getResponseErrorStream(req);
-                    while (true) {
-                        int data = serviceResponseStream.read();
-                        if (-1 == data) {
-                            break;
-                        }
-                        else {
-                            memoryStream.write(data);
-                        }
+                    ResponseTraceStream traceStream = new ResponseTraceStream(
+                            ServiceRequestBase.getResponseErrorStream(req), this.service.getTraceBodyLimit());
+                    try {
+                        EwsServiceXmlReader reader = new EwsServiceXmlReader(traceStream, this.service);
+                        soapFaultDetails = this.readSoapFault(reader);
+                    }
+                    finally {
+                        traceStream.close();
+                        this.traceResponse(req, traceStream);
                     }
-                    memoryStream.flush();
-                    serviceResponseStream.close();
-                    this.traceResponse(req, memoryStream);
-                    ByteArrayInputStream memoryStreamIn = new ByteArrayInputStream(memoryStream.toByteArray());
-                    EwsServiceXmlReader reader = new EwsServiceXmlReader(memoryStreamIn, this.service);
-                    soapFaultDetails = this.readSoapFault(reader);
-                    memoryStream.close();
                 }
                 else {
                     InputStream serviceResponseStream = ServiceRequestBase.getResponseStream(req);
@@ -687,82 +710,218 @@ protected SoapFaultDetails readSoapFault(EwsServiceXmlReader reader) {
         return soapFaultDetails;
     }
 
+    /**
+     * Waits for the rate limiters of the service before a request is emitted. The permits must be released with
+     * {@link #releaseRateLimiterPermits(ClientRateLimiter.Permit[])} once the response has been read.
+     *
+     * @return The permits taken, one per configured limiter.
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    protected ClientRateLimiter.Permit[] acquireRateLimiterPermits() throws InterruptedException {
+        ClientRateLimiter.Permit[] permits = new ClientRateLimiter.Permit[2];
+        try {
+            ImpersonatedUserId impersonatedUserId = this.service.getImpersonatedUserId();
+            if (this.service.getMailboxRateLimiter() != null && impersonatedUserId != null &&
+                    impersonatedUserId.getId() != null) {
+                permits[0] = this.service.getMailboxRateLimiter().acquire(
+                        impersonatedUserId.getId().toLowerCase(Locale.ROOT));
+            }
+
+            Object credentialKey = this.getCredentialRateLimiterKey();
+            if (this.service.getCredentialRateLimiter() != null && credentialKey != null) {
+                permits[1] = this.service.getCredentialRateLimiter().acquire(credentialKey);
+            }
+            return permits;
+        } catch (InterruptedException e) {
+            releaseRateLimiterPermits(permits);
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the permits taken by {@link #acquireRateLimiterPermits()}.
+     *
+     * @param permits The permits, can be null.
+     */
+    protected static void releaseRateLimiterPermits(ClientRateLimiter.Permit[] permits) {
+        if (permits != null) {
+            for (ClientRateLimiter.Permit permit : permits) {
+                if (permit != null) {
+                    permit.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the key under which the credentials of the service are rate limited. Web credentials are keyed by
+     * account, so that services created with equal credentials share a limit.
+     *
+     * @return The key, or null if the service has no credentials.
+     */
+    private Object getCredentialRateLimiterKey() {
+        ExchangeCredentials credentials = this.service.getCredentials();
+        if (credentials instanceof WebCredentials) {
+            WebCredentials webCredentials = (WebCredentials) credentials;
+            String domain = webCredentials.getDomain() != null ? webCredentials.getDomain() : "";
+            return (domain + "\\" + webCredentials.getUser()).toLowerCase(Locale.ROOT);
+        }
+        return credentials;
+    }
+
     /**
      * Validates request parameters, and emits the request to the server.
      *
      * @return The response returned by the server.
      */
     protected HttpWebRequest validateAndEmitRequest() throws ServiceLocalException, Exception {
+        long startNanos = System.nanoTime();
         this.validate();
+        if (this.metrics != null) {
+            this.metrics.setDuration(RequestPhase.Validate, System.nanoTime() - startNanos);
+        }
 
         HttpWebRequest request = this.buildEwsHttpWebRequest();
+        this.webRequest = request;
+
+        boolean emitted = false;
+        long executeNanos = 0;
         try {
-            return this.getEwsHttpWebResponse(request);
+            if (this.aborted) {
+                throw new ServiceRequestCancelledException(Strings.ServiceRequestCancelled);
+            }
+
+            executeNanos = System.nanoTime();
+            HttpWebRequest response = this.getEwsHttpWebResponse(request);
+            this.recordExchange(request, executeNanos);
+            emitted = true;
+            return response;
         } catch (HttpErrorException e) {
+            this.recordExchange(request, executeNanos);
             processWebException(e, request);
 
             // Wrap exception if the above code block didn't throw
             throw new ServiceRequestException(String.format(Strings.ServiceRequestFailed, e.getMessage()), e);
+        } finally {
+            if (!emitted) {
+                // Release the connection, the caller only closes requests it got back.
+                request.close();
+            }
         }
     }
 
     /**
-     * <summary> Builds the HttpWebRequest object for current service request with exception handling.
+     * Records the phases of the HTTP exchange in the metrics of the attempt, once the response headers have been
+     * received. The time the request body was sent splits connecting and authenticating from waiting for the
+     * server; when the HttpWebRequest does not record it, the whole exchange counts as waiting for the server.
      *
-     * @returns An IEwsHttpWebRequest instance
+     * @param request      The HttpWebRequest.
+     * @param executeNanos The time the exchange started, in System.nanoTime() terms.
      */
-    protected HttpWebRequest buildEwsHttpWebRequest() throws Exception {
-        HttpWebRequest request = null;
-
-        try {
-            request = this.getService().prepareHttpWebRequest();
-            AsyncExecutor ae = new AsyncExecutor();
-
-            // ExecutorService es = CallableSingleTon.getExecutor();
-            Callable getStream = new GetStream(request, "getOutputStream");
-            Future task = ae.submit(getStream, null);
-            ae.shutdown();
-            this.getService().traceHttpRequestHeaders(TraceFlags.EwsRequestHttpHeaders, request);
-
-            boolean needSignature =
-                    this.getService().getCredentials() != null && this.getService().getCredentials().isNeedSignature();
-            boolean needTrace = this.getService().isTraceEnabledFor(TraceFlags.EwsRequest);
-
-            /*
-             * If tracing is enabled, we generate the request in-memory so that
-             * we can pass it along to the ITraceListener. Then we copy the
-             * stream to the request stream.
-             */
-
-            ByteArrayOutputStream memoryStream = new ByteArrayOutputStream();
+    private void recordExchange(HttpWebRequest request, long executeNanos) {
+        RequestMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return;
+        }
+
+        long responseNanos = System.nanoTime();
+        long bodyStartNanos = request.getRequestBodyStartNanos();
+        long bodySentNanos = request.getRequestBodySentNanos();
+        if (bodySentNanos != 0 && bodyStartNanos - executeNanos >= 0) {
+            metrics.setDuration(RequestPhase.ConnectAndAuthenticate, bodyStartNanos - executeNanos);
+            metrics.setDuration(RequestPhase.ServerWait, responseNanos - bodySentNanos);
+            if (metrics.getDuration(RequestPhase.Serialize, TimeUnit.NANOSECONDS) < 0) {
+                // The request was streamed, it was serialized while it was sent.
+                metrics.setDuration(RequestPhase.Serialize, bodySentNanos - bodyStartNanos);
+            }
+            metrics.setRequestBytes(request.getRequestBodyLength());
+        }
+        else {
+            metrics.setDuration(RequestPhase.ServerWait, responseNanos - executeNanos);
+        }
+        metrics.setDuration(RequestPhase.FirstByte, responseNanos - metrics.getStartNanos());
+    }
 
-            EwsServiceXmlWriter writer = new EwsServiceXmlWriter(this.getService(), memoryStream);
+    /**
+     * Gets the metrics of the attempt in progress.
+     *
+     * @return The metrics, null if metrics are not recorded.
+     */
+    RequestMetrics getMetrics() {
+        return this.metrics;
+    }
 
-            writer.setRequireWSSecurityUtilityNamespace(needSignature);
-            this.writeToXml(writer);
+    /**
+     * Sets the metrics of the attempt in progress.
+     *
+     * @param metrics The metrics, null not to record metrics.
+     */
+    void setMetrics(RequestMetrics metrics) {
+        this.metrics = metrics;
+    }
 
-            if (needSignature || needTrace) {
-                if (needSignature) {
-                    this.service.getCredentials().sign(memoryStream);
-                }
+    /**
+     * Aborts this request. The HTTP exchange in progress is aborted, which fails the thread executing it right away
+     * and releases its connection, and no further attempts are made.
+     */
+    protected void abort() {
+        this.aborted = true;
+        HttpWebRequest request = this.webRequest;
+        if (request != null) {
+            request.abort();
+        }
+    }
 
-                if (needTrace) {
-                    this.getService().traceXml(TraceFlags.EwsRequest, memoryStream);
-                }
+    /**
+     * Gets a value indicating whether this request has been aborted.
+     *
+     * @return true if this request has been aborted
+     */
+    protected boolean isAborted() {
+        return this.aborted;
+    }
 
-                ByteArrayOutputStream serviceRequestStream = (ByteArrayOutputStream) this.getWebRequestStream(task);
-                {
-                    EwsUtilities.copyStream(memoryStream, serviceRequestStream);
-                }
+    /**
+     * Gets the deadline of this request, the one in effect on the thread that created it.
+     *
+     * @return The deadline, or null if there is none.
+     */
+    protected RequestDeadline getDeadline() {
+        return this.deadline;
+    }
 
-            } else {
-                ByteArrayOutputStream requestStream = this.getWebRequestStream(task);
+    /**
+     * Gets the timeout of the next attempt of this request, in milliseconds: the timeout of its operation, shortened
+     * to the time left until its deadline.
+     *
+     * @return The timeout.
+     * @throws ServiceRequestTimeoutException if the deadline has passed
+     */
+    private int getRequestTimeoutMilliseconds() {
+        int timeout = this.service.getOperationTimeout(this.getXmlElementName());
+        if (this.deadline != null) {
+            if (this.deadline.isExpired()) {
+                throw new ServiceRequestTimeoutException(Strings.ServiceRequestDeadlineExceeded);
+            }
+            timeout = (int) Math.max(1, Math.min(timeout, this.deadline.getRemainingMilliseconds()));
+        }
+        return timeout;
+    }
 
-                EwsServiceXmlWriter writer1 = new EwsServiceXmlWriter(this.getService(), requestStream);
+    /**
+     * <summary> Builds the HttpWebRequest object for current service request with exception handling.
+     *
+     * @returns An IEwsHttpWebRequest instance
+     */
+    protected HttpWebRequest buildEwsHttpWebRequest() throws Exception {
+        HttpWebRequest request = null;
 
-                this.writeToXml(writer1);
+        try {
+            request = this.getService().prepareHttpWebRequest();
+            request.setTimeout(this.getRequestTimeoutMilliseconds());
+            this.getService().traceHttpRequestHeaders(TraceFlags.EwsRequestHttpHeaders, request);
 
-            }
+            this.writeToRequest(request);
 
             return request;
         } catch (IOException e) {
@@ -0,0 +1,50 @@
+/**************************************************************************
+ * copyright file="ServiceRequestCancelledException.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the ServiceRequestCancelledException.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Represents an error that occurs when a service request is cancelled before it completed. The HTTP exchange of the
+ * request has been aborted and its connection has been released.
+ * <p/>
+ * The exception extends CancellationException, so a future completed with it reports itself as cancelled.
+ */
+public class ServiceRequestCancelledException extends CancellationException {
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * ServiceRequestCancelledException Constructor.
+     */
+    public ServiceRequestCancelledException() {
+        super();
+    }
+
+    /**
+     * ServiceRequestCancelledException Constructor.
+     *
+     * @param message the message
+     */
+    public ServiceRequestCancelledException(String message) {
+        super(message);
+    }
+
+    /**
+     * ServiceRequestCancelledException Constructor.
+     *
+     * @param message        the message
+     * @param innerException the inner exception
+     */
+    public ServiceRequestCancelledException(String message, Throwable innerException) {
+        super(message);
+        this.initCause(innerException);
+    }
+}
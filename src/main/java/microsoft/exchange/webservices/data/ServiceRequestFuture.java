@@ -0,0 +1,89 @@
+/**************************************************************************
+ * copyright file="ServiceRequestFuture.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the ServiceRequestFuture.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Represents the future of an async service request. Cancelling the future aborts the HTTP exchange of the request,
+ * and completes the future with a {@link ServiceRequestCancelledException}.
+ *
+ * @param <T> The type of the result.
+ */
+class ServiceRequestFuture<T> extends CompletableFuture<T> {
+
+    /**
+     * The request this future is the result of.
+     */
+    private final ServiceRequestBase serviceRequest;
+
+    /**
+     * Initializes a new instance of the ServiceRequestFuture class.
+     *
+     * @param serviceRequest The service request.
+     */
+    ServiceRequestFuture(ServiceRequestBase serviceRequest) {
+        this.serviceRequest = serviceRequest;
+    }
+
+    /**
+     * Cancels the request, aborting its HTTP exchange if it is in progress.
+     *
+     * @param mayInterruptIfRunning ignored, the request is aborted rather than interrupted
+     * @return true if this future is cancelled
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled =
+                this.completeExceptionally(new ServiceRequestCancelledException(Strings.ServiceRequestCancelled));
+        if (cancelled) {
+            this.serviceRequest.abort();
+        }
+        return cancelled || this.isCancelled();
+    }
+
+    /**
+     * Returns a future that completes with the result of the given function. Unlike thenApply, cancelling the
+     * returned future cancels the request as well.
+     *
+     * @param function The function to apply to the result.
+     * @param <U>      The type of the returned future.
+     * @return The future.
+     */
+    <U> ServiceRequestFuture<U> map(final Function<? super T, ? extends U> function) {
+        final ServiceRequestFuture<U> result = new ServiceRequestFuture<U>(this.serviceRequest);
+        this.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T value, Throwable exception) {
+                if (exception != null) {
+                    result.completeExceptionally(unwrap(exception));
+                    return;
+                }
+                try {
+                    result.complete(function.apply(value));
+                } catch (Throwable e) {
+                    result.completeExceptionally(unwrap(e));
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Unwraps the exception a function wrapped in a CompletionException to get past the Function signature.
+     *
+     * @param exception The exception.
+     * @return The cause of a CompletionException, or the exception itself.
+     */
+    private static Throwable unwrap(Throwable exception) {
+        return exception instanceof CompletionException && exception.getCause() != null ?
+                exception.getCause() : exception;
+    }
+}
@@ -0,0 +1,44 @@
+/**************************************************************************
+ * copyright file="ServiceRequestTimeoutException.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the ServiceRequestTimeoutException.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+/**
+ * Represents an error that occurs when a service request does not complete before its {@link RequestDeadline}.
+ */
+public class ServiceRequestTimeoutException extends ServiceRequestCancelledException {
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * ServiceRequestTimeoutException Constructor.
+     */
+    public ServiceRequestTimeoutException() {
+        super();
+    }
+
+    /**
+     * ServiceRequestTimeoutException Constructor.
+     *
+     * @param message the message
+     */
+    public ServiceRequestTimeoutException(String message) {
+        super(message);
+    }
+
+    /**
+     * ServiceRequestTimeoutException Constructor.
+     *
+     * @param message        the message
+     * @param innerException the inner exception
+     */
+    public ServiceRequestTimeoutException(String message, Throwable innerException) {
+        super(message, innerException);
+    }
+}
@@ -0,0 +1,54 @@
+/**************************************************************************
+ * copyright file="ServiceTimer.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the ServiceTimer.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timer shared by all services, on which retries of throttled requests and the deadlines of requests in
+ * progress are scheduled. Its tasks only hand work off or abort requests, so a single thread serves them all.
+ */
+final class ServiceTimer {
+
+    /**
+     * The timer.
+     */
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ews-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    static {
+        // Most deadlines are cancelled long before they are due, don't keep them queued until then.
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Prevents a default instance of the ServiceTimer class from being created.
+     */
+    private ServiceTimer() {
+    }
+
+    /**
+     * Schedules a task on the timer.
+     *
+     * @param task              The task to run.
+     * @param delayMilliseconds The delay, in milliseconds.
+     * @return The scheduled task.
+     */
+    static ScheduledFuture<?> schedule(Runnable task, long delayMilliseconds) {
+        return timer.schedule(task, delayMilliseconds, TimeUnit.MILLISECONDS);
+    }
+}
@@ -11,9 +11,10 @@
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.BiConsumer;
 
 
 /**
@@ -37,17 +38,256 @@ protected SimpleServiceRequestBase(ExchangeService service) throws Exception {
      * @throws ServiceLocalException
      */
     protected Object internalExecute() throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            Object serviceResponse = null;
+            ServiceRequestException exception = null;
+            try {
+                serviceResponse = this.executeOnce(attempt);
+            } catch (ServiceRequestException e) {
+                exception = e;
+            }
+
+            long delay = this.getRetryDelay(attempt, serviceResponse, exception);
+            if (delay < 0) {
+                if (exception != null) {
+                    throw exception;
+                }
+                return serviceResponse;
+            }
+            Thread.sleep(delay);
+        }
+    }
+
+    /**
+     * Executes this request on the async executor of the service. A throttled request is retried from the shared
+     * timer of the throttling retry policy, so no thread waits while the request backs off. Cancelling the future
+     * aborts the request.
+     *
+     * @return A future that completes with the response.
+     */
+    protected ServiceRequestFuture<Object> internalExecuteAsync() {
+        ServiceRequestFuture<Object> future = new ServiceRequestFuture<Object>(this);
+        this.submitAttempt(future, 0);
+        return future;
+    }
+
+    /**
+     * Submits an attempt to execute this request to the async executor of the service.
+     *
+     * @param future  The future to complete.
+     * @param attempt The number of retries made so far.
+     */
+    private void submitAttempt(final ServiceRequestFuture<Object> future, final int attempt) {
+        try {
+            this.getService().getAsyncExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    executeAttempt(future, attempt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Executes this request once and completes the future, or schedules a retry if the request was throttled.
+     *
+     * @param future  The future to complete.
+     * @param attempt The number of retries made so far.
+     */
+    private void executeAttempt(final ServiceRequestFuture<Object> future, final int attempt) {
+        if (future.isDone() || this.isAborted()) {
+            // Cancelled while waiting for a thread.
+            future.completeExceptionally(new ServiceRequestCancelledException(Strings.ServiceRequestCancelled));
+            return;
+        }
+
+        try {
+            Object serviceResponse = null;
+            ServiceRequestException exception = null;
+            try {
+                serviceResponse = this.executeOnce(attempt);
+            } catch (ServiceRequestException e) {
+                exception = e;
+            }
+
+            long delay = this.getRetryDelay(attempt, serviceResponse, exception);
+            if (this.isAborted()) {
+                future.completeExceptionally(new ServiceRequestCancelledException(Strings.ServiceRequestCancelled,
+                        exception));
+            } else if (delay >= 0) {
+                ThrottlingRetryPolicy.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        submitAttempt(future, attempt + 1);
+                    }
+                }, delay);
+            } else if (exception != null) {
+                future.completeExceptionally(exception);
+            } else {
+                future.complete(serviceResponse);
+            }
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Gets the delay before a throttled request is retried.
+     *
+     * @param attempt         The number of retries made so far.
+     * @param serviceResponse The response, null if the request failed.
+     * @param exception       The exception the request failed with, null if it succeeded.
+     * @return The delay in milliseconds, or -1 if the request is not to be retried.
+     */
+    private long getRetryDelay(int attempt, Object serviceResponse, ServiceRequestException exception) {
+        ThrottlingRetryPolicy retryPolicy = this.getService().getThrottlingRetryPolicy();
+        if (retryPolicy == null) {
+            return -1;
+        }
+
+        long backOffMilliseconds = exception != null ? ThrottlingRetryPolicy.getBackOffMilliseconds(exception) :
+                this.getThrottledBackOffMilliseconds(serviceResponse);
+        if (backOffMilliseconds < 0) {
+            return -1;
+        }
+
+        long delay = retryPolicy.nextRetryDelay(this.getXmlElementName(), attempt, backOffMilliseconds);
+        RequestDeadline deadline = this.getDeadline();
+        if (delay >= 0 && deadline != null && delay >= deadline.getRemainingMilliseconds()) {
+            // The retry could not complete in time, fail with the throttling error instead.
+            return -1;
+        }
+        if (delay >= 0) {
+            logger.debug("{} was throttled by the server, retrying in {} ms", this.getXmlElementName(), delay);
+        }
+        return delay;
+    }
+
+    /**
+     * Gets the back-off hint of a response the server throttled as a whole. Only such responses are retried, as
+     * retrying a partly processed request would apply its other parts twice.
+     *
+     * @param serviceResponse The response.
+     * @return The BackOffMilliseconds hint, or -1 if the response was not throttled.
+     */
+    protected long getThrottledBackOffMilliseconds(Object serviceResponse) {
+        return -1;
+    }
+
+    /**
+     * Executes this request once.
+     *
+     * @param attempt The number of retries made so far.
+     * @return The response.
+     * @throws Exception
+     */
+    private Object executeOnce(int attempt) throws Exception {
         HttpWebRequest response = null;
+        ClientRateLimiter.Permit[] permits = null;
+        ScheduledFuture<?> watchdog = null;
+        Object requestEvent = EwsFlightRecorder.beginRequest();
+        RequestMetrics metrics = this.startMetrics(attempt, requestEvent != null);
         try {
+            permits = this.acquireRateLimiterPermits();
+            watchdog = this.scheduleDeadline();
             response = this.validateAndEmitRequest();
-            return this.readResponse(response);
+
+            long parseNanos = System.nanoTime();
+            Object serviceResponse = this.readResponse(response);
+            if (metrics != null) {
+                metrics.setDuration(RequestPhase.Parse, System.nanoTime() - parseNanos);
+                metrics.setResponse(serviceResponse);
+            }
+            return serviceResponse;
         } catch (Exception e) {
+            if (metrics != null) {
+                metrics.setException(e);
+            }
+            if (this.getDeadline() != null && this.getDeadline().isExpired()) {
+                throw new ServiceRequestTimeoutException(Strings.ServiceRequestDeadlineExceeded, e);
+            }
             throw new ServiceRequestException(String.format(Strings.ServiceRequestFailed, e.getMessage()), e);
         } finally {
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
             if (response != null) {
                 response.close();
             }
+            releaseRateLimiterPermits(permits);
+            this.completeMetrics(metrics, requestEvent);
+        }
+    }
+
+    /**
+     * Starts recording the metrics of an attempt, if the service has a request metrics listener or the attempt is
+     * recorded by the flight recorder.
+     *
+     * @param attempt  The number of retries made so far.
+     * @param recorded Whether the attempt is recorded by the flight recorder.
+     * @return The metrics, null if metrics are not recorded.
+     */
+    private RequestMetrics startMetrics(int attempt, boolean recorded) {
+        RequestMetrics metrics = null;
+        if (recorded || this.getService().getRequestMetricsListener() != null) {
+            ImpersonatedUserId impersonatedUserId = this.getService().getImpersonatedUserId();
+            metrics = new RequestMetrics(this.getXmlElementName(),
+                    impersonatedUserId != null ? impersonatedUserId.getId() : null, attempt);
         }
+        this.setMetrics(metrics);
+        return metrics;
+    }
+
+    /**
+     * Passes the metrics of an attempt to the request metrics listener of the service and the flight recorder.
+     *
+     * @param metrics      The metrics, null if metrics are not recorded.
+     * @param requestEvent The flight recorder event of the attempt, null if it is not recorded.
+     */
+    private void completeMetrics(RequestMetrics metrics, Object requestEvent) {
+        if (metrics == null) {
+            return;
+        }
+
+        this.setMetrics(null);
+        metrics.setDuration(RequestPhase.Total, System.nanoTime() - metrics.getStartNanos());
+        IRequestMetricsListener listener = this.getService().getRequestMetricsListener();
+        if (listener != null) {
+            try {
+                listener.requestCompleted(metrics);
+            } catch (RuntimeException e) {
+                logger.warn("The request metrics listener failed", e);
+            }
+        }
+        EwsFlightRecorder.endRequest(requestEvent, metrics);
+    }
+
+    /**
+     * Schedules the abort of this request at its deadline, so that a request stuck in sending, waiting for or
+     * reading the response does not outlive it. The socket timeouts alone cannot ensure this, as they apply to each
+     * read rather than to the exchange as a whole.
+     *
+     * @return The scheduled abort, null if this request has no deadline.
+     * @throws ServiceRequestTimeoutException if the deadline has passed
+     */
+    private ScheduledFuture<?> scheduleDeadline() {
+        RequestDeadline deadline = this.getDeadline();
+        if (deadline == null) {
+            return null;
+        }
+        if (deadline.isExpired()) {
+            throw new ServiceRequestTimeoutException(Strings.ServiceRequestDeadlineExceeded);
+        }
+
+        return ServiceTimer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                logger.debug("{} did not complete before its deadline, aborting it", getXmlElementName());
+                abort();
+            }
+        }, deadline.getRemainingMilliseconds());
     }
 
     /**
@@ -57,19 +297,14 @@ protected Object internalExecute() throws Exception {
      * @returns Service response object.
      */
     protected Object endInternalExecute(IAsyncResult asyncResult) throws Exception {
-        // We have done enough validation before
-        // AsyncRequestResult asyncRequestResult =
-        // (AsyncRequestResult)asyncResult;
-        /*
-		 * HttpWebRequest request =((AsyncRequestResult)
-		 * asyncResult).getHttpWebRequest(); OutParam<HttpWebRequest> outparam =
-		 * new OutParam<HttpWebRequest>(); outparam.setParam(request);
-		 */
-        FutureTask task = ((AsyncRequestResult) asyncResult).getTask();
-        // HttpWebRequest response = this.endGetEwsHttpWebResponse(outparam,
-        // (AsyncRequestResult) asyncRequestResult.getWebAsyncResult());*/
-        HttpWebRequest response = (HttpWebRequest) asyncResult.get();
-        return this.readResponse(response);
+        try {
+            return asyncResult.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
     }
 
     /**
@@ -79,27 +314,22 @@ protected Object endInternalExecute(IAsyncResult asyncResult) throws Exception {
      * @param state    An object that contains state information for this request.
      * @returns An IAsyncResult that references the asynchronous request.
      */
-    protected AsyncRequestResult beginExecute(AsyncCallback callback, Object state) throws Exception {
+    protected AsyncRequestResult beginExecute(final AsyncCallback callback, Object state) throws Exception {
         this.validate();
 
-        HttpWebRequest request = this.buildEwsHttpWebRequest();
-
-        WebAsyncCallStateAnchor wrappedState =
-                new WebAsyncCallStateAnchor(this, request, callback /* user callback */, state /*user state*/);
-
-        AsyncExecutor es = new AsyncExecutor();
-        Callable cl = new CallableMethod(request);
-        Future task = es.submit(cl, callback);
-        es.shutdown();
-        AsyncRequestResult ft = new AsyncRequestResult(this, request, task, null);
+        ServiceRequestFuture<Object> future = this.internalExecuteAsync();
+        final AsyncRequestResult asyncResult = new AsyncRequestResult(this, future, state);
 
-        // ct.setAsyncRequest();
-        // webAsyncResult =
-        // request.beginGetResponse(SimpleServiceRequestBase.webRequestAsyncCallback(webAsyncResult),
-        // wrappedState);
-        return ft;
-        // return new AsyncRequestResult(this, request, webAsyncResult, state /*
-        // user state */);
+        if (callback != null) {
+            callback.setTask(asyncResult);
+            future.whenComplete(new BiConsumer<Object, Throwable>() {
+                @Override
+                public void accept(Object serviceResponse, Throwable exception) {
+                    callback.processMe(asyncResult);
+                }
+            });
+        }
+        return asyncResult;
     }
 
     /**
@@ -118,39 +348,44 @@ private Object readResponse(HttpWebRequest response) throws Exception {
         }
 
         /**
-         * If tracing is enabled, we read the entire response into a
-         * MemoryStream so that we can pass it along to the ITraceListener. Then
-         * we parse the response from the MemoryStream.
+         * If tracing is enabled, the response is parsed through a stream that
+         * keeps a copy of it, which is passed along to the ITraceListener once
+         * the response has been read.
          */
 
         try {
             this.getService().processHttpResponseHeaders(TraceFlags.EwsResponseHttpHeaders, response);
 
-            if (this.getService().isTraceEnabledFor(TraceFlags.EwsResponse)) {
-                ByteArrayOutputStream memoryStream = new ByteArrayOutputStream();
-                InputStream serviceResponseStream = ServiceRequestBase.getResponseStream(response);
-                while (true) {
-                    int data = serviceResponseStream.read();
-                    if (-1 == data) {
-                        break;
+            RequestMetrics metrics = this.getMetrics();
+            InputStream responseStream = ServiceRequestBase.getResponseStream(response);
+            CountingInputStream countingStream = null;
+            if (metrics != null) {
+                countingStream = new CountingInputStream(responseStream);
+                responseStream = countingStream;
+            }
+
+            try {
+                if (this.getService().isTraceEnabledFor(TraceFlags.EwsResponse)) {
+                    ResponseTraceStream traceStream = new ResponseTraceStream(
+                            responseStream, this.getService().getTraceBodyLimit());
+                    try {
+                        EwsServiceXmlReader ewsXmlReader = new EwsServiceXmlReader(traceStream, this.getService());
+                        serviceResponse = this.readResponse(ewsXmlReader);
                     }
-                    else {
-                        memoryStream.write(data);
+                    finally {
+                        traceStream.close();
+                        this.traceResponse(response, traceStream);
                     }
                 }
-
-                this.traceResponse(response, memoryStream);
-                ByteArrayInputStream memoryStreamIn = new ByteArrayInputStream(memoryStream.toByteArray());
-                EwsServiceXmlReader ewsXmlReader = new EwsServiceXmlReader(memoryStreamIn, this.getService());
-                serviceResponse = this.readResponse(ewsXmlReader);
-                serviceResponseStream.close();
-                memoryStream.flush();
+                else {
+                    EwsServiceXmlReader ewsXmlReader = new EwsServiceXmlReader(responseStream, this.getService());
+                    serviceResponse = this.readResponse(ewsXmlReader);
+                }
             }
-            else {
-                InputStream responseStream = ServiceRequestBase.getResponseStream(response);
-                EwsServiceXmlReader ewsXmlReader = new EwsServiceXmlReader(responseStream, this.getService());
-                serviceResponse = this.readResponse(ewsXmlReader);
-
+            finally {
+                if (countingStream != null) {
+                    metrics.setResponseBytes(countingStream.getCount());
+                }
             }
         }
         catch (HttpException e) {
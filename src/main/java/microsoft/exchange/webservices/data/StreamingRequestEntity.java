@@ -0,0 +1,119 @@
+/**************************************************************************
+ * copyright file="StreamingRequestEntity.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the StreamingRequestEntity.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * StreamingRequestEntity writes the request body straight to the connection while the request is executed. The
+ * content length is unknown up front, so HttpClient sends the body with chunked transfer encoding and at most
+ * {@link #BufferSize} bytes of it are held in memory at a time.
+ */
+class StreamingRequestEntity implements RequestEntity {
+
+    /**
+     * The Buffer size.
+     */
+    static final int BufferSize = 8192;
+
+    /**
+     * The writer producing the body.
+     */
+    private final IRequestBodyWriter writer;
+
+    /**
+     * The content type.
+     */
+    private final String contentType;
+
+    /**
+     * The request sending the body, null if it is not recorded.
+     */
+    private final HttpWebRequest request;
+
+    /**
+     * Constructor for StreamingRequestEntity.
+     *
+     * @param writer      the writer producing the body
+     * @param contentType the content type
+     */
+    StreamingRequestEntity(IRequestBodyWriter writer, String contentType) {
+        this(writer, contentType, null);
+    }
+
+    /**
+     * Constructor for StreamingRequestEntity that records when the request sends the body.
+     *
+     * @param writer      the writer producing the body
+     * @param contentType the content type
+     * @param request     the request sending the body, null not to record it
+     */
+    StreamingRequestEntity(IRequestBodyWriter writer, String contentType, HttpWebRequest request) {
+        this.writer = writer;
+        this.contentType = contentType;
+        this.request = request;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    /**
+     * The body is repeatable because the writer produces it again on every call.
+     */
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public void writeRequest(final OutputStream out) throws IOException {
+        final long[] length = new long[1];
+        if (this.request != null) {
+            this.request.onRequestBodyStarted();
+        }
+
+        // HttpClient owns the connection stream, so shield it from being closed by the writer.
+        OutputStream stream = new BufferedOutputStream(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                length[0] += len;
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        }, BufferSize);
+
+        try {
+            this.writer.writeRequestBody(stream);
+        }
+        catch (IOException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        stream.flush();
+        if (this.request != null) {
+            this.request.onRequestBodySent(length[0]);
+        }
+    }
+}
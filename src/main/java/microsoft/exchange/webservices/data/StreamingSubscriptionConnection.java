@@ -11,6 +11,7 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Represents a connection to an ongoing stream of events.
@@ -44,6 +45,12 @@
      */
     private GetStreamingEventsRequest currentHangingRequest;
 
+    /**
+     * Guards the state of this connection. Opening the connection blocks on the network, which a lock does without
+     * pinning the carrier of a virtual thread, unlike a monitor.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
     public interface INotificationEventDelegate {
         /**
          * Represents a delegate that is invoked when notifications are received from the server
@@ -207,11 +214,14 @@ public void addSubscription(StreamingSubscription subscription) throws Exception
         EwsUtilities.validateParam(subscription, "subscription");
         this.validateConnectionState(false, Strings.CannotAddSubscriptionToLiveConnection);
 
-        synchronized (this) {
+        this.lock.lock();
+        try {
             if (this.subscriptions.containsKey(subscription.getId())) {
                 return;
             }
             this.subscriptions.put(subscription.getId(), subscription);
+        } finally {
+            this.lock.unlock();
         }
     }
 
@@ -229,8 +239,11 @@ public void removeSubscription(StreamingSubscription subscription) throws Except
 
         this.validateConnectionState(false, Strings.CannotRemoveSubscriptionFromLiveConnection);
 
-        synchronized (this) {
+        this.lock.lock();
+        try {
             this.subscriptions.remove(subscription.getId());
+        } finally {
+            this.lock.unlock();
         }
     }
 
@@ -242,7 +255,8 @@ public void removeSubscription(StreamingSubscription subscription) throws Except
      * @throws Thrown                when Open is called while connected.
      */
     public void open() throws ServiceLocalException, Exception {
-        synchronized (this) {
+        this.lock.lock();
+        try {
             this.throwIfDisposed();
 
             this.validateConnectionState(false, Strings.CannotCallConnectDuringLiveConnection);
@@ -257,6 +271,8 @@ public void open() throws ServiceLocalException, Exception {
             this.currentHangingRequest.addOnDisconnectEvent(this);
 
             this.currentHangingRequest.internalExecute();
+        } finally {
+            this.lock.unlock();
         }
     }
 
@@ -277,7 +293,8 @@ private void onRequestDisconnect(Object sender, HangingRequestDisconnectEventArg
      * @throws Thrown when Close is called while not connected.
      */
     public void close() {
-        synchronized (this) {
+        this.lock.lock();
+        try {
             try {
                 this.throwIfDisposed();
 
@@ -291,6 +308,8 @@ public void close() {
             catch (Exception e) {
                 e.printStackTrace();
             }
+        } finally {
+            this.lock.unlock();
         }
     }
 
@@ -385,13 +404,16 @@ private void issueSubscriptionFailures(GetStreamingEventsResponse gseResponse) {
         for (String id : gseResponse.getErrorSubscriptionIds()) {
             StreamingSubscription subscription = null;
 
-            synchronized (this) {
+            this.lock.lock();
+            try {
                 // Client can do any good or bad things in the below event
                 // handler
                 if (this.subscriptions != null && this.subscriptions.containsKey(id)) {
                     subscription = this.subscriptions.get(id);
                 }
 
+            } finally {
+                this.lock.unlock();
             }
             if (subscription != null) {
                 SubscriptionErrorEventArgs eventArgs = new SubscriptionErrorEventArgs(subscription, exception);
@@ -405,11 +427,14 @@ private void issueSubscriptionFailures(GetStreamingEventsResponse gseResponse) {
             if (gseResponse.getErrorCode() != ServiceError.ErrorMissedNotificationEvents) {
                 // Client can do any good or bad things in the above event
                 // handler
-                synchronized (this) {
+                this.lock.lock();
+                try {
                     if (this.subscriptions != null && this.subscriptions.containsKey(id)) {
                         // We are no longer servicing the subscription.
                         this.subscriptions.remove(id);
                     }
+                } finally {
+                    this.lock.unlock();
                 }
             }
         }
@@ -441,12 +466,15 @@ private void issueNotificationEvents(GetStreamingEventsResponse gseResponse) {
         for (GetStreamingEventsResults.NotificationGroup events : gseResponse.getResults().getNotifications()) {
             StreamingSubscription subscription = null;
 
-            synchronized (this) {
+            this.lock.lock();
+            try {
                 // Client can do any good or bad things in the below event
                 // handler
                 if (this.subscriptions != null && this.subscriptions.containsKey(events.subscriptionId)) {
                     subscription = this.subscriptions.get(events.subscriptionId);
                 }
+            } finally {
+                this.lock.unlock();
             }
             if (subscription != null) {
                 NotificationEventArgs eventArgs = new NotificationEventArgs(subscription, events.events);
@@ -486,7 +514,8 @@ private void dispose(boolean suppressFinalizer) {
             System.runFinalizersOnExit(false);
         }
 
-        synchronized (this) {
+        this.lock.lock();
+        try {
             if (!this.isDisposed) {
                 if (this.currentHangingRequest != null) {
                     this.currentHangingRequest = null;
@@ -497,6 +526,8 @@ private void dispose(boolean suppressFinalizer) {
 
                 this.isDisposed = true;
             }
+        } finally {
+            this.lock.unlock();
         }
     }
 
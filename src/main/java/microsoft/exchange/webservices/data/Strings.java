@@ -146,6 +146,10 @@ public abstract class Strings {
     public static String InvalidAutodiscoverServiceResponse = "";
     public static String AtLeastOneAttachmentCouldNotBeDeleted = "";
     public static String ServiceRequestFailed = "";
+    public static String ServiceRequestCancelled = "";
+    public static String ServiceRequestDeadlineExceeded = "";
+    public static String VirtualThreadsNotSupported = "";
+    public static String ResponseTraceDropped = "";
     public static String PeriodNotFound = "";
     public static String CannotCallConnectDuringLiveConnection = "";
     public static String SearchParametersRootFolderIdsEmpty = "";
@@ -383,6 +387,10 @@ private static void loadProperties() {
         InvalidAutodiscoverServiceResponse = BUNDLE.getProperty("InvalidAutodiscoverServiceResponse");
         AtLeastOneAttachmentCouldNotBeDeleted = BUNDLE.getProperty("AtLeastOneAttachmentCouldNotBeDeleted");
         ServiceRequestFailed = BUNDLE.getProperty("ServiceRequestFailed");
+        ServiceRequestCancelled = BUNDLE.getProperty("ServiceRequestCancelled");
+        ServiceRequestDeadlineExceeded = BUNDLE.getProperty("ServiceRequestDeadlineExceeded");
+        VirtualThreadsNotSupported = BUNDLE.getProperty("VirtualThreadsNotSupported");
+        ResponseTraceDropped = BUNDLE.getProperty("ResponseTraceDropped");
         PeriodNotFound = BUNDLE.getProperty("PeriodNotFound");
         CannotCallConnectDuringLiveConnection = BUNDLE.getProperty("CannotCallConnectDuringLiveConnection");
         SearchParametersRootFolderIdsEmpty = BUNDLE.getProperty("SearchParametersRootFolderIdsEmpty");
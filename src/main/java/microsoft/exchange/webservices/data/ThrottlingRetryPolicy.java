@@ -0,0 +1,290 @@
+/**************************************************************************
+ * copyright file="ThrottlingRetryPolicy.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the ThrottlingRetryPolicy.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Represents the policy by which requests that Exchange rejects with ErrorServerBusy are retried.
+ * <p/>
+ * The server passes a BackOffMilliseconds hint with the error. A retry is scheduled no sooner than that hint, and
+ * later retries of the same request back off exponentially from the base delay. A random jitter is added on top so
+ * that requests throttled together do not all come back at the same moment. Retries are only made when the server
+ * did not process any part of the request, so a retried request is never applied twice.
+ */
+public class ThrottlingRetryPolicy {
+
+    /**
+     * The name of the error detail holding the back-off hint.
+     */
+    protected static final String BackOffMillisecondsKey = "BackOffMilliseconds";
+
+    /**
+     * The number of retries a request gets, unless set for its operation.
+     */
+    private volatile int maxRetries = 3;
+
+    /**
+     * The number of retries per operation, keyed by the XML element name of the request.
+     */
+    private final Map<String, Integer> maxRetriesPerOperation = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * The delay of the first retry when the server gives no hint, in milliseconds.
+     */
+    private volatile long baseDelayMilliseconds = 1000;
+
+    /**
+     * The longest delay before a retry, in milliseconds.
+     */
+    private volatile long maxDelayMilliseconds = 5 * 60 * 1000;
+
+    /**
+     * The jitter added to a delay, as a fraction of that delay.
+     */
+    private volatile double jitterFactor = 0.2;
+
+    /**
+     * The number of throttled responses.
+     */
+    private final AtomicLong throttledCount = new AtomicLong();
+
+    /**
+     * The number of retries made.
+     */
+    private final AtomicLong retriedCount = new AtomicLong();
+
+    /**
+     * The number of requests that still were throttled after their last retry.
+     */
+    private final AtomicLong exhaustedCount = new AtomicLong();
+
+    /**
+     * Initializes a new instance of the ThrottlingRetryPolicy class.
+     */
+    public ThrottlingRetryPolicy() {
+    }
+
+    /**
+     * Gets the back-off hint of a throttled response.
+     *
+     * @param response The response.
+     * @return The BackOffMilliseconds hint, or -1 if the response was not throttled. A throttled response without a
+     *         hint returns 0.
+     */
+    static long getBackOffMilliseconds(ServiceResponse response) {
+        if (response == null || response.getErrorCode() != ServiceError.ErrorServerBusy) {
+            return -1;
+        }
+
+        String backOff = response.getErrorDetails() != null ?
+                response.getErrorDetails().get(BackOffMillisecondsKey) : null;
+        if (backOff != null) {
+            try {
+                return Math.max(0, Long.parseLong(backOff.trim()));
+            }
+            catch (NumberFormatException e) {
+                // Fall through: throttled, but without a usable hint.
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the back-off hint of a failed request, from the ServiceResponseException in its cause chain.
+     *
+     * @param exception The exception.
+     * @return The BackOffMilliseconds hint, or -1 if the request was not throttled.
+     */
+    static long getBackOffMilliseconds(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ServiceResponseException) {
+                return getBackOffMilliseconds(((ServiceResponseException) cause).getResponse());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Records a throttled response and computes the delay before the next attempt.
+     *
+     * @param operation             The XML element name of the request.
+     * @param attempt               The number of retries made so far for the request.
+     * @param backOffMilliseconds   The hint returned by the server.
+     * @return The delay in milliseconds, or -1 if the request has used up its retries.
+     */
+    protected long nextRetryDelay(String operation, int attempt, long backOffMilliseconds) {
+        this.throttledCount.incrementAndGet();
+
+        if (attempt >= this.getMaxRetries(operation)) {
+            this.exhaustedCount.incrementAndGet();
+            return -1;
+        }
+
+        // The base delay is shifted only as far as it stays positive, as the delay is capped anyway.
+        long baseDelay = this.baseDelayMilliseconds;
+        long maxDelay = this.maxDelayMilliseconds;
+        int shift = Math.min(attempt, 30);
+        long exponential = shift < Long.numberOfLeadingZeros(baseDelay) ? baseDelay << shift : maxDelay;
+        long delay = Math.min(Math.max(backOffMilliseconds, exponential), maxDelay);
+        long jitter = (long) (delay * this.jitterFactor * ThreadLocalRandom.current().nextDouble());
+
+        this.retriedCount.incrementAndGet();
+        return delay + jitter;
+    }
+
+    /**
+     * Schedules a retry on the shared timer, so that no thread is held while the request waits.
+     *
+     * @param retry                The retry to run.
+     * @param delayMilliseconds    The delay, in milliseconds.
+     * @return The scheduled retry.
+     */
+    static ScheduledFuture<?> schedule(Runnable retry, long delayMilliseconds) {
+        return ServiceTimer.schedule(retry, delayMilliseconds);
+    }
+
+    /**
+     * Gets the number of retries a request gets, unless set for its operation. Defaults to 3.
+     *
+     * @return The maximum number of retries.
+     */
+    public int getMaxRetries() {
+        return this.maxRetries;
+    }
+
+    /**
+     * Sets the number of retries a request gets, unless set for its operation.
+     *
+     * @param maxRetries The maximum number of retries.
+     */
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries");
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Gets the number of retries a request for the given operation gets.
+     *
+     * @param operation The XML element name of the request, for example "GetItem".
+     * @return The maximum number of retries.
+     */
+    public int getMaxRetries(String operation) {
+        Integer retries = this.maxRetriesPerOperation.get(operation);
+        return retries != null ? retries : this.maxRetries;
+    }
+
+    /**
+     * Sets the number of retries a request for the given operation gets.
+     *
+     * @param operation  The XML element name of the request, for example "GetItem".
+     * @param maxRetries The maximum number of retries.
+     */
+    public void setMaxRetries(String operation, int maxRetries) {
+        EwsUtilities.EwsAssert(operation != null, "ThrottlingRetryPolicy.setMaxRetries", "operation is null");
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries");
+        }
+        this.maxRetriesPerOperation.put(operation, maxRetries);
+    }
+
+    /**
+     * Gets the delay of the first retry when the server gives no hint, in milliseconds. Defaults to 1000.
+     *
+     * @return The base delay.
+     */
+    public long getBaseDelayMilliseconds() {
+        return this.baseDelayMilliseconds;
+    }
+
+    /**
+     * Sets the delay of the first retry when the server gives no hint, in milliseconds.
+     *
+     * @param baseDelayMilliseconds The base delay.
+     */
+    public void setBaseDelayMilliseconds(long baseDelayMilliseconds) {
+        if (baseDelayMilliseconds < 1) {
+            throw new IllegalArgumentException("baseDelayMilliseconds");
+        }
+        this.baseDelayMilliseconds = baseDelayMilliseconds;
+    }
+
+    /**
+     * Gets the longest delay before a retry, in milliseconds. Defaults to five minutes.
+     *
+     * @return The maximum delay.
+     */
+    public long getMaxDelayMilliseconds() {
+        return this.maxDelayMilliseconds;
+    }
+
+    /**
+     * Sets the longest delay before a retry, in milliseconds.
+     *
+     * @param maxDelayMilliseconds The maximum delay.
+     */
+    public void setMaxDelayMilliseconds(long maxDelayMilliseconds) {
+        if (maxDelayMilliseconds < 1) {
+            throw new IllegalArgumentException("maxDelayMilliseconds");
+        }
+        this.maxDelayMilliseconds = maxDelayMilliseconds;
+    }
+
+    /**
+     * Gets the jitter added to a delay, as a fraction of that delay. Defaults to 0.2.
+     *
+     * @return The jitter factor.
+     */
+    public double getJitterFactor() {
+        return this.jitterFactor;
+    }
+
+    /**
+     * Sets the jitter added to a delay, as a fraction of that delay.
+     *
+     * @param jitterFactor The jitter factor, 0 to disable jitter.
+     */
+    public void setJitterFactor(double jitterFactor) {
+        if (jitterFactor < 0) {
+            throw new IllegalArgumentException("jitterFactor");
+        }
+        this.jitterFactor = jitterFactor;
+    }
+
+    /**
+     * Gets the number of responses that were throttled.
+     *
+     * @return The throttled count.
+     */
+    public long getThrottledCount() {
+        return this.throttledCount.get();
+    }
+
+    /**
+     * Gets the number of retries that were made.
+     *
+     * @return The retried count.
+     */
+    public long getRetriedCount() {
+        return this.retriedCount.get();
+    }
+
+    /**
+     * Gets the number of requests that were still throttled after their last retry.
+     *
+     * @return The exhausted count.
+     */
+    public long getExhaustedCount() {
+        return this.exhaustedCount.get();
+    }
+}
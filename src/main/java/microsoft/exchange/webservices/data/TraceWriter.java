@@ -0,0 +1,106 @@
+/**************************************************************************
+ * copyright file="TraceWriter.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the TraceWriter.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The thread shared by all services, on which traced responses are formatted and passed to the trace listeners, so
+ * the requests don't wait for it. The traces queued are bounded by the bytes they hold: a trace that would take them
+ * past MaxRetainedBytes is dropped and counted, rather than written on the request thread.
+ */
+final class TraceWriter {
+
+    /**
+     * The number of bytes the queued traces may hold.
+     */
+    private static final long MaxRetainedBytes = 32L * 1024 * 1024;
+
+    /**
+     * The number of bytes held by the traces queued or being written.
+     */
+    private static final AtomicLong retainedBytes = new AtomicLong();
+
+    /**
+     * The number of traces dropped.
+     */
+    private static final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * The writer.
+     */
+    private static final ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ews-trace");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        writer.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Prevents a default instance of the TraceWriter class from being created.
+     */
+    private TraceWriter() {
+    }
+
+    /**
+     * Writes a trace on the writer thread, unless the queued traces already hold too many bytes. A trace larger
+     * than MaxRetainedBytes is still queued when no other trace is.
+     *
+     * @param task     The task writing the trace.
+     * @param retained The number of bytes the task holds until it has run.
+     * @return false if the trace was dropped
+     */
+    static boolean execute(final Runnable task, final long retained) {
+        long total = retainedBytes.addAndGet(retained);
+        if (total > MaxRetainedBytes && total != retained) {
+            retainedBytes.addAndGet(-retained);
+            droppedCount.incrementAndGet();
+            return false;
+        }
+
+        try {
+            writer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    }
+                    finally {
+                        retainedBytes.addAndGet(-retained);
+                    }
+                }
+            });
+            return true;
+        }
+        catch (RejectedExecutionException e) {
+            retainedBytes.addAndGet(-retained);
+            droppedCount.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Gets the number of traces dropped because the queued traces held too many bytes.
+     *
+     * @return The dropped count.
+     */
+    static long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
@@ -14,10 +14,21 @@
 @SuppressWarnings("ALL")
 class XMLNodeType implements XMLStreamConstants {
 
+    /**
+     * The shared instances, per node type.
+     */
+    private static final XMLNodeType[] nodeTypes = new XMLNodeType[XMLStreamConstants.END_DOCUMENT + 16];
+
+    static {
+        for (int i = 0; i < nodeTypes.length; i++) {
+            nodeTypes[i] = new XMLNodeType(i);
+        }
+    }
+
     /**
      * The node type.
      */
-    int nodeType;
+    final int nodeType;
 
     /**
      * Instantiates a new xML node type.
@@ -55,12 +66,13 @@ public String toString() {
     }
 
     /**
-     * Sets the node type.
+     * Gets the shared instance of a node type.
      *
-     * @param nodeType the new node type
+     * @param nodeType the node type
+     * @return the instance
      */
-    public void setNodeType(int nodeType) {
-        this.nodeType = nodeType;
+    static XMLNodeType valueOf(int nodeType) {
+        return nodeType >= 0 && nodeType < nodeTypes.length ? nodeTypes[nodeType] : new XMLNodeType(nodeType);
     }
 
     /**
@@ -0,0 +1,452 @@
+/**************************************************************************
+ * copyright file="EwsFlightRecorder.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the EwsFlightRecorder.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLSession;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits the Java Flight Recorder events of the service requests, the HTTP transport, the streaming subscription
+ * connections and the XML parsing, so a recording can tie GC pressure and thread stalls to EWS operations and
+ * mailboxes.
+ * <p/>
+ * This is the Java 11 version of the class, which emits the events in the "EWS" category. An event is only allocated
+ * when its type is enabled in a running recording, so the events cost a volatile read when nothing is recorded. A
+ * begin method returns null when its event is not recorded, and the matching end method ignores a null event.
+ */
+final class EwsFlightRecorder {
+
+    /**
+     * The type of the request events.
+     */
+    private static final EventType RequestType = EventType.getEventType(RequestEvent.class);
+
+    /**
+     * The type of the parse events.
+     */
+    private static final EventType ParseType = EventType.getEventType(ParseEvent.class);
+
+    /**
+     * The type of the connection acquire events.
+     */
+    private static final EventType ConnectionAcquireType = EventType.getEventType(ConnectionAcquireEvent.class);
+
+    /**
+     * The type of the NTLM handshake events.
+     */
+    private static final EventType NtlmHandshakeType = EventType.getEventType(NtlmHandshakeEvent.class);
+
+    /**
+     * The type of the TLS handshake events.
+     */
+    private static final EventType TlsHandshakeType = EventType.getEventType(TlsHandshakeEvent.class);
+
+    /**
+     * The type of the streaming frame events.
+     */
+    private static final EventType StreamingFrameType = EventType.getEventType(StreamingFrameEvent.class);
+
+    /**
+     * The type of the streaming disconnect events.
+     */
+    private static final EventType StreamingDisconnectType = EventType.getEventType(StreamingDisconnectEvent.class);
+
+    /**
+     * Prevents a default instance of the EwsFlightRecorder class from being created.
+     */
+    private EwsFlightRecorder() {
+    }
+
+    /**
+     * Begins the event of an attempt of a service request.
+     *
+     * @return The event, null if it is not recorded.
+     */
+    static Object beginRequest() {
+        if (!RequestType.isEnabled()) {
+            return null;
+        }
+        RequestEvent event = new RequestEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits the event of an attempt of a service request.
+     *
+     * @param event   The event, can be null.
+     * @param metrics The metrics of the attempt.
+     */
+    static void endRequest(Object event, RequestMetrics metrics) {
+        if (event == null) {
+            return;
+        }
+        RequestEvent requestEvent = (RequestEvent) event;
+        requestEvent.end();
+        if (requestEvent.shouldCommit()) {
+            requestEvent.operation = metrics.getOperation();
+            requestEvent.impersonatedMailbox = metrics.getImpersonatedMailbox();
+            requestEvent.attempt = metrics.getAttempt();
+            requestEvent.requestBytes = metrics.getRequestBytes();
+            requestEvent.responseBytes = metrics.getResponseBytes();
+            requestEvent.serverWait = metrics.getDuration(RequestPhase.ServerWait, TimeUnit.NANOSECONDS);
+            requestEvent.result = metrics.getResult().toString();
+            requestEvent.errorCode = metrics.getErrorCode() != null ? metrics.getErrorCode().toString() : null;
+            requestEvent.exception = metrics.getException() != null ? metrics.getException().toString() : null;
+            requestEvent.commit();
+        }
+    }
+
+    /**
+     * Begins the event of the parsing of a response.
+     *
+     * @return The event, null if it is not recorded.
+     */
+    static Object beginParse() {
+        if (!ParseType.isEnabled()) {
+            return null;
+        }
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits the event of the parsing of a response.
+     *
+     * @param event     The event, can be null.
+     * @param operation The name of the operation.
+     */
+    static void endParse(Object event, String operation) {
+        if (event == null) {
+            return;
+        }
+        ParseEvent parseEvent = (ParseEvent) event;
+        parseEvent.end();
+        if (parseEvent.shouldCommit()) {
+            parseEvent.operation = operation;
+            parseEvent.commit();
+        }
+    }
+
+    /**
+     * Begins the event of the acquisition of a connection from a connection pool.
+     *
+     * @return The event, null if it is not recorded.
+     */
+    static Object beginConnectionAcquire() {
+        if (!ConnectionAcquireType.isEnabled()) {
+            return null;
+        }
+        ConnectionAcquireEvent event = new ConnectionAcquireEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits the event of the acquisition of a connection from a connection pool.
+     *
+     * @param event  The event, can be null.
+     * @param host   The host of the connection.
+     * @param reused Whether the connection was already open.
+     */
+    static void endConnectionAcquire(Object event, String host, boolean reused) {
+        if (event == null) {
+            return;
+        }
+        ConnectionAcquireEvent acquireEvent = (ConnectionAcquireEvent) event;
+        acquireEvent.end();
+        if (acquireEvent.shouldCommit()) {
+            acquireEvent.host = host;
+            acquireEvent.reused = reused;
+            acquireEvent.commit();
+        }
+    }
+
+    /**
+     * Begins the event of an NTLM handshake, when the first NTLM message is sent.
+     *
+     * @return The event, null if it is not recorded.
+     */
+    static Object beginNtlmHandshake() {
+        if (!NtlmHandshakeType.isEnabled()) {
+            return null;
+        }
+        NtlmHandshakeEvent event = new NtlmHandshakeEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits the event of an NTLM handshake, when the challenge of the server is answered.
+     *
+     * @param event    The event, can be null.
+     * @param domain   The domain of the credentials.
+     * @param userName The user name of the credentials.
+     */
+    static void endNtlmHandshake(Object event, String domain, String userName) {
+        if (event == null) {
+            return;
+        }
+        NtlmHandshakeEvent handshakeEvent = (NtlmHandshakeEvent) event;
+        handshakeEvent.end();
+        if (handshakeEvent.shouldCommit()) {
+            handshakeEvent.domain = domain;
+            handshakeEvent.userName = userName;
+            handshakeEvent.commit();
+        }
+    }
+
+    /**
+     * Begins the event of a TLS handshake.
+     *
+     * @return The event, null if it is not recorded.
+     */
+    static Object beginTlsHandshake() {
+        if (!TlsHandshakeType.isEnabled()) {
+            return null;
+        }
+        TlsHandshakeEvent event = new TlsHandshakeEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits the event of a TLS handshake.
+     *
+     * @param event   The event, can be null.
+     * @param session The session negotiated.
+     * @param resumed Whether a cached session was resumed.
+     */
+    static void endTlsHandshake(Object event, SSLSession session, boolean resumed) {
+        if (event == null) {
+            return;
+        }
+        TlsHandshakeEvent handshakeEvent = (TlsHandshakeEvent) event;
+        handshakeEvent.end();
+        if (handshakeEvent.shouldCommit()) {
+            handshakeEvent.host = session.getPeerHost();
+            handshakeEvent.port = session.getPeerPort();
+            handshakeEvent.protocol = session.getProtocol();
+            handshakeEvent.cipherSuite = session.getCipherSuite();
+            handshakeEvent.resumed = resumed;
+            handshakeEvent.commit();
+        }
+    }
+
+    /**
+     * Emits the event of a response received on a streaming subscription connection.
+     *
+     * @param operation The name of the operation.
+     * @param frame     The number of responses received on the connection, including this one.
+     */
+    static void streamingFrameReceived(String operation, int frame) {
+        if (!StreamingFrameType.isEnabled()) {
+            return;
+        }
+        StreamingFrameEvent event = new StreamingFrameEvent();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.frame = frame;
+            event.commit();
+        }
+    }
+
+    /**
+     * Emits the event of the disconnection of a streaming subscription connection.
+     *
+     * @param operation      The name of the operation.
+     * @param reason         The reason of the disconnection.
+     * @param exception      The exception that caused the disconnection, can be null.
+     * @param connectedNanos How long the connection was connected, in nanoseconds.
+     * @param frames         The number of responses received on the connection.
+     */
+    static void streamingDisconnected(String operation, HangingRequestDisconnectReason reason, Exception exception,
+            long connectedNanos, int frames) {
+        if (!StreamingDisconnectType.isEnabled()) {
+            return;
+        }
+        StreamingDisconnectEvent event = new StreamingDisconnectEvent();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.reason = reason.toString();
+            event.exception = exception != null ? exception.toString() : null;
+            event.connected = connectedNanos;
+            event.frames = frames;
+            event.commit();
+        }
+    }
+
+    /**
+     * The event of an attempt of a service request.
+     */
+    @Name("microsoft.exchange.webservices.Request")
+    @Label("EWS Request")
+    @Description("An attempt of a service request, from its validation to the end of its response")
+    @Category("EWS")
+    static final class RequestEvent extends Event {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Impersonated Mailbox")
+        String impersonatedMailbox;
+
+        @Label("Attempt")
+        @Description("The number of retries made before this attempt")
+        int attempt;
+
+        @Label("Request Size")
+        @DataAmount
+        long requestBytes;
+
+        @Label("Response Size")
+        @DataAmount
+        long responseBytes;
+
+        @Label("Server Wait")
+        @Description("The time from the end of the request body to the response headers")
+        @Timespan(Timespan.NANOSECONDS)
+        long serverWait;
+
+        @Label("Result")
+        String result;
+
+        @Label("Error Code")
+        String errorCode;
+
+        @Label("Exception")
+        String exception;
+    }
+
+    /**
+     * The event of the parsing of a response.
+     */
+    @Name("microsoft.exchange.webservices.Parse")
+    @Label("EWS Response Parse")
+    @Description("The parsing of a response body into its response objects")
+    @Category("EWS")
+    static final class ParseEvent extends Event {
+
+        @Label("Operation")
+        String operation;
+    }
+
+    /**
+     * The event of the acquisition of a connection from a connection pool.
+     */
+    @Name("microsoft.exchange.webservices.ConnectionAcquire")
+    @Label("EWS Connection Acquire")
+    @Description("The wait for a connection from the connection pool of the HTTP transport")
+    @Category({"EWS", "Transport"})
+    static final class ConnectionAcquireEvent extends Event {
+
+        @Label("Host")
+        String host;
+
+        @Label("Reused")
+        @Description("Whether the connection was already open")
+        boolean reused;
+    }
+
+    /**
+     * The event of an NTLM handshake.
+     */
+    @Name("microsoft.exchange.webservices.NtlmHandshake")
+    @Label("EWS NTLM Handshake")
+    @Description("An NTLM handshake, from the negotiate message to the answer to the challenge of the server")
+    @Category({"EWS", "Transport"})
+    static final class NtlmHandshakeEvent extends Event {
+
+        @Label("Domain")
+        String domain;
+
+        @Label("User Name")
+        String userName;
+    }
+
+    /**
+     * The event of a TLS handshake.
+     */
+    @Name("microsoft.exchange.webservices.TlsHandshake")
+    @Label("EWS TLS Handshake")
+    @Description("A TLS handshake of a new connection")
+    @Category({"EWS", "Transport"})
+    static final class TlsHandshakeEvent extends Event {
+
+        @Label("Host")
+        String host;
+
+        @Label("Port")
+        int port;
+
+        @Label("Protocol")
+        String protocol;
+
+        @Label("Cipher Suite")
+        String cipherSuite;
+
+        @Label("Resumed")
+        @Description("Whether a cached session was resumed")
+        boolean resumed;
+    }
+
+    /**
+     * The event of a response received on a streaming subscription connection.
+     */
+    @Name("microsoft.exchange.webservices.StreamingFrame")
+    @Label("EWS Streaming Frame")
+    @Description("A response received on a streaming subscription connection")
+    @Category({"EWS", "Streaming"})
+    static final class StreamingFrameEvent extends Event {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Frame")
+        @Description("The number of responses received on the connection, including this one")
+        int frame;
+    }
+
+    /**
+     * The event of the disconnection of a streaming subscription connection.
+     */
+    @Name("microsoft.exchange.webservices.StreamingDisconnect")
+    @Label("EWS Streaming Disconnect")
+    @Description("The disconnection of a streaming subscription connection")
+    @Category({"EWS", "Streaming"})
+    static final class StreamingDisconnectEvent extends Event {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Reason")
+        String reason;
+
+        @Label("Exception")
+        String exception;
+
+        @Label("Connected")
+        @Description("How long the connection was connected")
+        @Timespan(Timespan.NANOSECONDS)
+        long connected;
+
+        @Label("Frames")
+        @Description("The number of responses received on the connection")
+        int frames;
+    }
+}
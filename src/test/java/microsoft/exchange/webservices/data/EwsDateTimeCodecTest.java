@@ -0,0 +1,234 @@
+/**************************************************************************
+ * copyright file="EwsDateTimeCodecTest.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the EwsDateTimeCodecTest.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Compares the dates EwsDateTimeCodec parses and formats with those SimpleDateFormat parses and formats.
+ */
+public class EwsDateTimeCodecTest {
+
+    private static final TimeZone Utc = TimeZone.getTimeZone("UTC");
+
+    private static final String[] DefaultTimeZones =
+            {"America/New_York", "Europe/Amsterdam", "Australia/Sydney", "Asia/Kolkata", "UTC"};
+
+    /**
+     * Parses a value with SimpleDateFormat, keeping the fraction to the millisecond.
+     */
+    private static Date parseWithSimpleDateFormat(String value, TimeZone defaultTimeZone) throws ParseException {
+        int length = value.length();
+        String dateTime = value;
+        String zone = "";
+        if (value.endsWith("Z") || value.endsWith("z")) {
+            dateTime = value.substring(0, length - 1);
+            zone = "Z";
+        }
+        else if (length > 6 && value.charAt(length - 3) == ':' &&
+                (value.charAt(length - 6) == '+' || value.charAt(length - 6) == '-')) {
+            dateTime = value.substring(0, length - 6);
+            zone = value.substring(length - 6);
+        }
+
+        StringBuilder pattern = new StringBuilder("yyyy-MM-dd");
+        if (dateTime.length() > 10) {
+            pattern.append("'T'HH:mm:ss");
+            int dot = dateTime.indexOf('.');
+            if (dot >= 0) {
+                dateTime = dateTime.substring(0, dot + 1) + (dateTime.substring(dot + 1) + "00").substring(0, 3);
+                pattern.append(".SSS");
+            }
+        }
+        if (!zone.isEmpty()) {
+            pattern.append("XXX");
+        }
+
+        SimpleDateFormat format = new SimpleDateFormat(pattern.toString());
+        format.setTimeZone(defaultTimeZone);
+        return format.parse(dateTime + zone);
+    }
+
+    private static void assertParsedAsSimpleDateFormatDoes(String value, TimeZone defaultTimeZone)
+            throws ParseException {
+        assertEquals(value, parseWithSimpleDateFormat(value, defaultTimeZone),
+                EwsDateTimeCodec.parseDateTime(value, defaultTimeZone));
+    }
+
+    private static String pad(int number, int width) {
+        String digits = String.valueOf(number);
+        while (digits.length() < width) {
+            digits = "0" + digits;
+        }
+        return digits;
+    }
+
+    private static String randomDate(Random random) {
+        return pad(1900 + random.nextInt(200), 4) + "-" + pad(1 + random.nextInt(12), 2) + "-" +
+                pad(1 + random.nextInt(28), 2);
+    }
+
+    private static String randomTime(Random random) {
+        return "T" + pad(random.nextInt(24), 2) + ":" + pad(random.nextInt(60), 2) + ":" + pad(random.nextInt(60), 2);
+    }
+
+    private static String randomFraction(Random random) {
+        int digits = random.nextInt(8);
+        if (digits == 0) {
+            return "";
+        }
+        StringBuilder fraction = new StringBuilder(".");
+        for (int i = 0; i < digits; i++) {
+            fraction.append(random.nextInt(10));
+        }
+        return fraction.toString();
+    }
+
+    private static String randomOffset(Random random) {
+        int minutes = random.nextInt(14 * 4 + 1) * 15;
+        return (random.nextBoolean() ? "+" : "-") + pad(minutes / 60, 2) + ":" + pad(minutes % 60, 2);
+    }
+
+    @Test
+    public void parsesUtcValuesAsSimpleDateFormatDoes() throws Exception {
+        Random random = new Random(1);
+        for (int i = 0; i < 20000; i++) {
+            String value = randomDate(random) + randomTime(random) + randomFraction(random) +
+                    (random.nextBoolean() ? "Z" : "z");
+            assertParsedAsSimpleDateFormatDoes(value, Utc);
+        }
+    }
+
+    @Test
+    public void parsesOffsetValuesAsSimpleDateFormatDoes() throws Exception {
+        Random random = new Random(2);
+        for (int i = 0; i < 20000; i++) {
+            String value = randomDate(random) + randomTime(random) + randomFraction(random) + randomOffset(random);
+            assertParsedAsSimpleDateFormatDoes(value, Utc);
+        }
+    }
+
+    @Test
+    public void parsesDateOnlyValuesAsSimpleDateFormatDoes() throws Exception {
+        Random random = new Random(3);
+        for (int i = 0; i < 5000; i++) {
+            String date = randomDate(random);
+            assertParsedAsSimpleDateFormatDoes(date, Utc);
+            assertParsedAsSimpleDateFormatDoes(date + "Z", Utc);
+            assertParsedAsSimpleDateFormatDoes(date + "z", Utc);
+            assertParsedAsSimpleDateFormatDoes(date + randomOffset(random), Utc);
+        }
+    }
+
+    @Test
+    public void keepsFractionsOfAnyLengthToTheMillisecond() throws Exception {
+        String[] fractions = {".1", ".12", ".123", ".1234", ".12345", ".123456", ".1234567"};
+        long[] millis = {100, 120, 123, 123, 123, 123, 123};
+        for (int i = 0; i < fractions.length; i++) {
+            String value = "2014-02-03T16:37:52" + fractions[i] + "Z";
+            assertEquals(value, 1391445472000L + millis[i], EwsDateTimeCodec.parseDateTime(value).getTime());
+            assertParsedAsSimpleDateFormatDoes(value, Utc);
+        }
+    }
+
+    @Test
+    public void parsesValuesWithoutZoneInTheDefaultTimeZoneAsSimpleDateFormatDoes() throws Exception {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        try {
+            for (String id : DefaultTimeZones) {
+                TimeZone.setDefault(TimeZone.getTimeZone(id));
+                TimeZone timeZone = TimeZone.getDefault();
+
+                // Every half hour of a year, which includes the local times skipped and repeated by the transitions
+                // to and from daylight saving time.
+                SimpleDateFormat localFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+                localFormat.setTimeZone(Utc);
+                long start = localFormat.parse("2014-01-01T00:00:00").getTime();
+                for (long local = start; local < start + 365L * 24 * 60 * 60 * 1000; local += 30 * 60 * 1000) {
+                    String value = localFormat.format(new Date(local));
+                    Date expected = parseWithSimpleDateFormat(value, timeZone);
+                    assertEquals(id + " " + value, expected, EwsDateTimeCodec.parseDateTime(value, timeZone));
+                    assertEquals(id + " " + value, expected,
+                            EwsDateTimeCodec.parseUnbiasedDateTime(value + "Z", timeZone));
+                }
+            }
+        }
+        finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+
+    @Test
+    public void resolvesDaylightSavingGapAndOverlapAsCalendarDoes() throws Exception {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+            TimeZone timeZone = TimeZone.getDefault();
+
+            // 02:30 is skipped on 2014-03-09 and is taken to be in standard time, that is 03:30 daylight time.
+            assertEquals(EwsDateTimeCodec.parseDateTime("2014-03-09T07:30:00Z"),
+                    EwsDateTimeCodec.parseDateTime("2014-03-09T02:30:00", timeZone));
+            assertParsedAsSimpleDateFormatDoes("2014-03-09T02:30:00", timeZone);
+
+            // 01:30 is repeated on 2014-11-02 and is taken to be the later one, in standard time.
+            assertEquals(EwsDateTimeCodec.parseDateTime("2014-11-02T06:30:00Z"),
+                    EwsDateTimeCodec.parseDateTime("2014-11-02T01:30:00", timeZone));
+            assertParsedAsSimpleDateFormatDoes("2014-11-02T01:30:00", timeZone);
+        }
+        finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+
+    @Test
+    public void formatsAsSimpleDateFormatDoes() {
+        SimpleDateFormat dateTimeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        dateTimeFormat.setTimeZone(Utc);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'Z'");
+        dateFormat.setTimeZone(Utc);
+
+        Random random = new Random(4);
+        long start = -70L * 365 * 24 * 60 * 60 * 1000;
+        for (int i = 0; i < 20000; i++) {
+            Date date = new Date(start + (long) (random.nextDouble() * -2 * start));
+            assertEquals(dateTimeFormat.format(date), EwsDateTimeCodec.formatDateTime(date));
+            assertEquals(dateFormat.format(date), EwsDateTimeCodec.formatDate(date));
+            assertEquals(Math.floorDiv(date.getTime(), 1000) * 1000,
+                    EwsDateTimeCodec.parseDateTime(EwsDateTimeCodec.formatDateTime(date)).getTime());
+        }
+    }
+
+    @Test
+    public void rejectsInvalidValues() {
+        String[] values = {
+                null, "", "2014", "2014-02", "2014-02-03T", "2014-02-03T16:37", "2014-02-03T16:37Z",
+                "2014-02-03 16:37:52Z", "2014/02/03", "x014-02-03Z", "2014-2-3Z", "2014-00-03Z", "2014-13-03Z",
+                "2014-02-00Z", "2014-02-32Z", "2014-02-03T25:00:00Z", "2014-02-03T16:60:00Z",
+                "2014-02-03T16:37:61Z", "2014-02-03T16:37:52.Z", "2014-02-03T16:37:52.12a4Z",
+                "2014-02-03T16:37:52,123Z", "2014-02-03T16:37:52+15:00", "2014-02-03T16:37:52+05:60",
+                "2014-02-03T16:37:52+0500", "2014-02-03T16:37:52ZZ", "2014-02-03T16:37:52 "
+        };
+        for (String value : values) {
+            try {
+                EwsDateTimeCodec.parseDateTime(value);
+                fail("Parsed " + value);
+            }
+            catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/**************************************************************************
+ * copyright file="EwsXmlReaderBenchmark.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the EwsXmlReaderBenchmark.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+
+/**
+ * Measures the time and the memory allocated to read a FindItem response of 1000 items with EwsXmlReader, against
+ * reading the same response with an XMLEventReader, which allocates an event per node as the reader did before it
+ * was based on the XMLStreamReader cursor. Run it with "gradle xmlReaderBenchmark".
+ */
+public final class EwsXmlReaderBenchmark {
+
+    private static final int ItemCount = 1000;
+
+    private static final int WarmupIterations = 200;
+
+    private static final int Iterations = 500;
+
+    private static final QName IdAttribute = new QName("Id");
+
+    private EwsXmlReaderBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        byte[] response = createFindItemResponse(ItemCount);
+        System.out.println(String.format("FindItem response of %d items, %d bytes", ItemCount, response.length));
+
+        long cursorChecksum = readWithEwsXmlReader(response);
+        long eventChecksum = readWithEventReader(response);
+        if (cursorChecksum != eventChecksum) {
+            throw new IllegalStateException("The readers read different values");
+        }
+
+        measure("XMLEventReader", response, false);
+        measure("EwsXmlReader", response, true);
+    }
+
+    private static void measure(String name, byte[] response, boolean cursor) throws Exception {
+        for (int i = 0; i < WarmupIterations; i++) {
+            read(response, cursor);
+        }
+
+        long allocatedBefore = getAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < Iterations; i++) {
+            read(response, cursor);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = getAllocatedBytes() - allocatedBefore;
+
+        System.out.println(String.format("%-16s %8.3f ms/response %10s KB allocated/response", name,
+                elapsed / 1e6 / Iterations, allocated < 0 ? "n/a" : String.valueOf(allocated / 1024 / Iterations)));
+    }
+
+    private static long read(byte[] response, boolean cursor) throws Exception {
+        return cursor ? readWithEwsXmlReader(response) : readWithEventReader(response);
+    }
+
+    private static long readWithEwsXmlReader(byte[] response) throws Exception {
+        EwsXmlReader reader = new EwsXmlReader(new ByteArrayInputStream(response));
+        long checksum = 0;
+        reader.read();
+        do {
+            reader.read();
+            if (reader.isStartElement()) {
+                if (reader.hasAttributes() && reader.getLocalName().equals("ItemId")) {
+                    checksum += reader.readAttributeValue("Id").length();
+                }
+            }
+            else if (reader.getNodeType().getNodeType() == XMLNodeType.CHARACTERS) {
+                checksum += reader.readValue().length();
+            }
+        } while (!reader.isEndElement(XmlNamespace.Messages, "FindItemResponse"));
+        return checksum;
+    }
+
+    private static long readWithEventReader(byte[] response) throws Exception {
+        XMLEventReader reader = XMLInputFactory.newInstance().createXMLEventReader(
+                new ByteArrayInputStream(response));
+        long checksum = 0;
+        while (reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                StartElement element = event.asStartElement();
+                if (element.getName().getLocalPart().equals("ItemId")) {
+                    Attribute id = element.getAttributeByName(IdAttribute);
+                    checksum += id.getValue().length();
+                }
+            }
+            else if (event.isCharacters()) {
+                Characters characters = event.asCharacters();
+                if (!characters.isWhiteSpace()) {
+                    checksum += characters.getData().length();
+                }
+            }
+        }
+        return checksum;
+    }
+
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static byte[] createFindItemResponse(int itemCount) {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+        xml.append("<m:FindItemResponse xmlns:m=\"").append(EwsUtilities.EwsMessagesNamespace)
+                .append("\" xmlns:t=\"").append(EwsUtilities.EwsTypesNamespace).append("\">\n");
+        xml.append(" <m:ResponseMessages>\n  <m:FindItemResponseMessage ResponseClass=\"Success\">\n");
+        xml.append("   <m:ResponseCode>NoError</m:ResponseCode>\n");
+        xml.append("   <m:RootFolder TotalItemsInView=\"").append(itemCount)
+                .append("\" IncludesLastItemInRange=\"true\">\n    <t:Items>\n");
+        for (int i = 0; i < itemCount; i++) {
+            xml.append("     <t:Message>\n");
+            xml.append("      <t:ItemId Id=\"AAMkADk0MjU5ZTQ1LTcxMjMtNDk3ZC05NTA2LTk1OGE3YjhlMDhkOABGAAAAAAB")
+                    .append(i).append("\" ChangeKey=\"CQAAABYAAAD").append(i).append("\"/>\n");
+            xml.append("      <t:Subject>Quarterly report &amp; budget ").append(i).append("</t:Subject>\n");
+            xml.append("      <t:DateTimeReceived>2014-02-03T16:37:52Z</t:DateTimeReceived>\n");
+            xml.append("      <t:Size>").append(1000 + i).append("</t:Size>\n");
+            xml.append("      <t:HasAttachments>false</t:HasAttachments>\n");
+            xml.append("      <t:From><t:Mailbox><t:Name>Sender ").append(i)
+                    .append("</t:Name><t:EmailAddress>sender").append(i)
+                    .append("@example.com</t:EmailAddress></t:Mailbox></t:From>\n");
+            xml.append("      <t:IsRead>true</t:IsRead>\n");
+            xml.append("     </t:Message>\n");
+        }
+        xml.append("    </t:Items>\n   </m:RootFolder>\n  </m:FindItemResponseMessage>\n");
+        xml.append(" </m:ResponseMessages>\n</m:FindItemResponse>\n");
+        return xml.toString().getBytes(Charset.forName("UTF-8"));
+    }
+}
@@ -0,0 +1,228 @@
+/**************************************************************************
+ * copyright file="EwsXmlReaderTest.java" company="Microsoft"
+ *     Copyright (c) Microsoft Corporation.  All rights reserved.
+ *
+ * Defines the EwsXmlReaderTest.java.
+ **************************************************************************/
+package microsoft.exchange.webservices.data;
+
+import org.junit.Test;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests which node is current after each call of EwsXmlReader, and the text and XML it reads.
+ */
+public class EwsXmlReaderTest {
+
+    private static final String Types = "xmlns:t=\"" + EwsUtilities.EwsTypesNamespace + "\"";
+
+    private static EwsXmlReader createReader(String xml) throws Exception {
+        EwsXmlReader reader = new EwsXmlReader(new ByteArrayInputStream(xml.getBytes(Charset.forName("UTF-8"))));
+        reader.read();
+        assertNode(reader, XMLNodeType.START_DOCUMENT, null);
+        return reader;
+    }
+
+    private static void assertNode(EwsXmlReader reader, int nodeType, String localName) throws Exception {
+        assertEquals(XMLNodeType.getString(nodeType), reader.getNodeType().toString());
+        assertEquals(localName, reader.getLocalName());
+    }
+
+    @Test
+    public void isEmptyElementKeepsTheStartElementCurrent() throws Exception {
+        EwsXmlReader reader = createReader("<t:Root " + Types + "><t:Empty Id=\"1\"/><t:Next/></t:Root>");
+        reader.readStartElement(XmlNamespace.Types, "Root");
+        reader.read();
+
+        assertTrue(reader.isEmptyElement());
+        assertNode(reader, XMLNodeType.START_ELEMENT, "Empty");
+        assertTrue(reader.isStartElement(XmlNamespace.Types, "Empty"));
+        assertTrue(reader.isEmptyElement());
+        assertEquals("1", reader.readAttributeValue("Id"));
+
+        reader.read();
+        assertNode(reader, XMLNodeType.END_ELEMENT, "Empty");
+        reader.read();
+        assertNode(reader, XMLNodeType.START_ELEMENT, "Next");
+    }
+
+    @Test
+    public void isEmptyElementIsTrueForAnElementWithoutContent() throws Exception {
+        EwsXmlReader reader = createReader("<t:Root " + Types + "><t:Empty></t:Empty></t:Root>");
+        reader.readStartElement(XmlNamespace.Types, "Root");
+        reader.read();
+
+        assertTrue(reader.isEmptyElement());
+        reader.readEndElement(XmlNamespace.Types, "Empty");
+        reader.readEndElement(XmlNamespace.Types, "Root");
+    }
+
+    @Test
+    public void isEmptyElementIsFalseForAnElementWithContent() throws Exception {
+        EwsXmlReader reader = createReader("<t:Root " + Types + "><t:Child/></t:Root>");
+        reader.readStartElement(XmlNamespace.Types, "Root");
+
+        assertFalse(reader.isEmptyElement());
+        assertNode(reader, XMLNodeType.START_ELEMENT, "Root");
+        reader.read();
+        assertNode(reader, XMLNodeType.START_ELEMENT, "Child");
+    }
+
+    @Test
+    public void readValueEndsOnTheEndElement() throws Exception {
+        EwsXmlReader reader = createReader("<t:Root " + Types + "><t:Name>value</t:Name><t:Next/></t:Root>");
+        reader.readStartElement(XmlNamespace.Types, "Root");
+        reader.readStartElement(XmlNamespace.Types, "Name");
+
+        assertEquals("value", reader.readValue());
+        assertNode(reader, XMLNodeType.END_ELEMENT, "Name");
+        reader.read();
+        assertNode(reader, XMLNodeType.START_ELEMENT, "Next");
+    }
+
+    @Test
+    public void readValueAfterIsEmptyElement() throws Exception {
+        EwsXmlReader reader = createReader("<t:Root " + Types + "><t:Name>value</t:Name></t:Root>");
+        reader.readStartElement(XmlNamespace.Types, "Root");
+        reader.readStartElement(XmlNamespace.Types, "Name");
+
+        assertFalse(reader.isEmptyElement());
+        assertEquals("value", reader.readValue());
+        assertNode(reader, XMLNodeType.END_ELEMENT, "Name");
+    }
+
+    @Test
+    public void readElementValueEndsOnTheEndElement() throws Exception {
+        EwsXmlReader reader = createReader(
+                "<t:Root " + Types + "><t:Name>value</t:Name><t:Empty/><t:Last/></t:Root>");
+        reader.readStartElement(XmlNamespace.Types, "Root");
+
+        assertEquals("value", reader.readElementValue(XmlNamespace.Types, "Name"));
+        assertNode(reader, XMLNodeType.END_ELEMENT, "Name");
+
+        assertNull(reader.readElementValue(XmlNamespace.Types, "Empty"));
+        assertNode(reader, XMLNodeType.END_ELEMENT, "Empty");
+
+        reader.read();
+        assertNode(reader, XMLNodeType.START_ELEMENT, "Last");
+    }
+
+    @Test
+    public void readElementValueOfTheCurrentElement() throws Exception {
+        EwsXmlReader reader = createReader("<t:Root " + Types + "><t:Count>42</t:Count></t:Root>");
+        reader.readStartElement(XmlNamespace.Types, "Root");
+        reader.read();
+
+        assertEquals(Integer.valueOf(42), reader.readElementValue(Integer.class));
+        assertNode(reader, XMLNodeType.END_ELEMENT, "Count");
+    }
+
+    @Test
+    public void readValueJoinsTextSplitOverSeveralNodes() throws Exception {
+        EwsXmlReader reader = createReader(
+                "<t:Root " + Types + "><t:Body>a &amp; b<![CDATA[ <c> ]]>d&lt;</t:Body></t:Root>");
+        reader.readStartElement(XmlNamespace.Types, "Root");
+
+        assertEquals("a & b <c> d<", reader.readElementValue(XmlNamespace.Types, "Body"));
+        assertNode(reader, XMLNodeType.END_ELEMENT, "Body");
+    }
+
+    @Test
+    public void readValueOfTextLongerThanTheParserBuffer() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 256 * 1024; i++) {
+            text.append(i).append(i % 7 == 0 ? "&amp;" : " ");
+        }
+        EwsXmlReader reader = createReader("<t:Root " + Types + "><t:Body>" + text + "</t:Body></t:Root>");
+        reader.readStartElement(XmlNamespace.Types, "Root");
+
+        assertEquals(text.toString().replace("&amp;", "&"), reader.readElementValue(XmlNamespace.Types, "Body"));
+        assertNode(reader, XMLNodeType.END_ELEMENT, "Body");
+    }
+
+    @Test
+    public void readOuterXmlEndsOnTheMatchingEndElement() throws Exception {
+        EwsXmlReader reader = createReader("<t:Root " + Types + "><t:Item Id=\"1\"><t:Item>inner</t:Item>" +
+                "<t:Item/></t:Item><t:Next/></t:Root>");
+        reader.readStartElement(XmlNamespace.Types, "Root");
+        reader.readStartElement(XmlNamespace.Types, "Item");
+
+        assertEquals("<t:Item Id=\"1\"><t:Item>inner</t:Item><t:Item></t:Item></t:Item>", reader.readOuterXml());
+        assertNode(reader, XMLNodeType.END_ELEMENT, "Item");
+        reader.read();
+        assertNode(reader, XMLNodeType.START_ELEMENT, "Next");
+    }
+
+    @Test
+    public void readInnerXmlEndsOnTheMatchingEndElement() throws Exception {
+        EwsXmlReader reader = createReader("<t:Root " + Types + "><t:Item><t:Item a=\"&lt;&quot;\">x &amp; y" +
+                "</t:Item><t:Item/></t:Item><t:Next/></t:Root>");
+        reader.readStartElement(XmlNamespace.Types, "Root");
+        reader.readStartElement(XmlNamespace.Types, "Item");
+
+        assertEquals("<t:Item a=\"&lt;&quot;\">x &amp; y</t:Item><t:Item></t:Item>", reader.readInnerXml());
+        assertNode(reader, XMLNodeType.END_ELEMENT, "Item");
+        reader.read();
+        assertNode(reader, XMLNodeType.START_ELEMENT, "Next");
+    }
+
+    @Test
+    public void readOuterXmlAfterIsEmptyElement() throws Exception {
+        EwsXmlReader reader = createReader("<t:Root " + Types + "><t:Item Id=\"1\"><t:Item/></t:Item></t:Root>");
+        reader.readStartElement(XmlNamespace.Types, "Root");
+        reader.readStartElement(XmlNamespace.Types, "Item");
+
+        assertFalse(reader.isEmptyElement());
+        assertEquals("<t:Item Id=\"1\"><t:Item></t:Item></t:Item>", reader.readOuterXml());
+        assertNode(reader, XMLNodeType.END_ELEMENT, "Item");
+        reader.readEndElement(XmlNamespace.Types, "Root");
+    }
+
+    @Test
+    public void readOuterXmlOfAnEmptyElement() throws Exception {
+        EwsXmlReader reader = createReader("<t:Root " + Types + "><t:Item Id=\"1\"/></t:Root>");
+        reader.readStartElement(XmlNamespace.Types, "Root");
+        reader.readStartElement(XmlNamespace.Types, "Item");
+
+        assertEquals("<t:Item Id=\"1\"></t:Item>", reader.readOuterXml());
+        assertNode(reader, XMLNodeType.END_ELEMENT, "Item");
+        reader.readEndElement(XmlNamespace.Types, "Root");
+    }
+
+    @Test
+    public void readSubtreeAfterIsEmptyElement() throws Exception {
+        EwsXmlReader reader = createReader("<t:Root " + Types + "><t:Item Id=\"1\"><t:Name>x</t:Name></t:Item>" +
+                "<t:Next/></t:Root>");
+        reader.readStartElement(XmlNamespace.Types, "Root");
+        reader.readStartElement(XmlNamespace.Types, "Item");
+        assertFalse(reader.isEmptyElement());
+
+        XMLEventReader subtree = reader.readSubtree();
+        StartElement item = subtree.nextEvent().asStartElement();
+        assertEquals(new QName(EwsUtilities.EwsTypesNamespace, "Item"), item.getName());
+        assertEquals("1", item.getAttributeByName(new QName("Id")).getValue());
+
+        StringBuilder names = new StringBuilder();
+        while (subtree.hasNext()) {
+            XMLEvent event = subtree.nextEvent();
+            if (event.isStartElement()) {
+                names.append('<').append(event.asStartElement().getName().getLocalPart());
+            }
+            else if (event.isEndElement()) {
+                names.append('/').append(event.asEndElement().getName().getLocalPart());
+            }
+        }
+        assertEquals("<Name/Name/Item", names.toString());
+    }
+}